@@ -2,8 +2,12 @@ package io.spaship.operator.api;
 
 import io.smallrye.common.annotation.NonBlocking;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.spaship.operator.exception.ValidationException;
 import io.spaship.operator.service.k8s.Operator;
 import io.spaship.operator.service.k8s.SideCarOperations;
+import io.spaship.operator.type.BulkSyncRequest;
+import io.spaship.operator.type.BulkSyncResponse;
 import io.spaship.operator.type.Environment;
 import io.spaship.operator.type.OperationResponse;
 import io.quarkus.security.Authenticated;
@@ -11,6 +15,7 @@ import io.quarkus.security.Authenticated;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import java.util.Objects;
+import java.util.Optional;
 
 @Path("environment")
 @Authenticated
@@ -66,5 +71,45 @@ public class EnvironmentController {
 
   }
 
+  @POST
+  @Path("/sync/bulk")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Consumes(MediaType.APPLICATION_JSON)
+  @NonBlocking
+  public Uni<BulkSyncResponse> scheduleBulkSync(BulkSyncRequest syncRequest) {
+    required(syncRequest.syncConfig(), "syncConfig is missing");
+    var hasTargets = Objects.nonNull(syncRequest.targets()) && !syncRequest.targets().isEmpty();
+    if (!hasTargets && Objects.isNull(syncRequest.selector()))
+      throw new ValidationException("either targets or selector is required");
+
+    if (hasTargets) {
+      var environments = syncRequest.targets().stream()
+        .map(target -> syncTarget(target.envName(), target.websiteName(),
+          Optional.ofNullable(target.nameSpace()).orElse(syncRequest.nameSpace())))
+        .toList();
+      return sidecarOps.triggerBulkSync(syncRequest.syncConfig(), environments);
+    }
+
+    required(syncRequest.nameSpace(), "nameSpace is required along with the selector");
+    return Uni.createFrom()
+      .item(() -> k8sOperator.environmentsBySelector(syncRequest.nameSpace(), syncRequest.selector()))
+      .runSubscriptionOn(Infrastructure.getDefaultExecutor())
+      .chain(environments -> sidecarOps.triggerBulkSync(syncRequest.syncConfig(), environments));
+  }
+
+  private Environment syncTarget(String envName, String websiteName, String nameSpace) {
+    required(envName, "envName is missing");
+    required(websiteName, "websiteName is missing");
+    required(nameSpace, "nameSpace is missing");
+    return new Environment(envName, websiteName, null, nameSpace, true, null, null, null, null, null, true, false,
+      null);
+  }
+
+  // a missing field is a bad request rather than a server error
+  private static void required(Object field, String message) {
+    if (Objects.isNull(field))
+      throw new ValidationException(message);
+  }
+
 
 }
@@ -1,31 +1,110 @@
 package io.spaship.operator.api;
 
 import io.smallrye.mutiny.Multi;
-import io.vertx.mutiny.core.Vertx;
+import io.spaship.operator.business.EventJournal;
+import io.spaship.operator.business.EventSubscriptions;
+import io.spaship.operator.exception.FeatureNotImplementedException;
+import io.spaship.operator.exception.ValidationException;
+import io.spaship.operator.type.SequencedEvent;
 import org.eclipse.microprofile.config.ConfigProvider;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Path("/event")
 public class EventStream {
 
-  private final Vertx vertx;
-  private final String busAddress;
+  private final EventSubscriptions subscriptions;
+  private final EventJournal journal;
+  private final Duration batchWindow;
+  private final int batchMaxSize;
+  private final int journalMaxLimit;
 
-  public EventStream(Vertx vertx) {
-    this.vertx = vertx;
-    busAddress = ConfigProvider.getConfig().getValue("operator.event.bus.address", String.class);
+  public EventStream(EventSubscriptions subscriptions, EventJournal journal) {
+    this.subscriptions = subscriptions;
+    this.journal = journal;
+    var config = ConfigProvider.getConfig();
+    this.batchWindow = Duration.ofMillis(
+      config.getOptionalValue("operator.event.batch.window.ms", Long.class).orElse(100L));
+    this.batchMaxSize = config.getOptionalValue("operator.event.batch.max.size", Integer.class).orElse(100);
+    this.journalMaxLimit = config.getOptionalValue("operator.event.journal.query.max.limit", Integer.class)
+      .orElse(1000);
   }
 
   @GET
   @Produces(MediaType.SERVER_SENT_EVENTS)
-  public Multi<String> streamEvents() {
-    return vertx.eventBus()
-      .consumer(busAddress)
-      .toMulti()
-      .map(item -> item.body().toString());
+  public Multi<OutboundSseEvent> streamEvents(@Context Sse sse,
+                                              @HeaderParam("Last-Event-ID") Long lastEventId,
+                                              @QueryParam("traceId") String traceId,
+                                              @QueryParam("website") String website,
+                                              @QueryParam("environment") String environment,
+                                              @QueryParam("state") String state,
+                                              @QueryParam("batch") boolean batch) {
+    var filter = new EventSubscriptions.Filter(traceId, website, environment, state);
+    if (!batch)
+      return subscriptions.subscribe(filter, lastEventId)
+        .map(event -> frame(sse, event.id(), event.event().toJson()));
+    // events arriving within the window share one frame, a json array, which carries the id of its last event. they
+    // are batched by the subscriber queue as frames are requested, a slow client is handled by its overflow policy
+    return subscriptions.subscribe(filter, lastEventId, batchMaxSize, batchWindow)
+      .map(batched -> frame(sse, batched.get(batched.size() - 1).id(), batched.stream()
+        .map(event -> event.event().toJson())
+        .collect(Collectors.joining(",", "[", "]"))));
+  }
+
+  @GET
+  @Path("/journal")
+  @Produces(MediaType.APPLICATION_JSON)
+  public String journal(@QueryParam("traceId") String traceId, @QueryParam("website") String website,
+                        @QueryParam("from") String from, @QueryParam("to") String to,
+                        @QueryParam("limit") @DefaultValue("1000") int limit) {
+    if (!journal.isEnabled())
+      throw new FeatureNotImplementedException("the event journal is not enabled");
+    if (limit < 1)
+      throw new ValidationException("limit must be positive, was " + limit);
+    // a query reads the matching events into memory, it never returns more than the configured maximum
+    return journal.query(traceId, website, instant("from", from), instant("to", to), Math.min(limit, journalMaxLimit))
+      .stream()
+      .collect(Collectors.joining(",", "[", "]"));
+  }
+
+  private static Instant instant(String param, String value) {
+    if (Objects.isNull(value))
+      return null;
+    try {
+      return Instant.parse(value);
+    } catch (DateTimeParseException e) {
+      throw new ValidationException(param + " must be an ISO-8601 instant such as 2024-01-31T10:15:30Z, was " + value);
+    }
+  }
+
+  private static OutboundSseEvent frame(Sse sse, long id, String data) {
+    return sse.newEventBuilder()
+      .id(String.valueOf(id))
+      .mediaType(MediaType.TEXT_PLAIN_TYPE)
+      .data(data)
+      .build();
+  }
+
+  @GET
+  @Path("/history/{traceId}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public List<SequencedEvent> history(@PathParam("traceId") String traceId) {
+    return subscriptions.history(traceId);
   }
 }
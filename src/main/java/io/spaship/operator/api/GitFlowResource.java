@@ -3,17 +3,30 @@ package io.spaship.operator.api;
 
 import io.fabric8.openshift.client.OpenShiftClient;
 import io.quarkus.security.Authenticated;
+import io.quarkus.vertx.web.ReactiveRoutes;
 import io.quarkus.vertx.web.Route;
 import io.quarkus.vertx.web.RouteBase;
 import io.quarkus.vertx.web.RoutingExchange;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.spaship.operator.business.GitFlowRequestProcessor;
+import io.spaship.operator.business.GitFlowTimeline;
+import io.spaship.operator.repo.BuildLogCache;
 import io.spaship.operator.type.*;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.HttpException;
+import io.vertx.mutiny.core.buffer.Buffer;
+import lombok.SneakyThrows;
 
 import javax.enterprise.context.ApplicationScoped;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 @ApplicationScoped
@@ -22,9 +35,11 @@ import java.util.List;
 public class GitFlowResource {
 
     private final GitFlowRequestProcessor grp;
+    private final GitFlowTimeline timeline;
 
-    public GitFlowResource(GitFlowRequestProcessor requestProcessor) {
+    public GitFlowResource(GitFlowRequestProcessor requestProcessor, GitFlowTimeline timeline) {
         this.grp = requestProcessor;
+        this.timeline = timeline;
     }
 
     @Route(path = "", methods = Route.HttpMethod.GET)
@@ -50,25 +65,125 @@ public class GitFlowResource {
     }
 
     @Route(path = "/build-log", methods = Route.HttpMethod.POST)
-    Multi<String> fetchBuildLog(RoutingContext rc) {
+    Multi<Buffer> fetchBuildLog(RoutingContext rc) {
         var k8sInfoRequest = rc.body().asPojo(FetchK8sInfoRequest.class);
-        return grp.fetchLogByType(k8sInfoRequest, GitFlowRequestProcessor.LogType.BUILD);
+        return streamLog(rc, k8sInfoRequest, GitFlowRequestProcessor.LogType.BUILD);
     }
 
     @Route(path = "/deployment-log", methods = Route.HttpMethod.POST)
-    Multi<String> fetchDeploymentLog(RoutingContext rc) {
+    Multi<Buffer> fetchDeploymentLog(RoutingContext rc) {
         var reqBody = rc.body().asPojo(FetchK8sInfoRequest.class);
-        return grp.fetchLogByType(reqBody, GitFlowRequestProcessor.LogType.DEPLOYMENT);
+        return streamLog(rc, reqBody, GitFlowRequestProcessor.LogType.DEPLOYMENT);
     }
     @Route(path = "/pod-log", methods = Route.HttpMethod.POST)
-    Multi<String> fetchPodLog(RoutingContext rc) {
+    Multi<Buffer> fetchPodLog(RoutingContext rc) {
         var reqBody = rc.body().asPojo(FetchK8sInfoRequest.class);
-        return grp.fetchLogByType(reqBody, GitFlowRequestProcessor.LogType.POD);
+        return streamLog(rc, reqBody, GitFlowRequestProcessor.LogType.POD);
     }
     @Route(path = "/http-pod-log", methods = Route.HttpMethod.POST)
-    Multi<String> fetchHttpPodLog(RoutingContext rc) {
+    Multi<Buffer> fetchHttpPodLog(RoutingContext rc) {
         var reqBody = rc.body().asPojo(FetchK8sInfoRequest.class);
-        return grp.fetchLogByType(reqBody, GitFlowRequestProcessor.LogType.HTTP_POD);
+        return streamLog(rc, reqBody, GitFlowRequestProcessor.LogType.HTTP_POD);
+    }
+
+    /**
+     * Only the lines of a log that match the search, with their line numbers and context, see {@link LogSearchRequest}.
+     * The type is one of build, deployment, http-deployment, pod and http-pod.
+     */
+    @Route(path = "/log-search/:type", methods = Route.HttpMethod.POST)
+    Multi<Buffer> searchLog(RoutingContext rc) {
+        var reqBody = rc.body().asPojo(LogSearchRequest.class);
+        rc.response().putHeader("Content-Type", "text/plain; charset=utf-8");
+        var follow = Boolean.parseBoolean(rc.queryParams().get("follow"));
+        try {
+            var logType = GitFlowRequestProcessor.LogType.valueOf(
+                    rc.pathParam("type").toUpperCase(Locale.ROOT).replace('-', '_'));
+            return grp.searchLog(reqBody, logType, follow);
+        } catch (IllegalArgumentException e) {
+            return Multi.createFrom().failure(new HttpException(400, e.getMessage()));
+        }
+    }
+
+    /**
+     * Log of an ended build, served from the build log cache. It is a strong {@code ETag} validated resource that
+     * supports a single byte range of the uncompressed log, and is sent gzip encoded as stored when the client
+     * accepts it and no range is asked. A malformed range or several ranges are ignored and the whole log is sent, a
+     * range past its end is a 416. A build that has not ended yet is a 409, its log is streamed by the POST api.
+     */
+    @Route(path = "/build-log/:ns/:name", methods = Route.HttpMethod.GET)
+    void finishedBuildLog(RoutingContext rc) {
+        grp.finishedBuildLog(rc.pathParam("name"), rc.pathParam("ns"))
+                .onItem().transformToUni(entry -> Uni.createFrom().item(() -> respond(rc, entry))
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool()))
+                .subscribe().with(ignored -> {
+                }, rc::fail);
+    }
+
+    @SneakyThrows
+    private Void respond(RoutingContext rc, BuildLogCache.Entry entry) {
+        var response = rc.response();
+        if (Objects.isNull(entry)) {
+            response.setStatusCode(409).end("build " + rc.pathParam("name") + " has not ended yet");
+            return null;
+        }
+        var etag = "\"" + entry.sha256() + "\"";
+        response.putHeader("ETag", etag)
+                .putHeader("Cache-Control", "private, max-age=31536000, immutable")
+                .putHeader("Accept-Ranges", "bytes")
+                .putHeader("Vary", "Accept-Encoding")
+                .putHeader("Content-Type", "text/plain; charset=utf-8");
+        var ifNoneMatch = rc.request().getHeader("If-None-Match");
+        if (Objects.nonNull(ifNoneMatch) && (ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim()))) {
+            response.setStatusCode(304).end();
+            return null;
+        }
+        // a malformed range or several of them are ignored, the whole log is sent
+        var range = rc.request().getHeader("Range");
+        var bounds = Objects.isNull(range) ? Optional.<ByteRange>empty() : ByteRange.parse(range, entry.size());
+        if (bounds.isEmpty()) {
+            var acceptEncoding = rc.request().getHeader("Accept-Encoding");
+            if (Objects.nonNull(acceptEncoding) && acceptEncoding.contains("gzip")) {
+                response.putHeader("Content-Encoding", "gzip").end(bytes(entry.gzipped()));
+                return null;
+            }
+            response.end(bytes(entry.read(0, entry.size() - 1)));
+            return null;
+        }
+        if (!bounds.get().satisfiable()) {
+            response.setStatusCode(416).putHeader("Content-Range", "bytes */" + entry.size()).end();
+            return null;
+        }
+        var from = bounds.get().from();
+        var to = bounds.get().to();
+        response.setStatusCode(206)
+                .putHeader("Content-Range", "bytes " + from + "-" + to + "/" + entry.size())
+                .end(bytes(entry.read(from, to)));
+        return null;
+    }
+
+    private static io.vertx.core.buffer.Buffer bytes(byte[] content) {
+        return io.vertx.core.buffer.Buffer.buffer(content);
+    }
+
+    // follow=true keeps the stream open until the build or the pod terminates
+    private Multi<Buffer> streamLog(RoutingContext rc, FetchK8sInfoRequest request,
+                                    GitFlowRequestProcessor.LogType logType) {
+        rc.response().putHeader("Content-Type", "text/plain; charset=utf-8");
+        var follow = Boolean.parseBoolean(rc.queryParams().get("follow"));
+        return grp.fetchLogByType(request, logType, follow);
+    }
+
+    /**
+     * Server-sent events of a GitFlow deployment in the order they happened: build phases, build log, rollout progress
+     * and pod logs, see {@link GitFlowTimeline}. The event name is the kind of the entry, ids are numbered per stream.
+     * The {@code deployment} query parameter is the deployment name returned by {@code /init}, without it only the
+     * build is followed.
+     */
+    @Route(path = "/timeline/:ns/:build", methods = Route.HttpMethod.GET, produces = ReactiveRoutes.EVENT_STREAM)
+    Multi<ReactiveRoutes.ServerSentEvent<String>> timeline(RoutingContext rc) {
+        var ids = new AtomicLong();
+        return timeline.follow(rc.pathParam("ns"), rc.pathParam("build"), rc.queryParams().get("deployment"))
+                .map(event -> new TimelineFrame(ids.incrementAndGet(), event));
     }
 
     @Route(path = "/pods-by-deployment", methods = Route.HttpMethod.GET)
@@ -77,4 +192,25 @@ public class GitFlowResource {
         var ns = re.getParam("ns");
         return grp.listPods(deploymentName,ns);
     }
-}
\ No newline at end of file
+
+    /**
+     * A saturated bulkhead of the GitFlow work, the client is asked to retry later instead of queueing more work.
+     */
+    @Route(path = "/*", type = Route.HandlerType.FAILURE)
+    void saturated(RejectedExecutionException e, HttpServerResponse response) {
+        response.setStatusCode(429).putHeader("Retry-After", "1").end("the operator is busy, retry later");
+    }
+
+    private record TimelineFrame(long id, TimelineEvent entry) implements ReactiveRoutes.ServerSentEvent<String> {
+
+        @Override
+        public String event() {
+            return entry.kind();
+        }
+
+        @Override
+        public String data() {
+            return entry.toJson(id);
+        }
+    }
+}
@@ -4,7 +4,8 @@ package io.spaship.operator.api;
 import io.quarkus.security.Authenticated;
 import io.spaship.operator.business.SPAUploadHandler;
 import io.spaship.operator.exception.ValidationException;
-import io.spaship.operator.repo.SharedRepository;
+import io.spaship.operator.repo.EnvironmentLockManager;
+import io.spaship.operator.type.EnvironmentLockInfo;
 import io.spaship.operator.type.FormData;
 import io.vertx.core.json.JsonObject;
 import org.javatuples.Pair;
@@ -16,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -25,9 +27,11 @@ public class SpaDeploymentController {
 
   private static final Logger LOG = LoggerFactory.getLogger(SpaDeploymentController.class);
   private final SPAUploadHandler spaUploadHandlerService;
+  private final EnvironmentLockManager lockManager;
 
-  public SpaDeploymentController(SPAUploadHandler spaUploadHandlerService) {
+  public SpaDeploymentController(SPAUploadHandler spaUploadHandlerService, EnvironmentLockManager lockManager) {
     this.spaUploadHandlerService = spaUploadHandlerService;
+    this.lockManager = lockManager;
   }
 
   @Produces("text/plain")
@@ -66,7 +70,14 @@ public class SpaDeploymentController {
   @Path("/dequeue/{website}")
   @Produces("text/plain")
   public Boolean dequeue(@PathParam("website") String website) {
-    return SharedRepository.dequeue(website);
+    return lockManager.forceRelease(website);
+  }
+
+  @GET
+  @Path("/locks")
+  @Produces(MediaType.APPLICATION_JSON)
+  public List<EnvironmentLockInfo> locks() {
+    return lockManager.snapshot();
   }
 
 
@@ -0,0 +1,79 @@
+package io.spaship.operator.business;
+
+import io.spaship.operator.type.EventStructure;
+import io.spaship.operator.type.SequencedEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded ring of the most recent events with an index by trace id. Every appended event gets the next id, the ids
+ * start from the wall clock in microseconds so that they keep increasing across restarts of the operator. Not thread
+ * safe, {@link EventSubscriptions} guards it.
+ */
+class EventHistory {
+
+  private final SequencedEvent[] ring;
+  private final Map<String, Deque<SequencedEvent>> byTraceId = new HashMap<>();
+  private final long firstId;
+  private long nextId;
+
+  EventHistory(int capacity, long firstId) {
+    this.ring = new SequencedEvent[capacity];
+    this.firstId = firstId;
+    this.nextId = firstId;
+  }
+
+  SequencedEvent append(EventStructure event) {
+    var sequenced = new SequencedEvent(nextId, event);
+    var slot = slot(nextId);
+    var evicted = ring[slot];
+    if (evicted != null)
+      unindex(evicted);
+    ring[slot] = sequenced;
+    if (Objects.nonNull(event.getUuid()))
+      byTraceId.computeIfAbsent(event.getUuid(), k -> new ArrayDeque<>()).addLast(sequenced);
+    nextId++;
+    return sequenced;
+  }
+
+  /**
+   * Events still in the ring with an id greater than {@code lastId}, oldest first.
+   */
+  List<SequencedEvent> after(long lastId) {
+    var from = Math.max(lastId + 1, oldestId());
+    var events = new ArrayList<SequencedEvent>((int) Math.max(nextId - from, 0));
+    for (var id = from; id < nextId; id++)
+      events.add(ring[slot(id)]);
+    return events;
+  }
+
+  List<SequencedEvent> ofTrace(String traceId) {
+    var events = byTraceId.get(traceId);
+    return events == null ? List.of() : List.copyOf(events);
+  }
+
+  private long oldestId() {
+    return Math.max(firstId, nextId - ring.length);
+  }
+
+  private void unindex(SequencedEvent evicted) {
+    var traceId = evicted.event().getUuid();
+    if (Objects.isNull(traceId))
+      return;
+    var events = byTraceId.get(traceId);
+    // events of a trace are evicted in the order they were appended
+    events.pollFirst();
+    if (events.isEmpty())
+      byTraceId.remove(traceId);
+  }
+
+  private int slot(long id) {
+    return (int) Math.floorMod(id, (long) ring.length);
+  }
+}
@@ -0,0 +1,345 @@
+package io.spaship.operator.business;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.spaship.operator.type.EventStructure;
+import io.vertx.mutiny.core.Vertx;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of the operational events, kept as a series of fixed size memory-mapped segment files under
+ * {@code operator.event.journal.dir}. Events are appended by a single writer thread fed from the event bus, so
+ * {@link EventManager#queue(EventStructure)} never waits for the disk, and the active segment is flushed to disk
+ * periodically. Segments older than the retention are deleted.
+ * <p>
+ * A record is {@code [length][timestamp][trace id][website][event json]}, the length being written last so that a
+ * record torn by a crash is ignored on recovery. Every segment keeps an in-memory index of its records by trace id and
+ * by website, rebuilt from the record headers when the journal is opened, and its time range, so that a query only
+ * reads the records it returns.
+ */
+@Singleton
+public class EventJournal {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventJournal.class);
+  private static final String SEGMENT_PREFIX = "events-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final boolean enabled;
+  private final Path directory;
+  private final int segmentSize;
+  private final Duration retention;
+  private final Duration fsyncInterval;
+  private final ScheduledExecutorService writer;
+  // guarded by this
+  private final TreeMap<Long, Segment> segments = new TreeMap<>();
+  private Segment active;
+  private boolean dirty;
+
+  @Inject
+  public EventJournal() {
+    var config = ConfigProvider.getConfig();
+    this.enabled = config.getOptionalValue("operator.event.journal.enabled", Boolean.class).orElse(false);
+    this.directory = Path.of(config.getOptionalValue("operator.event.journal.dir", String.class)
+      .orElse("/var/spaship/journal"));
+    this.segmentSize = config.getOptionalValue("operator.event.journal.segment.size.mb", Integer.class)
+      .orElse(16) * 1024 * 1024;
+    this.retention = Duration.ofHours(config.getOptionalValue("operator.event.journal.retention.hours", Long.class)
+      .orElse(168L));
+    this.fsyncInterval = Duration.ofMillis(config.getOptionalValue("operator.event.journal.fsync.interval.ms",
+      Long.class).orElse(1000L));
+    this.writer = enabled ? Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "event-journal")) : null;
+  }
+
+  EventJournal(Path directory, int segmentSize, Duration retention) {
+    this.enabled = true;
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.retention = retention;
+    this.fsyncInterval = Duration.ZERO;
+    this.writer = null;
+  }
+
+  void onStartup(@Observes StartupEvent startupEvent, Vertx vertx) {
+    if (!enabled)
+      return;
+    open();
+    var busAddress = ConfigProvider.getConfig().getValue("operator.event.bus.address", String.class);
+    vertx.eventBus().<EventStructure>consumer(busAddress)
+      .handler(message -> writer.execute(() -> append(message.body())));
+    writer.scheduleWithFixedDelay(this::flush, fsyncInterval.toMillis(), fsyncInterval.toMillis(),
+      TimeUnit.MILLISECONDS);
+    var sweepInterval = Math.max(retention.toMinutes() / 10, 1);
+    writer.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MINUTES);
+  }
+
+  void onShutdown(@Observes ShutdownEvent shutdownEvent) {
+    if (!enabled)
+      return;
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(5, TimeUnit.SECONDS))
+        LOG.warn("event journal writer did not finish in time");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Recovers the segments of the journal directory, the last one becomes the active segment.
+   */
+  synchronized void open() {
+    try {
+      Files.createDirectories(directory);
+      try (Stream<Path> files = Files.list(directory)) {
+        files.filter(EventJournal::isSegment)
+          .sorted()
+          .forEach(path -> {
+            var segment = Segment.map(path, segmentNumber(path), segmentSize);
+            segments.put(segment.number, segment);
+          });
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    active = segments.isEmpty() ? roll(0) : segments.lastEntry().getValue();
+    LOG.info("event journal opened at {} with {} segments", directory, segments.size());
+  }
+
+  synchronized void append(EventStructure event) {
+    var traceId = bytes(event.getUuid());
+    var website = bytes(event.getWebsiteName());
+    var json = event.toJson().getBytes(StandardCharsets.UTF_8);
+    var length = Long.BYTES + Short.BYTES + traceId.length + Short.BYTES + website.length + json.length;
+    if (Integer.BYTES + length > segmentSize) {
+      LOG.warn("event {} of {} bytes does not fit in a journal segment, skipped", event.getUuid(), length);
+      return;
+    }
+    if (Integer.BYTES + length > segmentSize - active.position) {
+      active.buffer.force();
+      active = roll(active.number + 1);
+    }
+    var timestamp = System.currentTimeMillis();
+    var buffer = active.buffer;
+    var offset = active.position;
+    var index = offset + Integer.BYTES;
+    buffer.putLong(index, timestamp);
+    index += Long.BYTES;
+    buffer.putShort(index, (short) traceId.length);
+    buffer.put(index + Short.BYTES, traceId);
+    index += Short.BYTES + traceId.length;
+    buffer.putShort(index, (short) website.length);
+    buffer.put(index + Short.BYTES, website);
+    index += Short.BYTES + website.length;
+    buffer.put(index, json);
+    buffer.putInt(offset, length);
+    active.index(offset, timestamp, event.getUuid(), event.getWebsiteName());
+    active.position = offset + Integer.BYTES + length;
+    dirty = true;
+  }
+
+  /**
+   * Journaled events, oldest first, as their json.
+   *
+   * @param traceId nullable, only the events of this trace
+   * @param website nullable, only the events of this website
+   * @param from    nullable, only the events journaled at or after this instant
+   * @param to      nullable, only the events journaled before this instant
+   */
+  public synchronized List<String> query(String traceId, String website, Instant from, Instant to, int limit) {
+    var fromMillis = Objects.isNull(from) ? Long.MIN_VALUE : from.toEpochMilli();
+    var toMillis = Objects.isNull(to) ? Long.MAX_VALUE : to.toEpochMilli();
+    var events = new ArrayList<String>();
+    for (var segment : segments.values()) {
+      if (segment.lastTimestamp < fromMillis || segment.firstTimestamp >= toMillis)
+        continue;
+      for (var offset : segment.candidates(traceId, website)) {
+        if (events.size() >= limit)
+          return events;
+        var entry = segment.read(offset);
+        if (entry.timestamp() >= fromMillis && entry.timestamp() < toMillis
+          && matches(traceId, entry.traceId()) && matches(website, entry.website()))
+          events.add(entry.json());
+      }
+    }
+    return events;
+  }
+
+  synchronized void flush() {
+    if (!dirty || active == null)
+      return;
+    active.buffer.force();
+    dirty = false;
+  }
+
+  synchronized void sweep() {
+    var expiry = System.currentTimeMillis() - retention.toMillis();
+    var expired = segments.values().stream()
+      .filter(segment -> segment != active && segment.lastTimestamp < expiry)
+      .toList();
+    for (var segment : expired) {
+      segments.remove(segment.number);
+      try {
+        Files.deleteIfExists(segment.path);
+        LOG.debug("removed expired journal segment {}", segment.path);
+      } catch (IOException e) {
+        LOG.warn("failed to remove journal segment {} due to {}", segment.path, e.getMessage());
+      }
+    }
+  }
+
+  private Segment roll(long number) {
+    var path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    var segment = Segment.map(path, number, segmentSize);
+    segments.put(number, segment);
+    LOG.debug("journal segment {} created", path);
+    return segment;
+  }
+
+  private static boolean matches(String expected, String actual) {
+    return Objects.isNull(expected) || expected.equals(actual);
+  }
+
+  private static byte[] bytes(String value) {
+    return Objects.isNull(value) ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static boolean isSegment(Path path) {
+    var name = path.getFileName().toString();
+    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+  }
+
+  private static long segmentNumber(Path path) {
+    var name = path.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static final class Segment {
+    private final long number;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final Map<String, Offsets> byTraceId = new HashMap<>();
+    private final Map<String, Offsets> byWebsite = new HashMap<>();
+    private final Offsets all = new Offsets();
+    private int position;
+    private long firstTimestamp = Long.MAX_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private Segment(long number, Path path, MappedByteBuffer buffer) {
+      this.number = number;
+      this.path = path;
+      this.buffer = buffer;
+    }
+
+    // the mapping stays valid once the channel is closed
+    static Segment map(Path path, long number, int size) {
+      try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+        var segment = new Segment(number, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        segment.recover();
+        return segment;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private void recover() {
+      while (position + Integer.BYTES <= buffer.capacity()) {
+        var length = buffer.getInt(position);
+        if (length <= 0 || position + Integer.BYTES + length > buffer.capacity())
+          break;
+        var entry = read(position);
+        index(position, entry.timestamp(), entry.traceId(), entry.website());
+        position += Integer.BYTES + length;
+      }
+    }
+
+    void index(int offset, long timestamp, String traceId, String website) {
+      all.add(offset);
+      if (Objects.nonNull(traceId) && !traceId.isEmpty())
+        byTraceId.computeIfAbsent(traceId, k -> new Offsets()).add(offset);
+      if (Objects.nonNull(website) && !website.isEmpty())
+        byWebsite.computeIfAbsent(website, k -> new Offsets()).add(offset);
+      firstTimestamp = Math.min(firstTimestamp, timestamp);
+      lastTimestamp = Math.max(lastTimestamp, timestamp);
+    }
+
+    int[] candidates(String traceId, String website) {
+      if (Objects.nonNull(traceId))
+        return byTraceId.getOrDefault(traceId, Offsets.EMPTY).toArray();
+      if (Objects.nonNull(website))
+        return byWebsite.getOrDefault(website, Offsets.EMPTY).toArray();
+      return all.toArray();
+    }
+
+    Entry read(int offset) {
+      var length = buffer.getInt(offset);
+      var index = offset + Integer.BYTES;
+      var timestamp = buffer.getLong(index);
+      index += Long.BYTES;
+      var traceId = string(index + Short.BYTES, buffer.getShort(index));
+      index += Short.BYTES + buffer.getShort(index);
+      var website = string(index + Short.BYTES, buffer.getShort(index));
+      index += Short.BYTES + buffer.getShort(index);
+      var json = string(index, offset + Integer.BYTES + length - index);
+      return new Entry(timestamp, traceId, website, json);
+    }
+
+    private String string(int index, int length) {
+      var bytes = new byte[length];
+      buffer.get(index, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  private record Entry(long timestamp, String traceId, String website, String json) {
+  }
+
+  // record offsets of a segment as a growable int array
+  private static final class Offsets {
+    private static final Offsets EMPTY = new Offsets();
+    private int[] values = new int[8];
+    private int size;
+
+    void add(int offset) {
+      if (size == values.length)
+        values = Arrays.copyOf(values, size * 2);
+      values[size++] = offset;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -1,7 +1,7 @@
 package io.spaship.operator.business;
 
 import io.spaship.operator.type.EventStructure;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.mutiny.core.Vertx;
 import org.eclipse.microprofile.config.ConfigProvider;
 import org.slf4j.Logger;
@@ -15,16 +15,17 @@ public class EventManager {
   private static final Logger LOG = LoggerFactory.getLogger(EventManager.class);
   private final String busAddress;
   private final Vertx vertx;
+  private final DeliveryOptions deliveryOptions = new DeliveryOptions().setCodecName(EventStructureCodec.NAME);
 
 
   public EventManager(Vertx vertx) {
     this.vertx = vertx;
     busAddress = ConfigProvider.getConfig().getValue("operator.event.bus.address", String.class);
+    vertx.eventBus().registerCodec(new EventStructureCodec());
   }
 
   public void queue(EventStructure event) {
-    JsonObject messageBody = JsonObject.mapFrom(event);
-    vertx.eventBus().publish(busAddress, messageBody);
+    vertx.eventBus().publish(busAddress, event, deliveryOptions);
     LOG.debug("event scheduled");
   }
 
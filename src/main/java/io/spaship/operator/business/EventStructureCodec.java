@@ -0,0 +1,61 @@
+package io.spaship.operator.business;
+
+import io.spaship.operator.type.EventStructure;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Passes events to consumers of the same JVM as they are, the event is serialised only if it has to go over the wire
+ * and then with the JSON it caches.
+ */
+public class EventStructureCodec implements MessageCodec<EventStructure, EventStructure> {
+
+  public static final String NAME = "spaship-event";
+
+  @Override
+  public void encodeToWire(Buffer buffer, EventStructure event) {
+    var json = event.toJson().getBytes(StandardCharsets.UTF_8);
+    buffer.appendInt(json.length);
+    buffer.appendBytes(json);
+  }
+
+  @Override
+  public EventStructure decodeFromWire(int pos, Buffer buffer) {
+    var length = buffer.getInt(pos);
+    var json = new JsonObject(buffer.getBuffer(pos + 4, pos + 4 + length));
+    // the event is immutable and has no default constructor, it is rebuilt through its builder
+    var dateTime = json.getString("dateTime");
+    var meta = json.getJsonObject("meta");
+    return EventStructure.builder()
+      .dateTime(Objects.isNull(dateTime) ? null : LocalDateTime.parse(dateTime))
+      .uuid(json.getString("uuid"))
+      .websiteName(json.getString("websiteName"))
+      .environmentName(json.getString("environmentName"))
+      .state(json.getString("state"))
+      .spaName(json.getString("spaName"))
+      .contextPath(json.getString("contextPath"))
+      .accessUrl(json.getString("accessUrl"))
+      .meta(Objects.isNull(meta) ? null : meta.getMap())
+      .build();
+  }
+
+  @Override
+  public EventStructure transform(EventStructure event) {
+    return event;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+}
@@ -0,0 +1,252 @@
+package io.spaship.operator.business;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.spaship.operator.type.EventStructure;
+import io.spaship.operator.type.SequencedEvent;
+import io.vertx.mutiny.core.Vertx;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Fans the events of the bus out to the SSE subscribers. There is one bus consumer for all of them, and every
+ * subscription is indexed under the most selective attribute of its filter (trace id, then website, environment and
+ * state), so an event is only matched against the subscriptions that can possibly want it.
+ * <p>
+ * Every event gets a monotonically increasing id and is kept in a bounded {@link EventHistory}, a subscriber that
+ * passes the id of the last event it has seen first receives what it missed. Events reach a subscriber through its
+ * own bounded {@link SubscriberQueue}, so a slow client never holds the dispatcher up. The bus is consumed from startup
+ * on, the history holds the events published before the first subscriber came.
+ * <p>
+ * The lag of every subscription is a gauge tagged with the number of the subscription, which is removed when the
+ * subscriber goes away and reused by the next one, so there are never more series than subscribers connected at once.
+ */
+@Singleton
+public class EventSubscriptions {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventSubscriptions.class);
+  private static final String SUBSCRIPTION_TAG = "subscription";
+
+  private final Map<String, Set<Subscription>> byTraceId = new ConcurrentHashMap<>();
+  private final Map<String, Set<Subscription>> byWebsite = new ConcurrentHashMap<>();
+  private final Map<String, Set<Subscription>> byEnvironment = new ConcurrentHashMap<>();
+  private final Map<String, Set<Subscription>> byState = new ConcurrentHashMap<>();
+  private final Set<Subscription> unfiltered = ConcurrentHashMap.newKeySet();
+  private final Set<Subscription> all = ConcurrentHashMap.newKeySet();
+  private final Map<SubscriberQueue, Gauge> lagBySubscription = new ConcurrentHashMap<>();
+  // numbers of the connected subscriptions, the lowest free one is given to a new subscription
+  private final BitSet numbers = new BitSet();
+  // guards the history and orders the replay of a new subscriber before the events dispatched after it
+  private final EventHistory history;
+  private final int bufferSize;
+  private final SubscriberQueue.OverflowPolicy overflowPolicy;
+  private final MeterRegistry registry;
+  private final DistributionSummary lag;
+  private final Counter dropped;
+  private final Counter disconnected;
+
+  @Inject
+  public EventSubscriptions(MeterRegistry registry) {
+    this(registry, ConfigProvider.getConfig().getOptionalValue("operator.event.history.size", Integer.class)
+        .orElse(10000), System.currentTimeMillis() * 1000,
+      ConfigProvider.getConfig().getOptionalValue("operator.event.subscriber.buffer.size", Integer.class).orElse(1000),
+      SubscriberQueue.OverflowPolicy.of(ConfigProvider.getConfig()
+        .getOptionalValue("operator.event.subscriber.overflow", String.class).orElse("drop-oldest")));
+  }
+
+  EventSubscriptions(MeterRegistry registry, int historySize, long firstEventId, int bufferSize,
+                     SubscriberQueue.OverflowPolicy overflowPolicy) {
+    this.registry = registry;
+    this.history = new EventHistory(historySize, firstEventId);
+    this.bufferSize = bufferSize;
+    this.overflowPolicy = overflowPolicy;
+    this.lag = DistributionSummary.builder("spaship.event.subscriber.lag")
+      .description("events queued for a subscriber when another one is dispatched to it")
+      .publishPercentileHistogram()
+      .register(registry);
+    this.dropped = registry.counter("spaship.event.subscriber.dropped");
+    this.disconnected = registry.counter("spaship.event.subscriber.disconnected");
+    Gauge.builder("spaship.event.subscriber.lag.max", all,
+        subscriptions -> subscriptions.stream().mapToInt(s -> s.queue().lag()).max().orElse(0))
+      .description("events queued for the slowest subscriber")
+      .register(registry);
+    Gauge.builder("spaship.event.subscribers", all, Set::size)
+      .description("connected event stream subscribers")
+      .register(registry);
+  }
+
+  void onStartup(@Observes StartupEvent startupEvent, Vertx vertx) {
+    var busAddress = ConfigProvider.getConfig().getValue("operator.event.bus.address", String.class);
+    vertx.eventBus().<EventStructure>consumer(busAddress).handler(message -> dispatch(message.body()));
+  }
+
+  /**
+   * Streams the events matching the filter until the subscriber cancels.
+   *
+   * @param lastEventId id of the last event the subscriber has seen, null to only stream new events
+   */
+  public Multi<SequencedEvent> subscribe(Filter filter, Long lastEventId) {
+    return subscribe(filter, lastEventId, 1, Duration.ZERO).map(batch -> batch.get(0));
+  }
+
+  /**
+   * Streams the events matching the filter in batches of up to {@code batchSize} events, a partial batch is emitted
+   * once the {@code batchWindow} has elapsed. Events wait for a slow subscriber in its queue only, under the overflow
+   * policy.
+   *
+   * @param lastEventId id of the last event the subscriber has seen, null to only stream new events
+   */
+  public Multi<List<SequencedEvent>> subscribe(Filter filter, Long lastEventId, int batchSize, Duration batchWindow) {
+    return Multi.createFrom().deferred(() -> {
+      var queue = new SubscriberQueue(bufferSize, overflowPolicy, batchSize, batchWindow,
+        terminated -> remove(new Subscription(filter, terminated)));
+      synchronized (history) {
+        if (Objects.nonNull(lastEventId))
+          queue.replay(history.after(lastEventId).stream()
+            .filter(event -> filter.matches(event.event()))
+            .toList());
+        add(new Subscription(filter, queue));
+      }
+      LOG.debug("event subscriber added with filter {} from {}, {} connected", filter, lastEventId, all.size());
+      return Multi.createFrom().publisher(queue);
+    });
+  }
+
+  /**
+   * Events of the trace that are still in the history, oldest first.
+   */
+  public List<SequencedEvent> history(String traceId) {
+    synchronized (history) {
+      return history.ofTrace(traceId);
+    }
+  }
+
+  void dispatch(EventStructure event) {
+    synchronized (history) {
+      var sequenced = history.append(event);
+      if (all.isEmpty())
+        return;
+      deliver(byTraceId, event.getUuid(), sequenced);
+      deliver(byWebsite, event.getWebsiteName(), sequenced);
+      deliver(byEnvironment, event.getEnvironmentName(), sequenced);
+      deliver(byState, event.getState(), sequenced);
+      deliver(unfiltered, sequenced);
+    }
+  }
+
+  private void deliver(Map<String, Set<Subscription>> index, String value, SequencedEvent event) {
+    if (Objects.nonNull(value))
+      Optional.ofNullable(index.get(value)).ifPresent(subscriptions -> deliver(subscriptions, event));
+  }
+
+  private void deliver(Set<Subscription> subscriptions, SequencedEvent event) {
+    for (var subscription : subscriptions) {
+      if (!subscription.filter().matches(event.event()))
+        continue;
+      var queue = subscription.queue();
+      lag.record(queue.lag());
+      if (queue.offer(event))
+        continue;
+      if (overflowPolicy == SubscriberQueue.OverflowPolicy.DISCONNECT) {
+        disconnected.increment();
+        LOG.warn("disconnected event subscriber with filter {}, it fell {} events behind", subscription.filter(),
+          bufferSize);
+      } else {
+        dropped.increment();
+      }
+    }
+  }
+
+  private void add(Subscription subscription) {
+    all.add(subscription);
+    lagBySubscription.put(subscription.queue(), Gauge.builder("spaship.event.subscription.lag", subscription.queue(),
+        queue -> queue.lag())
+      .description("events queued for the subscription")
+      .tag(SUBSCRIPTION_TAG, String.valueOf(takeNumber()))
+      .register(registry));
+    index(subscription.filter())
+      .ifPresentOrElse(index -> index.index().computeIfAbsent(index.value(), k -> ConcurrentHashMap.newKeySet())
+        .add(subscription), () -> unfiltered.add(subscription));
+  }
+
+  private void remove(Subscription subscription) {
+    if (!all.remove(subscription))
+      return;
+    Optional.ofNullable(lagBySubscription.remove(subscription.queue())).ifPresent(gauge -> {
+      registry.remove(gauge);
+      releaseNumber(Integer.parseInt(gauge.getId().getTag(SUBSCRIPTION_TAG)));
+    });
+    index(subscription.filter())
+      .ifPresentOrElse(index -> index.index().computeIfPresent(index.value(), (k, subscriptions) -> {
+        subscriptions.remove(subscription);
+        return subscriptions.isEmpty() ? null : subscriptions;
+      }), () -> unfiltered.remove(subscription));
+  }
+
+  private int takeNumber() {
+    synchronized (numbers) {
+      var number = numbers.nextClearBit(0);
+      numbers.set(number);
+      return number;
+    }
+  }
+
+  private void releaseNumber(int number) {
+    synchronized (numbers) {
+      numbers.clear(number);
+    }
+  }
+
+  private Optional<IndexEntry> index(Filter filter) {
+    if (Objects.nonNull(filter.traceId()))
+      return Optional.of(new IndexEntry(byTraceId, filter.traceId()));
+    if (Objects.nonNull(filter.website()))
+      return Optional.of(new IndexEntry(byWebsite, filter.website()));
+    if (Objects.nonNull(filter.environment()))
+      return Optional.of(new IndexEntry(byEnvironment, filter.environment()));
+    if (Objects.nonNull(filter.state()))
+      return Optional.of(new IndexEntry(byState, filter.state()));
+    return Optional.empty();
+  }
+
+  /**
+   * Attributes an event must have to be streamed, a null attribute matches anything.
+   */
+  public record Filter(String traceId, String website, String environment, String state) {
+
+    public boolean matches(EventStructure event) {
+      return matches(traceId, event, EventStructure::getUuid)
+        && matches(website, event, EventStructure::getWebsiteName)
+        && matches(environment, event, EventStructure::getEnvironmentName)
+        && matches(state, event, EventStructure::getState);
+    }
+
+    private static boolean matches(String expected, EventStructure event, Function<EventStructure, String> attribute) {
+      return Objects.isNull(expected) || expected.equals(attribute.apply(event));
+    }
+  }
+
+  private record Subscription(Filter filter, SubscriberQueue queue) {
+  }
+
+  private record IndexEntry(Map<String, Set<Subscription>> index, String value) {
+  }
+}
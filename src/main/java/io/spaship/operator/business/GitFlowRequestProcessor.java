@@ -1,26 +1,44 @@
 package io.spaship.operator.business;
 
 
+import io.fabric8.kubernetes.client.dsl.LogWatch;
+import io.fabric8.kubernetes.client.dsl.Loggable;
+import io.fabric8.openshift.api.model.Build;
 import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.TimeoutException;
 import io.smallrye.mutiny.Uni;
 
 import io.spaship.operator.config.SPAShipThreadPool;
+import io.spaship.operator.repo.BuildLogCache;
+import io.spaship.operator.service.PipelineMetrics;
+import io.spaship.operator.service.PipelineMetrics.Stage;
+import io.spaship.operator.service.k8s.BuildCache;
+import io.spaship.operator.service.k8s.BuildSupersession;
+import io.spaship.operator.service.k8s.BuildWatcher;
 import io.spaship.operator.service.k8s.GitFlowResourceProvisioner;
 import io.spaship.operator.type.*;
 import io.spaship.operator.util.BuildConfigYamlModifier;
+import io.spaship.operator.util.LineChunkReader;
+import io.spaship.operator.util.LogFilter;
 import io.spaship.operator.util.ReUsableItems;
+import io.spaship.operator.util.StageExecutor;
+import io.vertx.mutiny.core.buffer.Buffer;
 
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
-import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
 import java.util.function.Function;
@@ -31,24 +49,102 @@ import java.util.function.Supplier;
 public class GitFlowRequestProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(GitFlowRequestProcessor.class);
-    private static final int NO_OF_RETRY = 6;
-    private static final int RETRY_BACKOFF_DELAY = 3000;
 
     private final GitFlowResourceProvisioner provisioner;
     private final SsrRequestProcessor cdProcessor;
     private final EventManager eventManager;
-
-    ExecutorService gitFlowExecutorSvc = SPAShipThreadPool.cachedThreadPool();
-
-
-
-    public GitFlowRequestProcessor(GitFlowResourceProvisioner provisioner, SsrRequestProcessor cdProcessor, EventManager eventManager) {
+    private final PipelineMetrics metrics;
+    private final BuildWatcher buildWatcher;
+    private final BuildLogCache buildLogCache;
+    private final BuildCache buildCache;
+    private final BuildSupersession buildSupersession;
+    private final Duration buildWaitTimeout;
+    private final StageExecutor.Policy stagePolicy;
+    private final int logChunkSize;
+    private final int logSearchMaxMatches;
+    private final int logSearchMaxContext;
+    private final int logSearchMaxQueryLength;
+    private final Duration logSearchMatchTimeout;
+
+    // bulkheads, a burst of deployments does not hold up status checks and followed logs do not starve either
+    private final ExecutorService pipelinePool;
+    private final ExecutorService statusPool;
+    private final ExecutorService logPool;
+    // the reads of the log streams the log pool has opened, it queues instead of rejecting
+    private final ExecutorService logReadPool;
+    // the deployments that follow the builds of accepted requests, it queues instead of rejecting
+    private final ExecutorService deploymentPool;
+    private final StageExecutor stageExecutor;
+    private final StageExecutor deploymentExecutor;
+    private final StageExecutor statusExecutor;
+
+
+
+    public GitFlowRequestProcessor(GitFlowResourceProvisioner provisioner, SsrRequestProcessor cdProcessor,
+                                   EventManager eventManager, PipelineMetrics metrics, BuildWatcher buildWatcher,
+                                   BuildLogCache buildLogCache, BuildCache buildCache,
+                                   BuildSupersession buildSupersession) {
         this.provisioner = provisioner;
         this.cdProcessor = cdProcessor;
         this.eventManager = eventManager;
+        this.metrics = metrics;
+        this.buildWatcher = buildWatcher;
+        this.buildLogCache = buildLogCache;
+        this.buildCache = buildCache;
+        this.buildSupersession = buildSupersession;
+        this.buildWaitTimeout = Duration.ofMinutes(ConfigProvider.getConfig()
+                .getOptionalValue("operator.build.wait.timeout.minutes", Long.class).orElse(180L));
+        var config = ConfigProvider.getConfig();
+        this.logChunkSize = config.getOptionalValue("operator.log.chunk.size", Integer.class).orElse(16384);
+        this.logSearchMaxMatches = config.getOptionalValue("operator.log.search.max.matches", Integer.class)
+                .orElse(1000);
+        this.logSearchMaxContext = config.getOptionalValue("operator.log.search.max.context", Integer.class)
+                .orElse(100);
+        this.logSearchMaxQueryLength = config.getOptionalValue("operator.log.search.max.query.length",
+                Integer.class).orElse(256);
+        this.logSearchMatchTimeout = Duration.ofMillis(config.getOptionalValue(
+                "operator.log.search.match.timeout.ms", Long.class).orElse(100L));
+        this.stagePolicy = new StageExecutor.Policy(
+                config.getOptionalValue("operator.gitflow.stage.retries", Integer.class).orElse(6),
+                Duration.ofMillis(config.getOptionalValue("operator.gitflow.stage.backoff.initial.ms", Long.class)
+                        .orElse(500L)),
+                Duration.ofMillis(config.getOptionalValue("operator.gitflow.stage.backoff.max.ms", Long.class)
+                        .orElse(10000L)),
+                Duration.ofMillis(config.getOptionalValue("operator.gitflow.stage.timeout.ms", Long.class)
+                        .orElse(120000L)));
+        this.pipelinePool = boundedPool("pipeline", 16, 100);
+        this.statusPool = boundedPool("status", 8, 200);
+        this.logPool = boundedPool("log", 64, 64);
+        this.logReadPool = SPAShipThreadPool.queueingPool("gitflow-log-read", config
+                .getOptionalValue("operator.gitflow.pool.log.read.threads", Integer.class).orElse(64));
+        this.deploymentPool = SPAShipThreadPool.queueingPool("gitflow-deployment", config
+                .getOptionalValue("operator.gitflow.pool.deployment.threads", Integer.class).orElse(8));
+        this.stageExecutor = new StageExecutor(pipelinePool);
+        this.deploymentExecutor = new StageExecutor(deploymentPool);
+        this.statusExecutor = new StageExecutor(statusPool);
+        metrics.monitor("gitflow-pipeline", pipelinePool);
+        metrics.monitor("gitflow-status", statusPool);
+        metrics.monitor("gitflow-log", logPool);
+        metrics.monitor("gitflow-log-read", logReadPool);
+        metrics.monitor("gitflow-deployment", deploymentPool);
         LOG.debug("provisioner injected");
     }
 
+    /**
+     * The pool the logs are read on, for the streams built upon them. Beans reach it through this method, the fields of
+     * their client proxy are not initialised.
+     */
+    public ExecutorService logExecutor() {
+        return logPool;
+    }
+
+    private static ExecutorService boundedPool(String name, int threads, int queueSize) {
+        var config = ConfigProvider.getConfig();
+        return SPAShipThreadPool.boundedPool("gitflow-" + name,
+                config.getOptionalValue("operator.gitflow.pool." + name + ".threads", Integer.class).orElse(threads),
+                config.getOptionalValue("operator.gitflow.pool." + name + ".queue", Integer.class).orElse(queueSize));
+    }
+
     private static GeneralResponse<String> exceptionDuringReadinessCheck(Throwable err) {
         return new GeneralResponse<>("Failed to check deployment status due to ".concat(err.getMessage())
                 , GeneralResponse.Status.ERR);
@@ -62,40 +158,158 @@ public class GitFlowRequestProcessor {
     }
 
     /**
-     * Creates a repository of functions for fetching logs based on the LogType.
+     * Creates a repository of functions for opening logs based on the LogType.
      * Each function in the repository takes a request object named FetchK8sInfoRequest as input and
-     * returns a list of log lines.The repository is a Map where the key is the LogType and the value
+     * returns the log to read from. The repository is a Map where the key is the LogType and the value
      * is the corresponding function.
-     * @return A Map of LogType to Function, where each function fetches logs based on the FetchK8sInfoRequest input.
+     * @return A Map of LogType to Function, where each function opens a log based on the FetchK8sInfoRequest input.
      */
-    Map<LogType,Function<FetchK8sInfoRequest,List<String>>>  logFunctionRepository(){
+    Map<LogType,Function<FetchK8sInfoRequest,Loggable>>  logFunctionRepository(){
         boolean isRemoteBuild = ReUsableItems.isRemoteBuild();
-        Map<LogType,Function<FetchK8sInfoRequest,List<String>>> readLogFunctionList= new EnumMap<>(LogType.class);
-        readLogFunctionList.put(LogType.BUILD,
+        Map<LogType,Function<FetchK8sInfoRequest,Loggable>> logFunctionList= new EnumMap<>(LogType.class);
+        logFunctionList.put(LogType.BUILD,
                 input -> {
                     String ns = input.ns();
                     if(isRemoteBuild)
                         ns = ReUsableItems.remoteBuildNameSpace();
-                    return readLog(provisioner.getBuildLog(input.objectName(),ns, input.upto(),isRemoteBuild));
+                    return provisioner.getBuildLog(input.objectName(),ns, input.upto(),isRemoteBuild);
                 });
-        readLogFunctionList.put(LogType.DEPLOYMENT,
-                input -> readLog(provisioner.getDeploymentLog(input.objectName(), input.ns(),
-                        input.upto(),false)));
-        readLogFunctionList.put(LogType.HTTP_DEPLOYMENT,
-                input -> readLog(provisioner.getDeploymentLog(input.objectName(), input.ns(),
-                        input.upto(),true)));
-        readLogFunctionList.put(LogType.POD,
-                input -> readLog(provisioner.getLog(input.objectName(), input.ns(), input.upto(),false)));
-        readLogFunctionList.put(LogType.HTTP_POD,
-                input -> readLog(provisioner.getLog(input.objectName(), input.ns(), input.upto(),true)));
-        return readLogFunctionList;
-    }
-
-    public Multi<String> fetchLogByType(FetchK8sInfoRequest request,LogType logType){
-        return Uni.createFrom().item(() -> logFunctionRepository().get(logType).apply(request))
-                .runSubscriptionOn(gitFlowExecutorSvc)
-                .onItem().transformToMulti(lines -> Multi.createFrom().iterable(lines))
-                .flatMap(line -> Multi.createFrom().items(line, "\n"));
+        logFunctionList.put(LogType.DEPLOYMENT,
+                input -> provisioner.getDeploymentLog(input.objectName(), input.ns(), input.upto(),false));
+        logFunctionList.put(LogType.HTTP_DEPLOYMENT,
+                input -> provisioner.getDeploymentLog(input.objectName(), input.ns(), input.upto(),true));
+        logFunctionList.put(LogType.POD,
+                input -> provisioner.getLog(input.objectName(), input.ns(), input.upto(),false));
+        logFunctionList.put(LogType.HTTP_POD,
+                input -> provisioner.getLog(input.objectName(), input.ns(), input.upto(),true));
+        return logFunctionList;
+    }
+
+    /**
+     * Streams the log as it is read, in chunks of whole lines, without holding it in memory. With follow the stream
+     * goes on until the build or the pod terminates. The log is opened on the log pool, which rejects the stream when
+     * it is full, and every read runs on the log read pool only when the client asks for more, so a stream that has
+     * been answered is never cut short. A client that goes away closes the log.
+     */
+    public Multi<Buffer> fetchLogByType(FetchK8sInfoRequest request, LogType logType, boolean follow){
+        return readLog(request, logType, follow, GitFlowRequestProcessor::readChunk);
+    }
+
+    /**
+     * Greps the log while it is streamed, only the matching lines and their context are sent. The log is read no
+     * further than the last match asked for, unless it is followed.
+     *
+     * @throws IllegalArgumentException when the query is too long or not a valid regular expression, or the level is
+     *                                  unknown
+     */
+    public Multi<Buffer> searchLog(LogSearchRequest request, LogType logType, boolean follow) {
+        if (Objects.nonNull(request.query()) && request.query().length() > logSearchMaxQueryLength)
+            throw new IllegalArgumentException("query must not be longer than " + logSearchMaxQueryLength
+                    + " characters");
+        var level = Objects.isNull(request.level()) || request.level().isBlank() ? null
+                : logLevel(request.level());
+        var maxMatches = request.maxMatches() <= 0 ? logSearchMaxMatches
+                : Math.min(request.maxMatches(), logSearchMaxMatches);
+        var filter = new LogFilter(request.query(), request.regex(), request.ignoreCase(), level,
+                Math.min(request.context(), logSearchMaxContext), maxMatches, logSearchMatchTimeout);
+        return readLog(request.target(), logType, follow, reader -> readMatches(reader, filter));
+    }
+
+    private Multi<Buffer> readLog(FetchK8sInfoRequest request, LogType logType, boolean follow,
+                                  Function<LineChunkReader, byte[]> read) {
+        if (logType == LogType.BUILD && !follow && request.upto() <= 0)
+            return finishedBuildLog(request.objectName(), request.ns())
+                    .onItem().transformToMulti(cached -> Objects.isNull(cached)
+                            ? streamLog(() -> openLog(logFunctionRepository().get(logType).apply(request), false),
+                            read)
+                            : streamLog(() -> new LineChunkReader(cached.open(), logChunkSize), read));
+        return streamLog(() -> openLog(logFunctionRepository().get(logType).apply(request), follow), read);
+    }
+
+    /**
+     * The complete log of an ended build, from the cache or fetched into it. Emits null while the build has not
+     * ended, its log is not final yet.
+     */
+    public Uni<BuildLogCache.Entry> finishedBuildLog(String buildName, String ns) {
+        boolean isRemoteBuild = ReUsableItems.isRemoteBuild();
+        var buildNs = isRemoteBuild ? ReUsableItems.remoteBuildNameSpace() : ns;
+        return buildLogCache.computeIfAbsent(new BuildLogCache.Key(buildNs, buildName, isRemoteBuild), () -> {
+            if (!BuildWatcher.hasEnded(provisioner.checkBuildPhase(buildName, buildNs, isRemoteBuild)))
+                return null;
+            return provisioner.getBuildLog(buildName, buildNs, 0, isRemoteBuild).getLogInputStream();
+        }, logPool);
+    }
+
+    private Multi<Buffer> streamLog(Callable<LineChunkReader> opener, Function<LineChunkReader, byte[]> read) {
+        return Uni.createFrom().item(() -> open(opener))
+                .runSubscriptionOn(logPool)
+                .onItem().transformToMulti(reader -> Multi.createBy().repeating()
+                        .uni(() -> Uni.createFrom().item(() -> Optional.ofNullable(read.apply(reader)))
+                                .runSubscriptionOn(logReadPool))
+                        .until(Optional::isEmpty)
+                        .map(chunk -> Buffer.buffer(chunk.get()))
+                        .onTermination().invoke(() -> closeLog(reader)));
+    }
+
+    private static LineChunkReader open(Callable<LineChunkReader> opener) {
+        try {
+            return opener.call();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private LineChunkReader openLog(Loggable log, boolean follow) {
+        if (follow) {
+            LogWatch watch = log.watchLog();
+            return new LineChunkReader(new FilterInputStream(watch.getOutput()) {
+                @Override
+                public void close() {
+                    watch.close();
+                }
+            }, logChunkSize);
+        }
+        return new LineChunkReader(log.getLogInputStream(), logChunkSize);
+    }
+
+    private static byte[] readChunk(LineChunkReader reader) {
+        try {
+            return reader.next();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static LogFilter.Level logLevel(String level) {
+        try {
+            return LogFilter.Level.valueOf(level.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown log level " + level + ", expected one of "
+                    + Arrays.toString(LogFilter.Level.values()).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    // reads on until a chunk holds a match, null once the log is over or the filter is done
+    private static byte[] readMatches(LineChunkReader reader, LogFilter filter) {
+        while (!filter.isDone()) {
+            var chunk = readChunk(reader);
+            var matches = Objects.isNull(chunk) ? filter.finish() : filter.filter(chunk);
+            if (matches.length > 0)
+                return matches;
+            if (Objects.isNull(chunk))
+                return null;
+        }
+        return null;
+    }
+
+    private static void closeLog(LineChunkReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            LOG.debug("failed to close the log stream due to {}", e.getMessage());
+        }
     }
 
     public Uni<GeneralResponse<List<String>>> listPods(Optional<String> deploymentName, Optional<String> ns) {
@@ -104,39 +318,24 @@ public class GitFlowRequestProcessor {
         return Uni.createFrom().item( ()-> new GeneralResponse<>(
                 provisioner.getPodNames(deployment,nameSpace),GeneralResponse.Status.ACCEPTED)
                 )
-                .runSubscriptionOn(gitFlowExecutorSvc);
+                .runSubscriptionOn(statusPool);
     }
 
-    private List<String> readLog(Reader reader) {
-        try (BufferedReader bufferedReader = new BufferedReader(reader)) {
-            List<String> lines = bufferedReader.lines().toList();
-            LOG.debug("to check in which thread is this running on");
-            return lines;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-
     public Uni<GeneralResponse<String>> readinessStatOfDeployment(FetchK8sInfoRequest request) {
-        return Uni.createFrom().item(request).emitOn(gitFlowExecutorSvc).map(r ->
-                {
-                    if (provisioner.deploymentIsReady(r.objectName(), r.ns()))
+        return statusExecutor.run(() -> {
+                    if (provisioner.deploymentIsReady(request.objectName(), request.ns()))
                         return new GeneralResponse<>("Deployment is now running and ready for traffic."
                                 , GeneralResponse.Status.READY);
                     return new GeneralResponse<>("Deployment is in progress."
                             , GeneralResponse.Status.IN_PROGRESS);
-                })
-                .onFailure()
-                .retry()
-                .atMost(NO_OF_RETRY)
-                .onItem().delayIt().by(Duration.ofMillis(RETRY_BACKOFF_DELAY))
-                .onFailure()
+                }, stagePolicy)
+                // a saturated status pool is answered with a 429, not with a failed check
+                .onFailure(failure -> !(failure instanceof RejectedExecutionException))
                 .recoverWithItem(GitFlowRequestProcessor::exceptionDuringReadinessCheck);
     }
 
     public Uni<GeneralResponse<String>> checkBuildPhase(FetchK8sInfoRequest reqBody) {
-        return Uni.createFrom().item(reqBody).emitOn(gitFlowExecutorSvc).map(item->{
+        return Uni.createFrom().item(reqBody).emitOn(statusPool).map(item->{
             boolean isRemoteBuild = ReUsableItems.isRemoteBuild();
             String ns = null;
             if(isRemoteBuild){
@@ -158,19 +357,33 @@ public class GitFlowRequestProcessor {
 
     Uni<GitFlowResponse> processHandler(GitFlowMeta reqBody) {
         LOG.debug("inside method processHandler");
-        return Uni.createFrom().item(() -> reqBody)
-                .emitOn(gitFlowExecutorSvc)
+        // every stage runs on the pipeline pool, the response is emitted as soon as the build is triggered. A request
+        // that finds the pool full is rejected right away instead of being retried
+        return Uni.createFrom().item(reqBody)
+                .emitOn(pipelinePool)
                 .flatMap(this::checkProjectExistenceWithResiliency)
                 .flatMap(this::createOrReturnImageStreamWithResiliency)
-                .flatMap(this::createOrUpdateBuildConfigWithResiliency)
-                .flatMap(this::triggerBuildWithResiliency)
-                .flatMap(this::deploymentHandler);
+                .flatMap(meta -> lookUpBuildCacheWithResiliency(meta)
+                        .flatMap(lookup -> lookup.hit()
+                                ? reuseBuildWithResiliency(meta, lookup.cached())
+                                .flatMap(reused -> deploymentHandler(reused,
+                                        response -> Uni.createFrom().item(lookup.cached())))
+                                : createOrUpdateBuildConfigWithResiliency(meta)
+                                .flatMap(req -> triggerBuildWithResiliency(req, lookup))
+                                .flatMap(this::deploymentHandler)));
     }
 
     Uni<GitFlowResponse> deploymentHandler(GitFlowMeta preDeployment) {
+        return deploymentHandler(preDeployment, response -> waitForBuildEnd(response)
+                .map(build -> isSuperseded(response, build) ? null : build));
+    }
+
+    // buildEnd emits the ended build the deployment continues with, null when there is nothing to deploy
+    Uni<GitFlowResponse> deploymentHandler(GitFlowMeta preDeployment,
+                                           Function<GitFlowResponse, Uni<Build>> buildEnd) {
         Uni<GitFlowResponse> response = Uni.createFrom().item(preDeployment)
                 .map(this::buildResponse);
-        deployAppAsync(response); //how to handle this side effect ??
+        deployAppAsync(response, buildEnd); //how to handle this side effect ??
         return response;
     }
 
@@ -228,30 +441,112 @@ public class GitFlowRequestProcessor {
             default -> throw new IllegalArgumentException("Unsupported build type: " + type);
         };
     }
-    GitFlowMeta triggerBuild(GitFlowMeta input) {
+    // the build is pinned to the resolved commit and labelled with its inputs, for the build cache to find it
+    GitFlowMeta triggerBuild(GitFlowMeta input, BuildCache.Lookup lookup) {
         LOG.debug("inside method triggerBuild");
         String buildName = null;
 
         if(ReUsableItems.isRemoteBuild()){
             buildName = provisioner
-                    .triggerBuildWrapper(input.buildConfigName(),ReUsableItems.remoteBuildNameSpace(),true);
+                    .triggerBuildWrapper(input.buildConfigName(),ReUsableItems.remoteBuildNameSpace(),true,
+                            lookup.commit(), lookup.labels());
+            reportSuperseded(input, ReUsableItems.remoteBuildNameSpace(), buildName, buildSupersession
+                    .supersede(input.buildConfigName(), ReUsableItems.remoteBuildNameSpace(), true, buildName));
             return input.newGitFlowMetaWithBuildName(buildName);
         }
         buildName = provisioner
-                .triggerBuildWrapper(input.buildConfigName(), input.nameSpace(),false);
+                .triggerBuildWrapper(input.buildConfigName(), input.nameSpace(),false, lookup.commit(),
+                        lookup.labels());
+        reportSuperseded(input, input.nameSpace(), buildName,
+                buildSupersession.supersede(input.buildConfigName(), input.nameSpace(), false, buildName));
         return input.newGitFlowMetaWithBuildName(buildName);
     }
 
+    /**
+     * Reports the builds of the BuildConfig the build of the request superseded, whether it was triggered or reused.
+     * Their deployments are dropped once they have ended, see {@link #isSuperseded(GitFlowResponse, Build)}.
+     */
+    private void reportSuperseded(GitFlowMeta input, String ns, String buildName, List<Build> superseded) {
+        var deploymentDetails = input.deploymentDetails();
+        superseded.forEach(build -> {
+            Map<String, Object> meta = new HashMap<>();
+            meta.put("Name", build.getMetadata().getName());
+            meta.put("NameSpace", ns);
+            meta.put("SupersededBy", buildName);
+            eventManager.queue(EventStructure.builder()
+                    .websiteName(deploymentDetails.website())
+                    .environmentName(deploymentDetails.environment())
+                    .uuid(UUID.randomUUID().toString())
+                    .state(ExecutionStates.BUILD_SUPERSEDED.toString())
+                    .spaName(deploymentDetails.app())
+                    .contextPath("NA")
+                    .meta(meta)
+                    .build()
+            );
+        });
+    }
+
+    /**
+     * Deploys the image of a build of the same inputs instead of building it again. A remote image is deployed by
+     * its digest, a local one is tagged into the image stream of the deployment. The builds of the BuildConfig still
+     * running for older requests are cancelled, their images would otherwise be deployed over the reused one.
+     */
+    GitFlowMeta reuseBuild(GitFlowMeta input, Build cached) {
+        LOG.debug("inside method reuseBuild");
+        var buildName = cached.getMetadata().getName();
+        GitFlowMeta reused;
+        if (ReUsableItems.isRemoteBuild()) {
+            var imageUrl = ConfigProvider.getConfig().getValue("mpp.remote.build.repository.url", String.class)
+                    .concat("@").concat(GitFlowResourceProvisioner.imageDigestOf(cached));
+            reused = input.newGitFlowMetaWithImage(buildName, imageUrl);
+        } else {
+            provisioner.tagBuildImage(cached, input.nameSpace(), input.buildOutputLocation());
+            reused = input.newGitFlowMetaWithBuildName(buildName);
+        }
+        var deploymentDetails = input.deploymentDetails();
+        eventManager.queue(EventStructure.builder()
+                .websiteName(deploymentDetails.website())
+                .environmentName(deploymentDetails.environment())
+                .uuid(UUID.randomUUID().toString())
+                .state(ExecutionStates.BUILD_REUSED.toString())
+                .spaName(deploymentDetails.app())
+                .contextPath("NA")
+                .meta(GitFlowResourceProvisioner.buildMeta(cached))
+                .build()
+        );
+        var buildNs = ReUsableItems.isRemoteBuild() ? ReUsableItems.remoteBuildNameSpace() : input.nameSpace();
+        reportSuperseded(input, buildNs, buildName, buildSupersession.supersedeByReuse(input.buildConfigName(),
+                buildNs, ReUsableItems.isRemoteBuild(), buildName));
+        return reused;
+    }
+
+    /**
+     * Whether the build triggered for the request was superseded by a newer build of its BuildConfig, which deploys the
+     * environment instead. Only the build of the request is checked, a build reused from the cache is deployed whatever
+     * happened to it later.
+     */
+    private static boolean isSuperseded(GitFlowResponse response, Build build) {
+        var supersededBy = GitFlowResourceProvisioner.supersededBy(build);
+        // reported as BUILD_SUPERSEDED already
+        supersededBy.ifPresent(newer -> LOG.info("build {} was superseded by {}, its deployment is dropped",
+                response.buildName(), newer));
+        return supersededBy.isPresent();
+    }
+
     GitFlowResponse buildResponse(GitFlowMeta req) {
         return new GitFlowResponse(req.buildName(),req.deploymentName(),req);
     }
 
-    private void deployAppAsync(Uni<GitFlowResponse> preDeployment) {
+    // the wait for the end of the build does not hold a thread, the deployment continues on the deployment pool. The
+    // request was accepted already, a saturated pipeline pool must not drop its deployment
+    private void deployAppAsync(Uni<GitFlowResponse> preDeployment, Function<GitFlowResponse, Uni<Build>> buildEnd) {
         LOG.debug("Handling the app deployment asynchronously");
         AtomicReference<GitFlowMeta> deploymentItem = new AtomicReference<>();
         preDeployment
-                .flatMap(this::triggerDeploymentWithResiliency)
-                .runSubscriptionOn(gitFlowExecutorSvc)
+                .flatMap(response -> buildEnd.apply(response)
+                        .onItem().ifNotNull()
+                        .transformToUni(build -> triggerDeploymentWithResiliency(response, build)))
+                .runSubscriptionOn(deploymentPool)
                 .subscribe().with(
                         item -> {
                             LOG.debug("Deployment completed: {}", item);
@@ -264,18 +559,10 @@ public class GitFlowRequestProcessor {
                 );
     }
 
-    GitFlowMeta triggerDeployment(GitFlowResponse input) {
+    GitFlowMeta triggerDeployment(GitFlowResponse input, Build build) {
         LOG.debug("inside method triggerDeployment");
         var buildName = input.buildName();
-        var project = input.fetchNameSpace();
-        boolean isRemoteBuild = ReUsableItems.isRemoteBuild();
-        if(isRemoteBuild){
-            project = ReUsableItems.remoteBuildNameSpace();
-            waitForBuildEnd(buildName,project,input.fetchDeploymentDetails(),true);
-        }else{
-            waitForBuildEnd(buildName,project,input.fetchDeploymentDetails(),false);
-        }
-        if(!provisioner.isBuildSuccessful(buildName,project,isRemoteBuild)){
+        if(!"Complete".equals(build.getStatus().getPhase())){
             LOG.warn("Build {} failed. Please check the openshift console " +
                     "for more details. The execution will end here, " +
                     "and deployment will be skipped.",buildName);
@@ -292,7 +579,8 @@ public class GitFlowRequestProcessor {
             return input.constructedGitFlowMeta();
         }
         LOG.debug("Build is successful, continuing the deployment");
-        var outcome = cdProcessor.processSPAProvisionRequest(input.fetchDeploymentDetails());
+        var outcome = metrics.time(Stage.ROLLOUT,
+                cdProcessor.processSPAProvisionRequest(input.fetchDeploymentDetails()));
         outcome.subscribe().with(a ->{
             eventManager.queue(EventStructure.builder()
                     .websiteName(a.getString("website"))
@@ -308,50 +596,75 @@ public class GitFlowRequestProcessor {
         return input.constructedGitFlowMeta();
     }
 
-    void waitForBuildEnd(String buildName, String ns, SsrResourceDetails deploymentDetails, boolean remoteBuild){
+    /**
+     * Emits the build once it has ended, on the deployment pool. The end is signalled by the build informer of the
+     * namespace, so the deployment continues as soon as the build ends without a thread waiting for it.
+     */
+    Uni<Build> waitForBuildEnd(GitFlowResponse input) {
+        var buildName = input.buildName();
+        var remoteBuild = ReUsableItems.isRemoteBuild();
+        var ns = remoteBuild ? ReUsableItems.remoteBuildNameSpace() : input.fetchNameSpace();
+        var deploymentDetails = input.fetchDeploymentDetails();
         LOG.info("waiting for build: {} in project {} to complete",buildName,ns);
-        int attempt =0;
-        int buildAttemptLimit = 1000;
-        while(true){
-            LOG.debug("waiting for build attempt {}",attempt);
-            if(attempt> buildAttemptLimit){
-                LOG.warn("forcefully exiting the build");
-                var buildMeta = provisioner.fetchBuildMeta(buildName,ns,ReUsableItems.isRemoteBuild());
-                buildMeta.put("Description","Force exited from code to prevent from infinite looping");
-                eventManager.queue(EventStructure.builder()
-                        .websiteName(deploymentDetails.website())
-                        .environmentName(deploymentDetails.environment())
-                        .uuid(UUID.randomUUID().toString())
-                        .state(ExecutionStates.FORCE_EXITED.toString())
-                        .spaName(deploymentDetails.app())
-                        .contextPath("NA")
-                        .meta(buildMeta)
-                        .build()
-                );
-                throw new RuntimeException(
-                        "Force exiting from the check build process after "+buildAttemptLimit+" " +
-                                "tries to prevent this process from further resource blocking");
-            }
-            if(provisioner.hasBuildEnded(buildName,ns,remoteBuild)){
-                LOG.info("exiting from the while loop, the build has been ended");
-                eventManager.queue(EventStructure.builder()
-                        .websiteName(deploymentDetails.website())
-                        .environmentName(deploymentDetails.environment())
-                        .uuid(UUID.randomUUID().toString())
-                        .state(ExecutionStates.BUILD_ENDED.toString())
-                        .spaName(deploymentDetails.app())
-                        .contextPath("NA")
-                        .meta(provisioner.fetchBuildMeta(buildName,ns,ReUsableItems.isRemoteBuild()))
-                        .build()
-                );
-                break;
-            }
-            try {
-                Thread.sleep(10000);
-                attempt++;
-            } catch (InterruptedException e) {
-                throw new RuntimeException("failed to wait till build is complete "+e.getMessage());
-            }
+        return buildWatcher.awaitEnd(buildName, ns, remoteBuild)
+                .ifNoItem().after(buildWaitTimeout).fail()
+                .emitOn(deploymentPool)
+                .onFailure(TimeoutException.class)
+                .transform(e -> forceExitBuildWait(buildName, ns, remoteBuild, deploymentDetails))
+                .invoke(build -> {
+                    LOG.info("the build {} has been ended", buildName);
+                    recordBuildStages(build);
+                    // the log is final now, dashboards read it from the cache from now on
+                    finishedBuildLog(buildName, input.fetchNameSpace()).subscribe().with(
+                            entry -> LOG.debug("log of build {} cached", buildName),
+                            e -> LOG.warn("failed to cache the log of build {} due to {}", buildName, e.getMessage()));
+                    eventManager.queue(EventStructure.builder()
+                            .websiteName(deploymentDetails.website())
+                            .environmentName(deploymentDetails.environment())
+                            .uuid(UUID.randomUUID().toString())
+                            .state(ExecutionStates.BUILD_ENDED.toString())
+                            .spaName(deploymentDetails.app())
+                            .contextPath("NA")
+                            .meta(GitFlowResourceProvisioner.buildMeta(build))
+                            .build()
+                    );
+                });
+    }
+
+    private RuntimeException forceExitBuildWait(String buildName, String ns, boolean remoteBuild,
+                                                SsrResourceDetails deploymentDetails) {
+        LOG.warn("forcefully exiting the build");
+        var buildMeta = provisioner.fetchBuildMeta(buildName,ns,remoteBuild);
+        buildMeta.put("Description","Force exited from code to prevent from infinite looping");
+        eventManager.queue(EventStructure.builder()
+                .websiteName(deploymentDetails.website())
+                .environmentName(deploymentDetails.environment())
+                .uuid(UUID.randomUUID().toString())
+                .state(ExecutionStates.FORCE_EXITED.toString())
+                .spaName(deploymentDetails.app())
+                .contextPath("NA")
+                .meta(buildMeta)
+                .build()
+        );
+        return new RuntimeException("Force exiting from the check build process after " + buildWaitTimeout
+                + " to prevent this process from further resource blocking");
+    }
+
+    // queue and run time as reported by the build itself, its timestamps are rfc3339 strings
+    private void recordBuildStages(Build build) {
+        try {
+            var created = build.getMetadata().getCreationTimestamp();
+            var started = build.getStatus().getStartTimestamp();
+            var completed = build.getStatus().getCompletionTimestamp();
+            if (Objects.isNull(created) || Objects.isNull(started) || Objects.isNull(completed))
+                return;
+            var succeeded = "Complete".equals(build.getStatus().getPhase());
+            metrics.record(Stage.BUILD_QUEUE, Duration.between(Instant.parse(created), Instant.parse(started)), true);
+            metrics.record(Stage.BUILD_RUN, Duration.between(Instant.parse(started), Instant.parse(completed)),
+                    succeeded);
+        } catch (Exception e) {
+            LOG.warn("failed to record the stages of build {} due to {}", build.getMetadata().getName(),
+                    e.getMessage());
         }
     }
 
@@ -388,23 +701,42 @@ public class GitFlowRequestProcessor {
         return applyResiliency(() -> createOrUpdateBuildConfig(req), GitFlowStates.BUILD_CFG_CREATE, req);
     }
 
-    private Uni<GitFlowMeta> triggerBuildWithResiliency(GitFlowMeta req) {
-        return applyResiliency(() -> triggerBuild(req), GitFlowStates.BUILD_TRIGGER, req);
+    private Uni<BuildCache.Lookup> lookUpBuildCacheWithResiliency(GitFlowMeta req) {
+        return applyResiliency(() -> buildCache.lookUp(req), GitFlowStates.BUILD_CACHE_LOOKUP, req);
+    }
+
+    private Uni<GitFlowMeta> reuseBuildWithResiliency(GitFlowMeta req, Build cached) {
+        return applyResiliency(() -> reuseBuild(req, cached), GitFlowStates.BUILD_REUSE, req);
     }
 
-    private Uni<GitFlowMeta> triggerDeploymentWithResiliency(GitFlowResponse req) {
-        return applyResiliency(() -> triggerDeployment(req),
+    private Uni<GitFlowMeta> triggerBuildWithResiliency(GitFlowMeta req, BuildCache.Lookup lookup) {
+        return applyResiliency(() -> triggerBuild(req, lookup), GitFlowStates.BUILD_TRIGGER, req);
+    }
+
+    private Uni<GitFlowMeta> triggerDeploymentWithResiliency(GitFlowResponse req, Build build) {
+        return applyResiliency(deploymentExecutor, () -> triggerDeployment(req, build),
                 GitFlowStates.DEPLOYMENT_TRIGGER, req.constructedGitFlowMeta());
     }
 
     private <T> Uni<T> applyResiliency(Supplier<T> supplier, GitFlowStates state, GitFlowMeta req) {
-        LOG.debug("inside method applyRetryAndDelay");
-        return Uni.createFrom().item(supplier)
-                .onFailure().retry().atMost(NO_OF_RETRY)
-                .onItem().delayIt().by(Duration.ofMillis(RETRY_BACKOFF_DELAY))
+        return applyResiliency(stageExecutor, supplier, state, req);
+    }
+
+    // retried on failure only, a successful stage hands over to the next one right away
+    private <T> Uni<T> applyResiliency(StageExecutor executor, Supplier<T> supplier, GitFlowStates state,
+                                       GitFlowMeta req) {
+        LOG.debug("inside method applyResiliency");
+        return metrics.time(state.stage, executor.run(supplier, stagePolicy.withTimeout(timeoutOf(state))))
                 .onFailure().invoke(ex -> handleException(state, req, ex));
     }
 
+    private Duration timeoutOf(GitFlowStates state) {
+        return ConfigProvider.getConfig()
+                .getOptionalValue("operator.gitflow.stage." + state.stage.tag() + ".timeout.ms", Long.class)
+                .map(Duration::ofMillis)
+                .orElse(stagePolicy.timeout());
+    }
+
     private void handleException(GitFlowStates state, GitFlowMeta req, Throwable exception) {
         //TODO pass this to SSE event
         LOG.error("An error occurred {} in stage {} GitFlowMeta {}", exception.getMessage(), state, req);
@@ -414,10 +746,18 @@ public class GitFlowRequestProcessor {
 
 
     enum GitFlowStates {
-        PROJECT_CHECK,IS_CRETE, BUILD_CFG_CREATE, BUILD_TRIGGER, DEPLOYMENT_TRIGGER
+        PROJECT_CHECK(Stage.PROJECT_CHECK), IS_CRETE(Stage.IMAGE_STREAM), BUILD_CACHE_LOOKUP(Stage.BUILD_CACHE),
+        BUILD_REUSE(Stage.BUILD_REUSE), BUILD_CFG_CREATE(Stage.BUILD_CONFIG), BUILD_TRIGGER(Stage.BUILD_TRIGGER),
+        DEPLOYMENT_TRIGGER(Stage.DEPLOYMENT_TRIGGER);
+
+        private final Stage stage;
+
+        GitFlowStates(Stage stage) {
+            this.stage = stage;
+        }
     }
     enum ExecutionStates {
-        BUILD_ENDED,DEPLOYMENT_STARTED,DEPLOYMENT_CANCELLED,FORCE_EXITED
+        BUILD_ENDED,BUILD_REUSED,BUILD_SUPERSEDED,DEPLOYMENT_STARTED,DEPLOYMENT_CANCELLED,FORCE_EXITED
     }
     enum BuildStatus{
         STUCK,IN_PROGRESS,COMPLETED,FAILED,CHECK_OS_CONSOLE,NOT_FOUND
@@ -0,0 +1,244 @@
+package io.spaship.operator.business;
+
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.DeploymentCondition;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.WatcherException;
+import io.fabric8.openshift.api.model.Build;
+import io.smallrye.mutiny.Multi;
+import io.spaship.operator.business.GitFlowRequestProcessor.LogType;
+import io.spaship.operator.service.k8s.BuildWatcher;
+import io.spaship.operator.service.k8s.GitFlowResourceProvisioner;
+import io.spaship.operator.type.FetchK8sInfoRequest;
+import io.spaship.operator.type.TimelineEvent;
+import io.spaship.operator.util.ReUsableItems;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Everything that happens to a GitFlow deployment once its build is triggered, as one ordered stream: the phases of
+ * the build, its log, the progress of the rollout that follows a successful build and the logs of the pods it
+ * started. The build is followed through the build informer and the rollout through a watch of the deployment, so a
+ * client following a deployment causes no polling. The pods of a healthy deployment do not end, their logs are followed
+ * for a bounded time only.
+ */
+@ApplicationScoped
+public class GitFlowTimeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GitFlowTimeline.class);
+    // phases in which the build has a log to read
+    private static final Set<String> LOG_PHASES = Set.of("Running", "Complete", "Failed");
+
+    private final GitFlowRequestProcessor processor;
+    private final GitFlowResourceProvisioner provisioner;
+    private final BuildWatcher buildWatcher;
+    private final Duration rolloutTimeout;
+    private final int podLogLines;
+    private final Duration podLogFollow;
+
+    @Inject
+    public GitFlowTimeline(GitFlowRequestProcessor processor, GitFlowResourceProvisioner provisioner,
+                           BuildWatcher buildWatcher) {
+        this(processor, provisioner, buildWatcher,
+                Duration.ofMinutes(ConfigProvider.getConfig()
+                        .getOptionalValue("operator.timeline.rollout.timeout.minutes", Long.class).orElse(15L)),
+                ConfigProvider.getConfig().getOptionalValue("operator.timeline.pod.log.lines", Integer.class)
+                        .orElse(100),
+                Duration.ofSeconds(ConfigProvider.getConfig()
+                        .getOptionalValue("operator.timeline.pod.log.follow.seconds", Long.class).orElse(60L)));
+    }
+
+    GitFlowTimeline(GitFlowRequestProcessor processor, GitFlowResourceProvisioner provisioner,
+                    BuildWatcher buildWatcher, Duration rolloutTimeout, int podLogLines, Duration podLogFollow) {
+        this.processor = processor;
+        this.provisioner = provisioner;
+        this.buildWatcher = buildWatcher;
+        this.rolloutTimeout = rolloutTimeout;
+        this.podLogLines = podLogLines;
+        this.podLogFollow = podLogFollow;
+    }
+
+    /**
+     * Follows the build, then the rollout of the deployment and the logs of its pods when the build succeeded. The
+     * stream ends with an {@code end} event once the pod logs have been followed for
+     * {@code operator.timeline.pod.log.follow.seconds}, or have ended before, the client may leave at any time.
+     *
+     * @param deploymentName the deployment updated by the build, null to only follow the build
+     */
+    public Multi<TimelineEvent> follow(String ns, String buildName, String deploymentName) {
+        var lastBuild = new AtomicReference<Build>();
+        var rollout = Multi.createFrom().deferred(() -> {
+            var build = lastBuild.get();
+            if (Objects.isNull(deploymentName) || Objects.isNull(build) || !"Complete".equals(phaseOf(build)))
+                return Multi.createFrom().<TimelineEvent>empty();
+            return Multi.createBy().concatenating().streams(rollout(ns, deploymentName, completionOf(build)),
+                    podLogs(ns, deploymentName));
+        });
+        return Multi.createBy().concatenating().streams(build(ns, buildName, lastBuild), rollout,
+                        Multi.createFrom().item(() -> new TimelineEvent("end", "build/" + buildName, Map.of())))
+                .onSubscription().invoke(() -> LOG.debug("following the timeline of build {} in {}", buildName, ns));
+    }
+
+    // the phase changes of the build merged with its log, which is followed from the moment the build runs
+    private Multi<TimelineEvent> build(String ns, String buildName, AtomicReference<Build> lastBuild) {
+        boolean isRemoteBuild = ReUsableItems.isRemoteBuild();
+        var buildNs = isRemoteBuild ? ReUsableItems.remoteBuildNameSpace() : ns;
+        var source = "build/" + buildName;
+        var logStarted = new AtomicBoolean();
+        return buildWatcher.changes(buildName, buildNs, isRemoteBuild)
+                .select().where(build -> {
+                    var previous = lastBuild.getAndSet(build);
+                    return Objects.isNull(previous) || !phaseOf(previous).equals(phaseOf(build));
+                })
+                .onItem().transformToMulti(build -> {
+                    var phase = phaseOf(build);
+                    var event = Multi.createFrom().item(new TimelineEvent("phase", source, phaseDetail(build)));
+                    if (!LOG_PHASES.contains(phase) || !logStarted.compareAndSet(false, true))
+                        return event;
+                    // an ended build is read once, from the build log cache
+                    return Multi.createBy().concatenating().streams(event, log("build-log", source,
+                            new FetchK8sInfoRequest(buildName, ns, 0, false), LogType.BUILD,
+                            !BuildWatcher.hasEnded(phase)));
+                })
+                .merge()
+                .onFailure().recoverWithItem(failure -> error(source, failure));
+    }
+
+    /**
+     * Progress of the rollout that started after the build, until the new pods are available or the rollout has
+     * failed. A rollout that does not show up within {@code operator.timeline.rollout.timeout.minutes}, a deployment
+     * whose pod template did not change, is not waited for any longer.
+     */
+    private Multi<TimelineEvent> rollout(String ns, String deploymentName, Instant since) {
+        var source = "deployment/" + deploymentName;
+        return Multi.createFrom().<Deployment>emitter(emitter -> {
+                    var watch = provisioner.watchDeployment(deploymentName, ns, new Watcher<>() {
+                        @Override
+                        public void eventReceived(Action action, Deployment deployment) {
+                            if (action == Action.DELETED) {
+                                emitter.fail(new IllegalStateException("deployment " + deploymentName
+                                        + " was deleted"));
+                                return;
+                            }
+                            emitter.emit(deployment);
+                            if (!"progressing".equals(rolloutState(deployment, since)))
+                                emitter.complete();
+                        }
+
+                        @Override
+                        public void onClose(WatcherException cause) {
+                            emitter.fail(cause);
+                        }
+                    });
+                    emitter.onTermination(watch::close);
+                })
+                .runSubscriptionOn(processor.logExecutor())
+                .map(deployment -> rolloutDetail(deployment, since))
+                .skip().repetitions()
+                .map(detail -> new TimelineEvent("rollout", source, detail))
+                .select().first(rolloutTimeout)
+                .onFailure().recoverWithItem(failure -> error(source, failure));
+    }
+
+    // leaving a followed log closes it and releases its log pool thread
+    private Multi<TimelineEvent> podLogs(String ns, String deploymentName) {
+        return Multi.createFrom().item(() -> provisioner.getPodNames(deploymentName, ns))
+                .runSubscriptionOn(processor.logExecutor())
+                .onItem().transformToIterable(pods -> pods)
+                .onItem().transformToMulti(pod -> log("pod-log", "pod/" + pod,
+                        new FetchK8sInfoRequest(pod, ns, podLogLines, false), LogType.POD, true))
+                .merge()
+                .select().first(podLogFollow)
+                .onFailure().recoverWithItem(failure -> error("deployment/" + deploymentName, failure));
+    }
+
+    private Multi<TimelineEvent> log(String kind, String source, FetchK8sInfoRequest request, LogType logType,
+                                     boolean follow) {
+        return processor.fetchLogByType(request, logType, follow)
+                .map(chunk -> new TimelineEvent(kind, source, Map.of("text", chunk.toString())))
+                .onFailure().recoverWithItem(failure -> error(source, failure));
+    }
+
+    private static TimelineEvent error(String source, Throwable failure) {
+        LOG.warn("timeline of {} interrupted due to {}", source, failure.getMessage());
+        return new TimelineEvent("error", source,
+                Map.of("message", Objects.requireNonNullElse(failure.getMessage(), failure.toString())));
+    }
+
+    private static String phaseOf(Build build) {
+        return Objects.isNull(build.getStatus()) || Objects.isNull(build.getStatus().getPhase())
+                ? "New" : build.getStatus().getPhase();
+    }
+
+    private static Instant completionOf(Build build) {
+        return Optional.ofNullable(build.getStatus().getCompletionTimestamp()).map(Instant::parse)
+                .orElse(Instant.EPOCH);
+    }
+
+    private static Map<String, Object> phaseDetail(Build build) {
+        var detail = new HashMap<String, Object>();
+        detail.put("phase", phaseOf(build));
+        if (Objects.nonNull(build.getStatus())) {
+            detail.put("reason", build.getStatus().getReason());
+            detail.put("message", build.getStatus().getMessage());
+        }
+        return detail;
+    }
+
+    private static Map<String, Object> rolloutDetail(Deployment deployment, Instant since) {
+        var status = deployment.getStatus();
+        var detail = new HashMap<String, Object>();
+        detail.put("state", rolloutState(deployment, since));
+        detail.put("replicas", deployment.getSpec().getReplicas());
+        if (Objects.nonNull(status)) {
+            detail.put("updatedReplicas", status.getUpdatedReplicas());
+            detail.put("readyReplicas", status.getReadyReplicas());
+            detail.put("availableReplicas", status.getAvailableReplicas());
+            progressing(deployment).ifPresent(condition -> detail.put("message", condition.getMessage()));
+        }
+        return detail;
+    }
+
+    /**
+     * progressing, complete once a rollout that started after the build has made the new pods available, or failed
+     * once the rollout exceeded its progress deadline
+     */
+    static String rolloutState(Deployment deployment, Instant since) {
+        var status = deployment.getStatus();
+        var progressing = progressing(deployment);
+        if (Objects.isNull(status) || progressing.isEmpty())
+            return "progressing";
+        var condition = progressing.get();
+        if ("False".equals(condition.getStatus()) && "ProgressDeadlineExceeded".equals(condition.getReason()))
+            return "failed";
+        var replicas = Objects.requireNonNullElse(deployment.getSpec().getReplicas(), 1);
+        var generation = Objects.requireNonNullElse(deployment.getMetadata().getGeneration(), 0L);
+        var rolledOut = Objects.requireNonNullElse(status.getObservedGeneration(), 0L) >= generation
+                && replicas.equals(status.getUpdatedReplicas())
+                && replicas.equals(status.getAvailableReplicas())
+                && "NewReplicaSetAvailable".equals(condition.getReason())
+                && Objects.nonNull(condition.getLastUpdateTime())
+                && !Instant.parse(condition.getLastUpdateTime()).isBefore(since);
+        return rolledOut ? "complete" : "progressing";
+    }
+
+    private static Optional<DeploymentCondition> progressing(Deployment deployment) {
+        var status = deployment.getStatus();
+        if (Objects.isNull(status) || Objects.isNull(status.getConditions()))
+            return Optional.empty();
+        return status.getConditions().stream().filter(c -> "Progressing".equals(c.getType())).findFirst();
+    }
+}
@@ -4,6 +4,7 @@ import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.spaship.operator.exception.ZipFileProcessException;
+import io.spaship.operator.service.PipelineMetrics;
 import io.spaship.operator.service.k8s.Operator;
 import io.spaship.operator.service.k8s.SideCarOperations;
 import io.spaship.operator.type.Environment;
@@ -39,10 +40,13 @@ public class SPAUploadHandler {
   private final SideCarOperations sideCarOperations;
   private final String nameSpace;
   private final EventManager eventManager;
+  private final PipelineMetrics metrics;
 
   public SPAUploadHandler(Operator k8sOperator, SideCarOperations sideCarOperations,
-                          @Named("defaultNamespaceMT") String nameSpace, EventManager eventManager) {
+                          @Named("defaultNamespaceMT") String nameSpace, EventManager eventManager,
+                          PipelineMetrics metrics) {
     this.k8sOperator = k8sOperator;
+    this.metrics = metrics;
     this.sideCarOperations = sideCarOperations;
     this.nameSpace = nameSpace;
     this.eventManager = eventManager;
@@ -54,12 +58,14 @@ public class SPAUploadHandler {
     LOG.debug("     deployment process initiated with details {}", input);
 
     Uni.createFrom()
-      .item(() -> spaMappingIntoMemory(input))
+      .item(() -> metrics.time(PipelineMetrics.Stage.ZIP_INSPECTION, input.getValue1().getValue1(),
+        () -> spaMappingIntoMemory(input)))
       .runSubscriptionOn(executor)
       .map(this::buildEnvironmentList)
       .onItem()
       .transformToMulti(envList -> Multi.createFrom().iterable(envList))
-      .map((Environment env) -> processEnvironment(env, rebuildEnvironment))
+      .onItem()
+      .transformToUniAndConcatenate((Environment env) -> processEnvironment(env, rebuildEnvironment))
       .map(this::createOrUpdateSPA)
       .onFailure()
       .recoverWithItem(throwable -> {
@@ -232,28 +238,36 @@ public class SPAUploadHandler {
     }
   }
 
-  private OperationResponse processEnvironment(Environment env, boolean rebuildEnvironment) {
+  // the k8s look-ups are blocking, they run on the worker pool whichever thread released the previous environment
+  private Uni<OperationResponse> processEnvironment(Environment env, boolean rebuildEnvironment) {
+    return Uni.createFrom().item(() -> restrictedOrExcluded(env))
+      .runSubscriptionOn(executor)
+      .chain(response -> response.isPresent() ? Uni.createFrom().item(response.get())
+        : k8sOperator.createOrUpdateEnvironment(env, rebuildEnvironment));
+  }
+
+  private Optional<OperationResponse> restrictedOrExcluded(Environment env) {
     if (env.isUpdateRestriction() && k8sOperator.environmentExists(env)) {
       LOG.debug("environment exists but update restriction enforced, " +
         "environment details are as follows {}", env);
-      return OperationResponse.builder().environment(env).status(-1).originatedFrom(this.getClass().toString())
-        .build();
+      return Optional.of(OperationResponse.builder().environment(env).status(-1)
+        .originatedFrom(this.getClass().toString()).build());
     }
 
     if (env.isExcludeFromEnvironment() && k8sOperator.environmentExists(env)) {
       LOG.debug("environment exists but env exclusion enforced, " +
         "environment details are as follows {}", env);
-      return appDeleteOps(env);
+      return Optional.of(appDeleteOps(env));
     }
 
     if (env.isExcludeFromEnvironment()) {
       LOG.debug("env exclusion enforced, skipping any operation, the environment details are as " +
         "follows {}", env);
-      return OperationResponse.builder().environment(env).status(0).originatedFrom(this.getClass().toString())
-        .build();
+      return Optional.of(OperationResponse.builder().environment(env).status(0)
+        .originatedFrom(this.getClass().toString()).build());
     }
 
-    return k8sOperator.createOrUpdateEnvironment(env, rebuildEnvironment);
+    return Optional.empty();
   }
 
   private OperationResponse appDeleteOps(Environment environment) {
@@ -0,0 +1,194 @@
+package io.spaship.operator.business;
+
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.spaship.operator.type.SequencedEvent;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded buffer between the dispatcher and one event stream subscriber. The dispatcher never waits for a subscriber,
+ * events are delivered as the subscriber requests them and a subscriber that falls more than {@code capacity} events
+ * behind either loses its oldest events or is disconnected, depending on the {@link OverflowPolicy}. A disconnected
+ * client can reconnect with the id of the last event it received and catch up from the history.
+ * <p>
+ * Events are emitted in batches, every requested item is a list of up to {@code batchSize} events. A batch that is
+ * not full is held back until the {@code batchWindow} elapses, and only while the subscriber requests more, so the
+ * queue stays the only place events wait in and its overflow policy applies to batching subscribers as well.
+ */
+class SubscriberQueue implements Publisher<List<SequencedEvent>>, Subscription {
+
+  enum OverflowPolicy {
+    DROP_OLDEST, DISCONNECT;
+
+    static OverflowPolicy of(String value) {
+      return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+  }
+
+  // guarded by this
+  private final Deque<SequencedEvent> queue = new ArrayDeque<>();
+  private final int capacity;
+  private final OverflowPolicy policy;
+  private final int batchSize;
+  private final Duration batchWindow;
+  // guarded by this, set once the window of the partial batch at the head of the queue has elapsed
+  private Future<?> windowTimer;
+  private boolean windowElapsed;
+  private final Consumer<SubscriberQueue> onTermination;
+  private final AtomicInteger wip = new AtomicInteger();
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicBoolean terminated = new AtomicBoolean();
+  private volatile Subscriber<? super List<SequencedEvent>> subscriber;
+  private volatile Throwable failure;
+
+  SubscriberQueue(int capacity, OverflowPolicy policy, int batchSize, Duration batchWindow,
+                  Consumer<SubscriberQueue> onTermination) {
+    this.capacity = capacity;
+    this.policy = policy;
+    this.batchSize = batchSize;
+    this.batchWindow = batchWindow;
+    this.onTermination = onTermination;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super List<SequencedEvent>> subscriber) {
+    if (this.subscriber != null) {
+      subscriber.onSubscribe(this);
+      subscriber.onError(new IllegalStateException("an event queue accepts a single subscriber"));
+      return;
+    }
+    this.subscriber = subscriber;
+    subscriber.onSubscribe(this);
+    drain();
+  }
+
+  @Override
+  public void request(long n) {
+    if (n <= 0) {
+      failure = new IllegalArgumentException("the number of requested events must be positive, got " + n);
+    } else {
+      requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+    }
+    drain();
+  }
+
+  @Override
+  public void cancel() {
+    if (!terminated.compareAndSet(false, true))
+      return;
+    synchronized (this) {
+      queue.clear();
+      if (windowTimer != null)
+        windowTimer.cancel(false);
+    }
+    onTermination.accept(this);
+  }
+
+  /**
+   * Queues the events the subscriber missed, the capacity does not apply to them.
+   */
+  void replay(List<SequencedEvent> events) {
+    synchronized (this) {
+      queue.addAll(events);
+    }
+    drain();
+  }
+
+  /**
+   * @return false if the event overflowed the queue
+   */
+  boolean offer(SequencedEvent event) {
+    if (terminated.get())
+      return true;
+    var accepted = true;
+    synchronized (this) {
+      if (queue.size() >= capacity) {
+        accepted = false;
+        if (policy == OverflowPolicy.DISCONNECT)
+          failure = new BackPressureFailure("event subscriber is more than " + capacity + " events behind");
+        else
+          queue.pollFirst();
+      }
+      if (failure == null)
+        queue.addLast(event);
+    }
+    drain();
+    return accepted;
+  }
+
+  synchronized int lag() {
+    return queue.size();
+  }
+
+  // the next batch if it is full or its window elapsed, otherwise null and the window of the partial batch is started
+  private synchronized List<SequencedEvent> poll() {
+    if (queue.isEmpty())
+      return null;
+    if (queue.size() < batchSize && !windowElapsed && !batchWindow.isZero()) {
+      if (windowTimer == null)
+        windowTimer = Infrastructure.getDefaultWorkerPool()
+          .schedule(this::windowElapsed, batchWindow.toMillis(), TimeUnit.MILLISECONDS);
+      return null;
+    }
+    if (windowTimer != null)
+      windowTimer.cancel(false);
+    windowTimer = null;
+    windowElapsed = false;
+    var batch = new ArrayList<SequencedEvent>(Math.min(batchSize, queue.size()));
+    while (batch.size() < batchSize && !queue.isEmpty())
+      batch.add(queue.pollFirst());
+    return batch;
+  }
+
+  private void windowElapsed() {
+    synchronized (this) {
+      windowElapsed = true;
+      windowTimer = null;
+    }
+    drain();
+  }
+
+  // one thread at a time delivers, a call arriving meanwhile makes it loop once more
+  private void drain() {
+    if (wip.getAndIncrement() != 0)
+      return;
+    var missed = 1;
+    do {
+      var current = subscriber;
+      if (current != null && !terminated.get()) {
+        if (failure != null) {
+          var error = failure;
+          cancel();
+          current.onError(error);
+          return;
+        }
+        var demand = requested.get();
+        var emitted = 0L;
+        while (emitted != demand && !terminated.get()) {
+          var batch = poll();
+          if (batch == null)
+            break;
+          current.onNext(batch);
+          emitted++;
+        }
+        if (emitted > 0 && demand != Long.MAX_VALUE)
+          requested.addAndGet(-emitted);
+      }
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+}
@@ -0,0 +1,84 @@
+package io.spaship.operator.config;
+
+import io.fabric8.kubernetes.client.http.BasicBuilder;
+import io.fabric8.kubernetes.client.http.HttpHeaders;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.fabric8.kubernetes.client.http.HttpResponse;
+import io.fabric8.kubernetes.client.http.Interceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Counts the calls a kubernetes client makes to the API server by verb and resource, and the failed ones by status
+ * code as well.
+ */
+public class K8sApiMetricsInterceptor implements Interceptor {
+
+  public static final String NAME = "spaship-metrics";
+
+  private final MeterRegistry registry;
+  private final String client;
+
+  public K8sApiMetricsInterceptor(MeterRegistry registry, String client) {
+    this.registry = registry;
+    this.client = client;
+  }
+
+  @Override
+  public void before(BasicBuilder builder, HttpHeaders headers) {
+    if (headers instanceof HttpRequest request)
+      registry.counter("spaship.k8s.api.calls", "client", client, "verb", verb(request),
+        "resource", resource(request.uri())).increment();
+  }
+
+  @Override
+  public CompletableFuture<Boolean> afterFailure(BasicBuilder builder, HttpResponse<?> response) {
+    var request = response.request();
+    if (Objects.nonNull(request))
+      registry.counter("spaship.k8s.api.failures", "client", client, "verb", verb(request),
+        "resource", resource(request.uri()), "code", String.valueOf(response.code())).increment();
+    return CompletableFuture.completedFuture(false);
+  }
+
+  static String verb(HttpRequest request) {
+    var method = request.method().toLowerCase();
+    if (!"get".equals(method))
+      return method;
+    var query = request.uri().getQuery();
+    if (Objects.nonNull(query) && query.contains("watch=true"))
+      return "watch";
+    return named(request.uri()) ? "get" : "list";
+  }
+
+  // /api/v1/namespaces/{ns}/{resource}/{name}/{subresource} or /apis/{group}/{version}/...
+  static String resource(URI uri) {
+    var segments = segments(uri);
+    return segments.length == 0 ? "unknown" : segments[0];
+  }
+
+  private static boolean named(URI uri) {
+    return segments(uri).length > 1;
+  }
+
+  // the path after the api version, without the namespace prefix
+  private static String[] segments(URI uri) {
+    var path = uri.getPath().replaceFirst("^/+", "").split("/");
+    int from;
+    if (path.length > 0 && "api".equals(path[0]))
+      from = 2;
+    else if (path.length > 0 && "apis".equals(path[0]))
+      from = 3;
+    else
+      return new String[0];
+    if (path.length > from + 2 && "namespaces".equals(path[from]))
+      from += 2;
+    if (path.length <= from)
+      return new String[0];
+    var rest = new String[path.length - from];
+    System.arraycopy(path, from, rest, 0, rest.length);
+    return rest;
+  }
+}
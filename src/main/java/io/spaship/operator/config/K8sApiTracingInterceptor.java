@@ -0,0 +1,60 @@
+package io.spaship.operator.config;
+
+import io.fabric8.kubernetes.client.http.BasicBuilder;
+import io.fabric8.kubernetes.client.http.HttpHeaders;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.fabric8.kubernetes.client.http.HttpResponse;
+import io.fabric8.kubernetes.client.http.Interceptor;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Attaches the calls a kubernetes client makes to the API server to the current span. The client has no hook once
+ * a call succeeds, so every call is an event of the span (the time between two events is the time a call took) and
+ * a failed call is an event with its status code. The trace context is sent along, for API servers with tracing on.
+ */
+public class K8sApiTracingInterceptor implements Interceptor {
+
+  public static final String NAME = "spaship-tracing";
+
+  private static final AttributeKey<String> CLIENT = AttributeKey.stringKey("k8s.client");
+  private static final AttributeKey<String> PATH = AttributeKey.stringKey("http.target");
+  private static final AttributeKey<Long> STATUS = AttributeKey.longKey("http.status_code");
+
+  private final TextMapPropagator propagator;
+  private final String client;
+
+  public K8sApiTracingInterceptor(TextMapPropagator propagator, String client) {
+    this.propagator = propagator;
+    this.client = client;
+  }
+
+  @Override
+  public void before(BasicBuilder builder, HttpHeaders headers) {
+    var span = Span.current();
+    if (!span.getSpanContext().isValid() || !(headers instanceof HttpRequest request))
+      return;
+    span.addEvent(eventName(request), Attributes.of(CLIENT, client, PATH, request.uri().getPath()));
+    propagator.inject(Context.current(), builder, BasicBuilder::setHeader);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> afterFailure(BasicBuilder builder, HttpResponse<?> response) {
+    var span = Span.current();
+    var request = response.request();
+    if (span.getSpanContext().isValid() && Objects.nonNull(request))
+      span.addEvent(eventName(request) + " failed", Attributes.of(CLIENT, client, PATH, request.uri().getPath(),
+        STATUS, (long) response.code()));
+    return CompletableFuture.completedFuture(false);
+  }
+
+  private static String eventName(HttpRequest request) {
+    return "k8s " + K8sApiMetricsInterceptor.verb(request) + " " + K8sApiMetricsInterceptor.resource(request.uri());
+  }
+}
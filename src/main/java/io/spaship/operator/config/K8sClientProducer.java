@@ -2,6 +2,8 @@ package io.spaship.operator.config;
 
 import io.fabric8.kubernetes.client.ConfigBuilder;
 import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
 import io.fabric8.openshift.client.OpenShiftClient;
 
 import org.eclipse.microprofile.config.ConfigProvider;
@@ -10,6 +12,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.IOException;
@@ -30,6 +33,12 @@ public class K8sClientProducer {
   @ConfigProperty(name = "application.webprop.ns.default")
   Optional<String> defaultWebappNameSpace;
 
+  @Inject
+  MeterRegistry meterRegistry;
+
+  @Inject
+  OpenTelemetry openTelemetry;
+
   @Produces
   @Named("deNamespace")
   String getNamespace() {
@@ -98,7 +107,12 @@ public class K8sClientProducer {
       .withWebsocketPingInterval(600000)
       .withUploadConnectionTimeout(600000)
       .withUploadRequestTimeout(600000);
-    return kubernetesClientBuilder.withConfig(configBuilder.build()).build().adapt(OpenShiftClient.class);
+    return kubernetesClientBuilder.withConfig(configBuilder.build())
+      .withHttpClientBuilderConsumer(builder -> builder.addOrReplaceInterceptor(K8sApiMetricsInterceptor.NAME,
+          new K8sApiMetricsInterceptor(meterRegistry, "default"))
+        .addOrReplaceInterceptor(K8sApiTracingInterceptor.NAME,
+          new K8sApiTracingInterceptor(openTelemetry.getPropagators().getTextMapPropagator(), "default")))
+      .build().adapt(OpenShiftClient.class);
   }
 
   @Produces
@@ -121,7 +135,12 @@ public class K8sClientProducer {
             .withUploadConnectionTimeout(600000)
             .withUploadRequestTimeout(600000);
     return kubernetesClientBuilder
-            .withConfig(configBuilder.build()).build().adapt(OpenShiftClient.class);
+            .withConfig(configBuilder.build())
+            .withHttpClientBuilderConsumer(builder -> builder.addOrReplaceInterceptor(K8sApiMetricsInterceptor.NAME,
+                new K8sApiMetricsInterceptor(meterRegistry, "build"))
+              .addOrReplaceInterceptor(K8sApiTracingInterceptor.NAME,
+                new K8sApiTracingInterceptor(openTelemetry.getPropagators().getTextMapPropagator(), "build")))
+            .build().adapt(OpenShiftClient.class);
   }
 
 }
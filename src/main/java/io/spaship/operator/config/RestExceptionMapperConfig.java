@@ -1,5 +1,6 @@
 package io.spaship.operator.config;
 
+import io.spaship.operator.exception.ValidationException;
 import io.spaship.operator.type.ErrorResponse;
 
 import javax.ws.rs.core.Response;
@@ -12,8 +13,10 @@ public class RestExceptionMapperConfig implements ExceptionMapper<Exception> {
   @Override
   public Response toResponse(Exception throwable) {
     String errorMessage = Objects.isNull(throwable.getMessage()) ? throwable.toString() : throwable.getMessage();
-    var response = new ErrorResponse(errorMessage, "500",
+    // a request that fails validation is the client's fault
+    var status = throwable instanceof ValidationException ? 400 : 500;
+    var response = new ErrorResponse(errorMessage, String.valueOf(status),
       "https://spaship.io/");
-    return Response.ok().entity(response).status(500).build();
+    return Response.ok().entity(response).status(status).build();
   }
 }
@@ -1,23 +1,55 @@
 package io.spaship.operator.config;
 
 
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class SPAShipThreadPool {
 
     private SPAShipThreadPool(){}
     private static final String THREAD_NAME_PREFIX = "spaship-";
+    private static final long KEEP_ALIVE_SECONDS = 60;
 
 
-    public static ExecutorService cachedThreadPool() {
-        return Executors.newCachedThreadPool(r -> {
-            Thread t = new Thread(r, THREAD_NAME_PREFIX + UUID.randomUUID().toString().split("-")[0]);
-            t.setDaemon(false);
+    /**
+     * A bulkhead of at most {@code threads} daemon threads named {@code spaship-<name>-<n>}, which queues at most
+     * {@code queueSize} tasks. A task submitted to a full pool is rejected with a
+     * {@link java.util.concurrent.RejectedExecutionException}, idle threads end after a minute.
+     */
+    public static ThreadPoolExecutor boundedPool(String name, int threads, int queueSize) {
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+        return pool(name, threads, queue);
+    }
+
+    /**
+     * At most {@code threads} daemon threads named {@code spaship-<name>-<n>}, which queue every task submitted while
+     * they are busy. For the continuations of work a bulkhead has already accepted, which must not be rejected.
+     */
+    public static ThreadPoolExecutor queueingPool(String name, int threads) {
+        return pool(name, threads, new LinkedBlockingQueue<>());
+    }
+
+    private static ThreadPoolExecutor pool(String name, int threads, BlockingQueue<Runnable> queue) {
+        var pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue,
+                daemonThreads(name), new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        var count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, THREAD_NAME_PREFIX + name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
             return t;
-        });
+        };
     }
 
 }
@@ -0,0 +1,7 @@
+package io.spaship.operator.exception;
+
+public class CircuitOpenException extends RuntimeException {
+  public CircuitOpenException(String endpoint) {
+    super("circuit towards " + endpoint + " is open, call rejected");
+  }
+}
@@ -0,0 +1,7 @@
+package io.spaship.operator.exception;
+
+public class LeaseLostException extends RuntimeException {
+  public LeaseLostException(String key) {
+    super("the lease of " + key + " was lost while its lock was held, another operator may be working on it");
+  }
+}
@@ -0,0 +1,9 @@
+package io.spaship.operator.exception;
+
+import java.time.Duration;
+
+public class LockReapedException extends RuntimeException {
+  public LockReapedException(String key, Duration maxHoldTime) {
+    super("the lock of " + key + " was reaped after it was held for more than " + maxHoldTime.toMillis() + " ms");
+  }
+}
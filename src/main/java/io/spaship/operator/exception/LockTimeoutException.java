@@ -0,0 +1,9 @@
+package io.spaship.operator.exception;
+
+import java.time.Duration;
+
+public class LockTimeoutException extends RuntimeException {
+  public LockTimeoutException(String key, Duration timeout) {
+    super("could not acquire the lock of " + key + " within " + timeout.toMillis() + " ms");
+  }
+}
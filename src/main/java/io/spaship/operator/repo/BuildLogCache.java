@@ -0,0 +1,173 @@
+package io.spaship.operator.repo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compressed logs of ended builds. The log of a build does not change once it has ended, so an entry never
+ * expires, the least recently read entries are evicted once the compressed logs exceed {@code
+ * operator.log.cache.size.mb}. Concurrent loads of the same log share one fetch.
+ */
+@ApplicationScoped
+public class BuildLogCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BuildLogCache.class);
+  private static final int GZIP_BUFFER_SIZE = 16 * 1024;
+
+  // access ordered, guarded by this
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private final Map<Key, Uni<Entry>> loads = new ConcurrentHashMap<>();
+  private final long capacityBytes;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+  // guarded by this
+  private long usedBytes;
+
+  @Inject
+  public BuildLogCache(MeterRegistry registry) {
+    this(registry, ConfigProvider.getConfig().getOptionalValue("operator.log.cache.size.mb", Long.class)
+      .orElse(256L) * 1024 * 1024);
+  }
+
+  BuildLogCache(MeterRegistry registry, long capacityBytes) {
+    this.capacityBytes = capacityBytes;
+    this.hits = registry.counter("spaship.log.cache.hits");
+    this.misses = registry.counter("spaship.log.cache.misses");
+    this.evictions = registry.counter("spaship.log.cache.evictions");
+    Gauge.builder("spaship.log.cache.bytes", this, BuildLogCache::usedBytes)
+      .description("compressed size of the cached build logs")
+      .register(registry);
+  }
+
+  public synchronized Optional<Entry> get(Key key) {
+    var entry = Optional.ofNullable(entries.get(key));
+    (entry.isPresent() ? hits : misses).increment();
+    return entry;
+  }
+
+  /**
+   * Emits the cached log, or loads it on the executor. The loader returns the log to cache, or null when the log
+   * cannot be cached yet (the build has not ended), in which case null is emitted.
+   */
+  public Uni<Entry> computeIfAbsent(Key key, Supplier<InputStream> loader, Executor executor) {
+    var cached = get(key);
+    if (cached.isPresent())
+      return Uni.createFrom().item(cached.get());
+    return loads.computeIfAbsent(key, k -> Uni.createFrom().item(() -> load(k, loader))
+      .runSubscriptionOn(executor)
+      .onTermination().invoke(() -> loads.remove(k))
+      .memoize().indefinitely());
+  }
+
+  /**
+   * Compresses the log into the cache. A log larger than the whole cache is returned without being cached.
+   */
+  public Entry put(Key key, InputStream log) throws IOException {
+    var entry = Entry.of(log);
+    synchronized (this) {
+      var previous = entries.remove(key);
+      if (Objects.nonNull(previous))
+        usedBytes -= previous.gzipped().length;
+      if (entry.gzipped().length > capacityBytes)
+        return entry;
+      entries.put(key, entry);
+      usedBytes += entry.gzipped().length;
+      var eldest = entries.entrySet().iterator();
+      while (usedBytes > capacityBytes && eldest.hasNext()) {
+        var evicted = eldest.next();
+        eldest.remove();
+        usedBytes -= evicted.getValue().gzipped().length;
+        evictions.increment();
+        LOG.debug("evicted the log of build {} from the cache", evicted.getKey());
+      }
+    }
+    return entry;
+  }
+
+  synchronized long usedBytes() {
+    return usedBytes;
+  }
+
+  private Entry load(Key key, Supplier<InputStream> loader) {
+    var log = loader.get();
+    if (Objects.isNull(log))
+      return null;
+    try (log) {
+      var entry = put(key, log);
+      LOG.debug("cached the log of build {}, {} bytes compressed into {}", key, entry.size(),
+        entry.gzipped().length);
+      return entry;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @param remote whether the build runs on the remote build cluster
+   */
+  public record Key(String nameSpace, String buildName, boolean remote) {
+  }
+
+  /**
+   * @param size   size of the uncompressed log
+   * @param sha256 hex encoded digest of the uncompressed log, a strong validator of it
+   */
+  public record Entry(byte[] gzipped, long size, String sha256) {
+
+    static Entry of(InputStream log) throws IOException {
+      MessageDigest messageDigest;
+      try {
+        messageDigest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+      var compressed = new ByteArrayOutputStream();
+      long size;
+      try (var in = new DigestInputStream(log, messageDigest); var out = new GZIPOutputStream(compressed)) {
+        size = in.transferTo(out);
+      }
+      return new Entry(compressed.toByteArray(), size, HexFormat.of().formatHex(messageDigest.digest()));
+    }
+
+    public InputStream open() throws IOException {
+      return new GZIPInputStream(new ByteArrayInputStream(gzipped), GZIP_BUFFER_SIZE);
+    }
+
+    /**
+     * Uncompressed bytes from {@code from} to {@code to}, both inclusive.
+     */
+    public byte[] read(long from, long to) throws IOException {
+      try (var in = open()) {
+        in.skipNBytes(from);
+        return in.readNBytes(Math.toIntExact(to - from + 1));
+      }
+    }
+  }
+}
@@ -0,0 +1,362 @@
+package io.spaship.operator.repo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.exception.LeaseLostException;
+import io.spaship.operator.exception.LockReapedException;
+import io.spaship.operator.exception.LockTimeoutException;
+import io.spaship.operator.type.EnvironmentLockInfo;
+import io.vertx.mutiny.core.Vertx;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Serialises operations on the same environment. Every key (the environment identification) has at most one holder,
+ * further callers wait in FIFO order as pending futures instead of polling, and give up once the acquisition timeout
+ * elapses.
+ * <p>
+ * With {@code operator.lock.lease.enabled} the local lock is the first stage only: the holder then takes the
+ * {@link LeaseLockStore lease} of the key, which serialises the operators replicas among each other, and the
+ * acquisition timeout covers both stages. Leases of the current holders are renewed in one batch, the action of a
+ * holder whose lease turns out to be held by another replica fails with {@link LeaseLostException}.
+ * <p>
+ * A hold older than {@code operator.lock.max.hold.ms} is considered stale, e.g. left behind by a deployment that never
+ * terminated, and is reaped so that the environment is not blocked until someone dequeues it by hand. The action of
+ * a reaped hold fails with {@link LockReapedException} before the next waiter gets the lock.
+ */
+@ApplicationScoped
+public class EnvironmentLockManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EnvironmentLockManager.class);
+
+  // guarded by this
+  private final Map<String, LockState> locks = new HashMap<>();
+  private final Duration acquireTimeout;
+  private final Duration maxHoldTime;
+  private final LeaseLockStore leaseStore;
+  private final Timer waitTimer;
+  private final Timer holdTimer;
+  private final Counter timeouts;
+  private final Counter reaped;
+
+  @Inject
+  public EnvironmentLockManager(MeterRegistry registry, LeaseLockStore leaseStore, Vertx vertx) {
+    this(registry, Duration.ofMillis(ConfigProvider.getConfig()
+        .getOptionalValue("operator.lock.acquire.timeout.ms", Long.class).orElse(600000L)),
+      Duration.ofMillis(ConfigProvider.getConfig()
+        .getOptionalValue("operator.lock.max.hold.ms", Long.class).orElse(1800000L)),
+      leaseStore);
+    var reapInterval = Math.max(Math.min(maxHoldTime.toMillis() / 4, 60000), 1000);
+    vertx.setPeriodic(reapInterval, id -> reap());
+  }
+
+  EnvironmentLockManager(MeterRegistry registry, Duration acquireTimeout) {
+    this(registry, acquireTimeout, Duration.ofDays(1), null);
+  }
+
+  EnvironmentLockManager(MeterRegistry registry, Duration acquireTimeout, Duration maxHoldTime,
+                         LeaseLockStore leaseStore) {
+    this.acquireTimeout = acquireTimeout;
+    this.maxHoldTime = maxHoldTime;
+    this.leaseStore = leaseStore != null && leaseStore.isEnabled() ? leaseStore : null;
+    this.waitTimer = Timer.builder("spaship.environment.lock.wait")
+      .description("time spent waiting for an environment lock")
+      .publishPercentileHistogram()
+      .register(registry);
+    this.holdTimer = Timer.builder("spaship.environment.lock.hold")
+      .description("time an environment lock is held")
+      .publishPercentileHistogram()
+      .register(registry);
+    this.timeouts = registry.counter("spaship.environment.lock.timeouts");
+    this.reaped = registry.counter("spaship.environment.lock.reaped");
+    Gauge.builder("spaship.environment.lock.held", this, EnvironmentLockManager::heldCount)
+      .description("environments currently locked")
+      .register(registry);
+    if (this.leaseStore != null)
+      this.leaseStore.startRenewal(this::leasedKeys, this::leaseLost);
+  }
+
+  /**
+   * Runs the action while holding the lock of the key, the lock is released whenever the action terminates. The
+   * action is cancelled, and fails with {@link LeaseLostException}, if the lease of the key is lost meanwhile, or with
+   * {@link LockReapedException} if the hold is reaped.
+   */
+  public <T> Uni<T> withLock(String key, UUID owner, Supplier<Uni<T>> action) {
+    return acquire(key, owner)
+      .chain(hold -> fenced(hold, action).onTermination().invoke(hold::release));
+  }
+
+  /**
+   * Emits the hold once the lock of the key is granted, or fails with {@link LockTimeoutException}. The caller must
+   * {@link Hold#release() release} the hold.
+   */
+  public Uni<Hold> acquire(String key, UUID owner) {
+    return Uni.createFrom().deferred(() -> {
+      var waiter = new Waiter(key, owner, System.nanoTime(), new CompletableFuture<>());
+      enqueue(waiter);
+      return Uni.createFrom().completionStage(waiter.granted())
+        .call(this::takeLease)
+        .ifNoItem().after(acquireTimeout).failWith(() -> {
+          timeouts.increment();
+          return new LockTimeoutException(key, acquireTimeout);
+        })
+        .onTermination().invoke((hold, failure, cancelled) -> {
+          if (failure != null || Boolean.TRUE.equals(cancelled))
+            abandon(waiter);
+        });
+    });
+  }
+
+  /**
+   * Releases the lock of the key whoever holds it, the next waiter gets it.
+   *
+   * @return false if the key was not locked
+   */
+  public boolean forceRelease(String key) {
+    Hold holder;
+    synchronized (this) {
+      var state = locks.get(key);
+      holder = state == null ? null : state.holder;
+    }
+    if (holder == null)
+      return false;
+    LOG.warn("forcefully releasing the lock of {} held by {} since {}", key, holder.owner(), holder.acquiredAt());
+    holder.release();
+    return true;
+  }
+
+  /**
+   * Holders and wait queues of all the locked keys, ordered by key.
+   */
+  public List<EnvironmentLockInfo> snapshot() {
+    var now = System.nanoTime();
+    synchronized (this) {
+      return locks.entrySet().stream()
+        .filter(entry -> entry.getValue().holder != null)
+        .sorted(Map.Entry.comparingByKey())
+        .map(entry -> {
+          var holder = entry.getValue().holder;
+          var waiters = entry.getValue().waiters.stream()
+            .map(waiter -> new EnvironmentLockInfo.Waiter(waiter.owner(), millisSince(waiter.enqueuedAt(), now)))
+            .toList();
+          return new EnvironmentLockInfo(entry.getKey(), holder.owner(), holder.acquiredAt(),
+            millisSince(holder.acquiredAtNanos, now), holder.leased, waiters);
+        })
+        .toList();
+    }
+  }
+
+  /**
+   * Fails the actions of the holds older than the max hold time and releases them.
+   *
+   * @return number of reaped holds
+   */
+  int reap() {
+    var deadline = System.nanoTime() - maxHoldTime.toNanos();
+    List<Hold> stale;
+    synchronized (this) {
+      stale = locks.values().stream()
+        .map(state -> state.holder)
+        .filter(holder -> holder != null && holder.acquiredAtNanos - deadline < 0)
+        .toList();
+    }
+    for (var holder : stale) {
+      LOG.warn("reaping the lock of {} held by {} since {}, it exceeded the max hold time of {}", holder.key(),
+        holder.owner(), holder.acquiredAt(), maxHoldTime);
+      reaped.increment();
+      // the action is stopped first, it must not go on writing to the environment once the next waiter holds it
+      holder.lost.complete(new LockReapedException(holder.key(), maxHoldTime));
+      holder.release();
+    }
+    return stale.size();
+  }
+
+  private synchronized int heldCount() {
+    return locks.size();
+  }
+
+  // runs the action until it terminates or the hold is lost, to another replica or to the reaper, whichever comes first
+  private static <T> Uni<T> fenced(Hold hold, Supplier<Uni<T>> action) {
+    return Uni.createFrom().emitter(emitter -> {
+      var running = Uni.createFrom().deferred(action::get).subscribe().with(emitter::complete, emitter::fail);
+      emitter.onTermination(running::cancel);
+      hold.lost.thenAccept(failure -> {
+        running.cancel();
+        emitter.fail(failure);
+      });
+    });
+  }
+
+  private static long millisSince(long startNanos, long nowNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos);
+  }
+
+  private Uni<Void> takeLease(Hold hold) {
+    if (leaseStore == null)
+      return Uni.createFrom().voidItem();
+    return leaseStore.acquire(hold.key(), acquireTimeout).invoke(() -> hold.leased = true);
+  }
+
+  /**
+   * Fails the action of the current holder of the key, another replica took its lease over.
+   */
+  void leaseLost(String key) {
+    Hold holder;
+    synchronized (this) {
+      var state = locks.get(key);
+      holder = state == null ? null : state.holder;
+    }
+    if (holder != null && holder.leased)
+      holder.lost.complete(new LeaseLostException(key));
+  }
+
+  private synchronized Collection<String> leasedKeys() {
+    return locks.values().stream()
+      .map(state -> state.holder)
+      .filter(holder -> holder != null && holder.leased && !holder.released.get())
+      .map(Hold::key)
+      .toList();
+  }
+
+  private void enqueue(Waiter waiter) {
+    Hold granted = null;
+    synchronized (this) {
+      var state = locks.computeIfAbsent(waiter.key(), k -> new LockState());
+      if (state.holder == null) {
+        granted = new Hold(waiter);
+        state.holder = granted;
+      } else {
+        LOG.debug("{} is locked by {}, {} waits behind {} others", waiter.key(), state.holder.owner(),
+          waiter.owner(), state.waiters.size());
+        state.waiters.addLast(waiter);
+      }
+    }
+    if (granted != null)
+      grant(waiter, granted);
+  }
+
+  // a waiter that timed out or was cancelled leaves the queue, if the lock was granted in the meantime it is passed on
+  private void abandon(Waiter waiter) {
+    synchronized (this) {
+      var state = locks.get(waiter.key());
+      if (state != null)
+        state.waiters.remove(waiter);
+    }
+    if (waiter.granted().cancel(false) || waiter.granted().isCancelled())
+      return;
+    waiter.granted().join().release();
+  }
+
+  private void handOver(Hold released) {
+    while (true) {
+      Waiter next;
+      Hold granted;
+      synchronized (this) {
+        var state = locks.get(released.key());
+        if (state == null || state.holder != released)
+          return;
+        next = state.waiters.pollFirst();
+        if (next == null) {
+          locks.remove(released.key());
+          return;
+        }
+        granted = new Hold(next);
+        state.holder = granted;
+      }
+      if (grant(next, granted))
+        return;
+      // the waiter went away while the lock was handed to it, try the one behind it
+      released = granted;
+    }
+  }
+
+  private boolean grant(Waiter waiter, Hold hold) {
+    waitTimer.record(System.nanoTime() - waiter.enqueuedAt(), TimeUnit.NANOSECONDS);
+    LOG.debug("lock of {} granted to {}", waiter.key(), waiter.owner());
+    return waiter.granted().complete(hold);
+  }
+
+  private static class LockState {
+    private Hold holder;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+  }
+
+  private record Waiter(String key, UUID owner, long enqueuedAt, CompletableFuture<Hold> granted) {
+  }
+
+  public class Hold {
+    private final String key;
+    private final UUID owner;
+    private final LocalDateTime acquiredAt = LocalDateTime.now();
+    private final long acquiredAtNanos = System.nanoTime();
+    private final AtomicBoolean released = new AtomicBoolean();
+    // completed with the failure of the action once the hold is taken away from it
+    private final CompletableFuture<RuntimeException> lost = new CompletableFuture<>();
+    private volatile boolean leased;
+
+    private Hold(Waiter waiter) {
+      this.key = waiter.key();
+      this.owner = waiter.owner();
+    }
+
+    public String key() {
+      return key;
+    }
+
+    public UUID owner() {
+      return owner;
+    }
+
+    public LocalDateTime acquiredAt() {
+      return acquiredAt;
+    }
+
+    /**
+     * Idempotent, releasing a hold that was forcefully taken away has no effect on the current holder.
+     */
+    public void release() {
+      if (!released.compareAndSet(false, true))
+        return;
+      holdTimer.record(System.nanoTime() - acquiredAtNanos, TimeUnit.NANOSECONDS);
+      LOG.debug("lock of {} released by {}", key, owner);
+      if (leaseStore == null) {
+        handOver(this);
+        return;
+      }
+      // the lease is given up even if its acquisition did not complete, it may have been taken just before that
+      leaseStore.release(key).subscribe().with(ignored -> handOver(this), failure -> {
+        LOG.warn("failed to release the lease of {} due to {}", key, failure.getMessage());
+        handOver(this);
+      });
+    }
+
+    @Override
+    public String toString() {
+      return "{"
+        + "\"key\":\"" + key + "\""
+        + ", \"owner\":\"" + owner + "\""
+        + ", \"acquiredAt\":\"" + acquiredAt + "\""
+        + "}";
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package io.spaship.operator.repo;
+
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseSpec;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.openshift.client.OpenShiftClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.config.SPAShipThreadPool;
+import io.spaship.operator.service.PipelineMetrics;
+import io.spaship.operator.type.ApplicationConstants;
+import io.vertx.mutiny.core.Vertx;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Backs environment locks with {@code coordination.k8s.io/v1} Leases in the namespace of the operator, so that the
+ * locks hold across operator replicas and restarts. A lease belongs to the holder identity of one operator pod, it is
+ * renewed periodically while held and can be taken over by another pod once it is not renewed for its duration.
+ * Every write is an optimistic update on the resource version of the lease, a conflicting write simply loses. A lease
+ * is labelled with its holder, the leases held by an operator are listed at once when they are renewed.
+ * <p>
+ * The calls to the api server block, they run on a pool of their own of {@code operator.lock.lease.pool.threads}.
+ */
+@ApplicationScoped
+public class LeaseLockStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LeaseLockStore.class);
+  private static final int CONFLICT = 409;
+  private static final String HOLDER = "spaship.io/lock-holder";
+
+  private final Leases leases;
+  private final Executor executor;
+  private final Vertx vertx;
+  private final boolean enabled;
+  private final String identity;
+  private final String appInstance;
+  private final int leaseDurationSeconds;
+  private final Duration renewInterval;
+  private final Duration retryInterval;
+  private final Counter lostLeases;
+
+  @Inject
+  public LeaseLockStore(@Named("default") OpenShiftClient ocClient, @Named("deNamespace") String nameSpace,
+                        Vertx vertx, MeterRegistry registry, PipelineMetrics metrics) {
+    this(new ClientLeases(ocClient, nameSpace), leasePool(metrics), vertx, registry,
+      ConfigProvider.getConfig().getOptionalValue("operator.lock.lease.identity", String.class)
+        .or(() -> Optional.ofNullable(System.getenv("HOSTNAME")))
+        .orElseGet(() -> UUID.randomUUID().toString()));
+    if (enabled)
+      LOG.info("environment locks are backed by leases in namespace {} with holder identity {}", nameSpace, identity);
+  }
+
+  LeaseLockStore(Leases leases, Executor executor, Vertx vertx, MeterRegistry registry, String identity) {
+    this.leases = leases;
+    this.executor = executor;
+    this.vertx = vertx;
+    this.identity = identity;
+    var config = ConfigProvider.getConfig();
+    this.enabled = config.getOptionalValue("operator.lock.lease.enabled", Boolean.class).orElse(false);
+    this.appInstance = config.getOptionalValue("app.instance", String.class).orElse("default");
+    this.leaseDurationSeconds = config.getOptionalValue("operator.lock.lease.duration.seconds", Integer.class)
+      .orElse(60);
+    this.renewInterval = Duration.ofSeconds(Math.max(leaseDurationSeconds / 3, 1));
+    this.retryInterval = Duration.ofMillis(
+      config.getOptionalValue("operator.lock.lease.retry.interval.ms", Long.class).orElse(1000L));
+    this.lostLeases = registry.counter("spaship.environment.lock.lease.lost");
+  }
+
+  private static Executor leasePool(PipelineMetrics metrics) {
+    var pool = SPAShipThreadPool.queueingPool("lease", ConfigProvider.getConfig()
+      .getOptionalValue("operator.lock.lease.pool.threads", Integer.class).orElse(4));
+    metrics.monitor("lease", pool);
+    return pool;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Renews, every interval, the leases of the keys returned by {@code heldKeys}: the leases labelled with this
+   * operator are listed once and only those still held are updated. The keys whose lease turns out to be held by
+   * another operator are passed to {@code lost}, their holder must stop working on them.
+   */
+  public void startRenewal(Supplier<Collection<String>> heldKeys, Consumer<String> lost) {
+    if (!enabled)
+      return;
+    vertx.setPeriodic(renewInterval.toMillis(), id -> {
+      var keys = heldKeys.get();
+      if (!keys.isEmpty())
+        executor.execute(() -> renew(keys, lost));
+    });
+  }
+
+  /**
+   * Completes once the lease of the key is held by this operator, polling while another holder keeps renewing it.
+   * It gives up once {@code timeout} has elapsed, with the last failure.
+   */
+  public Uni<Void> acquire(String key, Duration timeout) {
+    var name = leaseName(key);
+    return Uni.createFrom().item(() -> tryAcquire(name))
+      .runSubscriptionOn(executor)
+      .invoke(acquired -> {
+        if (!Boolean.TRUE.equals(acquired))
+          throw new LeaseHeldException(name);
+      })
+      .onFailure()
+      .invoke(e -> {
+        if (!(e instanceof LeaseHeldException))
+          LOG.warn("failed to acquire lease {} due to {}", name, e.getMessage());
+      })
+      .onFailure()
+      .retry()
+      .withBackOff(retryInterval, retryInterval.multipliedBy(5))
+      .expireIn(timeout.toMillis())
+      // exhausted retries fail with an IllegalStateException wrapping the last failure
+      .onFailure(e -> e instanceof IllegalStateException && Objects.nonNull(e.getCause()))
+      .transform(Throwable::getCause)
+      .replaceWithVoid();
+  }
+
+  /**
+   * Gives the lease of the key up if this operator still holds it.
+   */
+  public Uni<Void> release(String key) {
+    var name = leaseName(key);
+    return Uni.createFrom().item(() -> {
+        tryRelease(name);
+        return name;
+      })
+      .runSubscriptionOn(executor)
+      .replaceWithVoid();
+  }
+
+  private boolean tryAcquire(String name) {
+    var now = ZonedDateTime.now(ZoneOffset.UTC);
+    var lease = leases.get(name);
+    try {
+      if (Objects.isNull(lease)) {
+        leases.create(newLease(name, now));
+      } else {
+        var spec = lease.getSpec();
+        if (!isHolder(spec) && !isVacant(spec, now)) {
+          LOG.debug("lease {} is held by {}", name, spec.getHolderIdentity());
+          return false;
+        }
+        if (!isHolder(spec))
+          spec.setLeaseTransitions(Optional.ofNullable(spec.getLeaseTransitions()).orElse(0) + 1);
+        lease.getMetadata().setLabels(withLabels(lease.getMetadata().getLabels(), labels()));
+        spec.setHolderIdentity(identity);
+        spec.setLeaseDurationSeconds(leaseDurationSeconds);
+        spec.setAcquireTime(now);
+        spec.setRenewTime(now);
+        leases.replace(lease);
+      }
+    } catch (KubernetesClientException e) {
+      if (e.getCode() == CONFLICT)
+        return false;
+      throw e;
+    }
+    LOG.debug("lease {} acquired by {}", name, identity);
+    return true;
+  }
+
+  private void tryRelease(String name) {
+    var lease = leases.get(name);
+    if (Objects.isNull(lease) || !isHolder(lease.getSpec()))
+      return;
+    lease.getSpec().setHolderIdentity(null);
+    lease.getMetadata().setLabels(withLabels(lease.getMetadata().getLabels(), Map.of()));
+    lease.getMetadata().getLabels().remove(HOLDER);
+    try {
+      leases.replace(lease);
+      LOG.debug("lease {} released by {}", name, identity);
+    } catch (KubernetesClientException e) {
+      LOG.warn("failed to release lease {} due to {}, it expires on its own", name, e.getMessage());
+    }
+  }
+
+  void renew(Collection<String> keys, Consumer<String> lost) {
+    Map<String, Lease> held;
+    try {
+      held = leases.list(labels()).stream()
+        .collect(Collectors.toMap(lease -> lease.getMetadata().getName(), Function.identity()));
+    } catch (KubernetesClientException e) {
+      LOG.warn("failed to list the leases of {} due to {}, they are renewed next time", identity, e.getMessage());
+      return;
+    }
+    for (var key : keys) {
+      var name = leaseName(key);
+      try {
+        var lease = held.get(name);
+        if (Objects.isNull(lease) || !isHolder(lease.getSpec())) {
+          lostLeases.increment();
+          LOG.error("lease {} is no longer held by {}, another operator may be working on the same environment",
+            name, identity);
+          lost.accept(key);
+          continue;
+        }
+        lease.getSpec().setRenewTime(ZonedDateTime.now(ZoneOffset.UTC));
+        leases.replace(lease);
+      } catch (KubernetesClientException e) {
+        LOG.warn("failed to renew lease {} due to {}", name, e.getMessage());
+      }
+    }
+    LOG.debug("renewed {} leases", keys.size());
+  }
+
+  private Lease newLease(String name, ZonedDateTime now) {
+    return new LeaseBuilder()
+      .withNewMetadata()
+      .withName(name)
+      .addToLabels(labels())
+      .endMetadata()
+      .withNewSpec()
+      .withHolderIdentity(identity)
+      .withLeaseDurationSeconds(leaseDurationSeconds)
+      .withAcquireTime(now)
+      .withRenewTime(now)
+      .withLeaseTransitions(0)
+      .endSpec()
+      .build();
+  }
+
+  private Map<String, String> labels() {
+    return Map.of(ApplicationConstants.MANAGED_BY, ApplicationConstants.SPASHIP,
+      ApplicationConstants.APP_INSTANCE, labelValue(appInstance),
+      HOLDER, labelValue(identity));
+  }
+
+  private static Map<String, String> withLabels(Map<String, String> labels, Map<String, String> added) {
+    var merged = new HashMap<String, String>(Optional.ofNullable(labels).orElse(Map.of()));
+    merged.putAll(added);
+    return merged;
+  }
+
+  // at most 63 alphanumerics, '-', '_' or '.', starting and ending with an alphanumeric
+  private static String labelValue(String value) {
+    var sanitized = value.replaceAll("[^A-Za-z0-9_.-]", "-");
+    sanitized = sanitized.substring(0, Math.min(sanitized.length(), 63));
+    return sanitized.replaceAll("^[^A-Za-z0-9]+|[^A-Za-z0-9]+$", "");
+  }
+
+  private boolean isHolder(LeaseSpec spec) {
+    return identity.equals(spec.getHolderIdentity());
+  }
+
+  private static boolean isVacant(LeaseSpec spec, ZonedDateTime now) {
+    if (Objects.isNull(spec.getHolderIdentity()) || spec.getHolderIdentity().isBlank())
+      return true;
+    var renewedAt = Optional.ofNullable(spec.getRenewTime()).orElse(spec.getAcquireTime());
+    var duration = Optional.ofNullable(spec.getLeaseDurationSeconds()).orElse(0);
+    return Objects.isNull(renewedAt) || renewedAt.plusSeconds(duration).isBefore(now);
+  }
+
+  private String leaseName(String key) {
+    return "spaship-lock-".concat(appInstance).concat("-").concat(key)
+      .toLowerCase()
+      .replaceAll("[^a-z0-9.-]", "-");
+  }
+
+  /**
+   * The leases of the namespace of the operator, every write fails with a 409 when the lease has changed since it was
+   * read.
+   */
+  interface Leases {
+
+    Lease get(String name);
+
+    List<Lease> list(Map<String, String> labels);
+
+    void create(Lease lease);
+
+    void replace(Lease lease);
+  }
+
+  private record ClientLeases(OpenShiftClient ocClient, String nameSpace) implements Leases {
+
+    @Override
+    public Lease get(String name) {
+      return ocClient.leases().inNamespace(nameSpace).withName(name).get();
+    }
+
+    @Override
+    public List<Lease> list(Map<String, String> labels) {
+      return ocClient.leases().inNamespace(nameSpace).withLabels(labels).list().getItems();
+    }
+
+    @Override
+    public void create(Lease lease) {
+      ocClient.leases().inNamespace(nameSpace).resource(lease).create();
+    }
+
+    @Override
+    public void replace(Lease lease) {
+      ocClient.leases().inNamespace(nameSpace).resource(lease).lockResourceVersion().replace();
+    }
+  }
+
+  static class LeaseHeldException extends RuntimeException {
+    LeaseHeldException(String name) {
+      super("lease " + name + " is held by another operator", null, false, false);
+    }
+  }
+}
@@ -1,11 +1,12 @@
 package io.spaship.operator.service;
 
+import io.smallrye.mutiny.Uni;
 import io.spaship.operator.type.Environment;
 import io.spaship.operator.type.OperationResponse;
 
 public interface Operations {
 
-  OperationResponse createOrUpdateEnvironment(Environment environment, boolean rebuildEnvironment);
+  Uni<OperationResponse> createOrUpdateEnvironment(Environment environment, boolean rebuildEnvironment);
 
 
 }
@@ -0,0 +1,186 @@
+package io.spaship.operator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.smallrye.mutiny.Uni;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Latency of the stages of the upload and GitFlow pipelines, recorded in the {@code spaship.pipeline.stage} timer
+ * tagged with the stage and its outcome. The wait for an environment lock is recorded by the lock manager itself.
+ * Stages of a deployment that has a trace UUID are recorded as spans of its trace as well, see {@link PipelineTracing}.
+ */
+@ApplicationScoped
+public class PipelineMetrics {
+
+  private static final String SUCCESS = "success";
+  private static final String FAILURE = "failure";
+
+  public enum Stage {
+    ZIP_INSPECTION("zip-inspection"),
+    NAMESPACE_BOOTSTRAP("namespace-bootstrap"),
+    TEMPLATE_RENDER("template-render"),
+    RESOURCE_APPLY("resource-apply"),
+    READINESS_WAIT("readiness-wait"),
+    SIDECAR_TRANSFER("sidecar-transfer"),
+    PROJECT_CHECK("project-check"),
+    IMAGE_STREAM("image-stream"),
+    BUILD_CACHE("build-cache"),
+    BUILD_REUSE("build-reuse"),
+    BUILD_CONFIG("build-config"),
+    BUILD_TRIGGER("build-trigger"),
+    BUILD_QUEUE("build-queue"),
+    BUILD_RUN("build-run"),
+    DEPLOYMENT_TRIGGER("deployment-trigger"),
+    ROLLOUT("rollout");
+
+    private final String tag;
+
+    Stage(String tag) {
+      this.tag = tag;
+    }
+
+    public String tag() {
+      return tag;
+    }
+  }
+
+  private final MeterRegistry registry;
+  private final PipelineTracing tracing;
+
+  public PipelineMetrics(MeterRegistry registry, PipelineTracing tracing) {
+    this.registry = registry;
+    this.tracing = tracing;
+  }
+
+  public <T> T time(Stage stage, Supplier<T> work) {
+    var start = System.nanoTime();
+    var outcome = FAILURE;
+    try {
+      var result = work.get();
+      outcome = SUCCESS;
+      return result;
+    } finally {
+      record(stage, System.nanoTime() - start, outcome);
+    }
+  }
+
+  public void run(Stage stage, Runnable work) {
+    time(stage, () -> {
+      work.run();
+      return null;
+    });
+  }
+
+  /**
+   * Times the uni from its subscription to its termination, a cancelled uni is not recorded.
+   */
+  public <T> Uni<T> time(Stage stage, Uni<T> work) {
+    return Uni.createFrom().deferred(() -> {
+      var start = System.nanoTime();
+      return work.onItemOrFailure().invoke((item, failure) ->
+        record(stage, System.nanoTime() - start, failure == null ? SUCCESS : FAILURE));
+    });
+  }
+
+  /**
+   * Times the work and records it as a span of the deployment, the span is current while the work runs so the
+   * kubernetes api calls made by the work are attached to it.
+   */
+  public <T> T time(Stage stage, UUID traceId, Supplier<T> work) {
+    var span = tracing.start(stage.tag, traceId, SpanKind.INTERNAL);
+    Throwable failure = null;
+    try (var ignored = span.makeCurrent()) {
+      return time(stage, work);
+    } catch (RuntimeException | Error e) {
+      failure = e;
+      throw e;
+    } finally {
+      tracing.end(span, failure);
+    }
+  }
+
+  public void run(Stage stage, UUID traceId, Runnable work) {
+    time(stage, traceId, () -> {
+      work.run();
+      return null;
+    });
+  }
+
+  /**
+   * Times the uni and records it as a span of the deployment. The work is given the context of the span, to run its
+   * blocking calls with it or to propagate it to the services it calls.
+   */
+  public <T> Uni<T> time(Stage stage, UUID traceId, SpanKind kind, Function<Context, Uni<T>> work) {
+    return Uni.createFrom().deferred(() -> {
+      var span = tracing.start(stage.tag, traceId, kind);
+      var context = Context.root().with(span);
+      return time(stage, Uni.createFrom().deferred(() -> work.apply(context)))
+        .onItemOrFailure().invoke((item, failure) -> tracing.end(span, failure))
+        .onCancellation().invoke(() -> {
+          span.setAttribute("spaship.cancelled", "true");
+          span.end();
+        });
+    });
+  }
+
+  public void record(Stage stage, Duration duration, boolean succeeded) {
+    record(stage, duration.toNanos(), succeeded ? SUCCESS : FAILURE);
+  }
+
+  /**
+   * Exposes the saturation of a thread pool and counts the tasks it rejects, pools that are not a
+   * {@link ThreadPoolExecutor} are ignored.
+   */
+  public void monitor(String pool, ExecutorService executor) {
+    if (!(executor instanceof ThreadPoolExecutor threadPool))
+      return;
+    Gauge.builder("spaship.executor.active", threadPool, ThreadPoolExecutor::getActiveCount)
+      .description("threads running a task")
+      .tag("pool", pool)
+      .register(registry);
+    Gauge.builder("spaship.executor.pool.size", threadPool, ThreadPoolExecutor::getPoolSize)
+      .description("threads in the pool")
+      .tag("pool", pool)
+      .register(registry);
+    Gauge.builder("spaship.executor.queued", threadPool, p -> p.getQueue().size())
+      .description("tasks waiting for a thread")
+      .tag("pool", pool)
+      .register(registry);
+    Gauge.builder("spaship.executor.queue.remaining", threadPool, p -> p.getQueue().remainingCapacity())
+      .description("tasks the pool can still queue before it rejects")
+      .tag("pool", pool)
+      .register(registry);
+    var rejected = Counter.builder("spaship.executor.rejected")
+      .description("tasks rejected by a saturated pool")
+      .tag("pool", pool)
+      .register(registry);
+    var rejectionHandler = threadPool.getRejectedExecutionHandler();
+    threadPool.setRejectedExecutionHandler((task, saturated) -> {
+      rejected.increment();
+      rejectionHandler.rejectedExecution(task, saturated);
+    });
+  }
+
+  private void record(Stage stage, long nanos, String outcome) {
+    Timer.builder("spaship.pipeline.stage")
+      .description("duration of a deployment pipeline stage")
+      .tag("stage", stage.tag)
+      .tag("outcome", outcome)
+      .publishPercentileHistogram()
+      .register(registry)
+      .record(nanos, TimeUnit.NANOSECONDS);
+  }
+}
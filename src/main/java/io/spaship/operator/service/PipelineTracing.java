@@ -0,0 +1,75 @@
+package io.spaship.operator.service;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * OpenTelemetry spans of the deployment pipeline. The trace UUID handed out by the upload api is used as the
+ * OpenTelemetry trace id, so every stage of a deployment ends up in the same trace whichever thread runs it, and a
+ * trace can be looked up in the tracing backend by the id found in the events.
+ */
+@ApplicationScoped
+public class PipelineTracing {
+
+  public static final String TRACE_ID_ATTRIBUTE = "spaship.trace.id";
+  private static final String INSTRUMENTATION_NAME = "io.spaship.operator";
+
+  private final Tracer tracer;
+  private final TextMapPropagator propagator;
+
+  public PipelineTracing(OpenTelemetry openTelemetry) {
+    this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+  }
+
+  /**
+   * Starts a span of the deployment, all the spans of a deployment are children of the same remote parent derived
+   * from its trace UUID. Without a trace UUID the span is a child of the current span, if any.
+   */
+  public Span start(String name, UUID traceId, SpanKind kind) {
+    var builder = tracer.spanBuilder(name).setSpanKind(kind);
+    if (Objects.nonNull(traceId))
+      builder.setParent(Context.root().with(Span.wrap(parentOf(traceId))))
+        .setAttribute(TRACE_ID_ATTRIBUTE, traceId.toString());
+    return builder.startSpan();
+  }
+
+  /**
+   * Ends the span, as failed when there is a failure.
+   */
+  public void end(Span span, Throwable failure) {
+    if (Objects.nonNull(failure)) {
+      span.recordException(failure);
+      span.setStatus(StatusCode.ERROR, String.valueOf(failure.getMessage()));
+    }
+    span.end();
+  }
+
+  /**
+   * Headers propagating the span of the context to the service called within it (W3C {@code traceparent}).
+   */
+  public Map<String, String> headers(Context context) {
+    var headers = new HashMap<String, String>();
+    propagator.inject(context, headers, Map::put);
+    return headers;
+  }
+
+  private static SpanContext parentOf(UUID traceId) {
+    return SpanContext.createFromRemoteParent(traceId.toString().replace("-", ""),
+      String.format("%016x", traceId.getLeastSignificantBits()), TraceFlags.getSampled(), TraceState.getDefault());
+  }
+}
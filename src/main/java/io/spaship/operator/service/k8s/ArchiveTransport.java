@@ -0,0 +1,58 @@
+package io.spaship.operator.service.k8s;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
+import lombok.SneakyThrows;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Hands a spa archive over to the sidecar of an environment, selected by {@code operator.sidecar.transport}.
+ */
+public interface ArchiveTransport {
+
+  /**
+   * Prepares the archive for the environments of a namespace. It is invoked once per environment but the result
+   * can be shared, and is reused across the retries of a push.
+   */
+  Uni<Archive> describe(Path archivePath, String fileName, String nameSpace);
+
+  /**
+   * @param sidecarUrl base url of the sidecar api, e.g. {@code http://10.0.0.1:8081}
+   * @param aborted    checked while the archive is handed over, once true the transfer is given up
+   * @param headers    added to the request sent to the sidecar, e.g. the trace context
+   */
+  Uni<HttpResponse<Buffer>> send(String sidecarUrl, Archive archive, BooleanSupplier aborted,
+                                 Map<String, String> headers);
+
+  default Uni<HttpResponse<Buffer>> send(String sidecarUrl, Archive archive, BooleanSupplier aborted) {
+    return send(sidecarUrl, archive, aborted, Map.of());
+  }
+
+  /**
+   * @param path   location of the archive as seen by the operator
+   * @param sha256 hex encoded digest, null when the transport does not need one
+   */
+  record Archive(String path, String fileName, long size, String sha256) {
+  }
+
+  @SneakyThrows
+  static String sha256Hex(Path path, int bufferSize) {
+    var messageDigest = MessageDigest.getInstance("SHA-256");
+    try (InputStream is = new DigestInputStream(Files.newInputStream(path), messageDigest)) {
+      var chunk = new byte[bufferSize];
+      while (is.read(chunk) != -1) {
+        // reading is enough, the digest stream updates the hash
+      }
+    }
+    return HexFormat.of().formatHex(messageDigest.digest());
+  }
+}
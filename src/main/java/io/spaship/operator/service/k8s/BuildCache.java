@@ -0,0 +1,166 @@
+package io.spaship.operator.service.k8s;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.openshift.api.model.Build;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.spaship.operator.type.GitFlowMeta;
+import io.spaship.operator.util.GitRefResolver;
+import io.spaship.operator.util.ReUsableItems;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the build that already produced the image a GitFlow deployment asks for. The inputs of a build, the commit
+ * its ref resolves to and everything else that shapes the image (repository, context dir, Dockerfile, build args) but
+ * not the environment, are hashed into a digest every build is labelled with. A deployment whose digest matches a
+ * successful build reuses the image of that build, so redeploying a commit or promoting it to another environment of
+ * the namespace does not build it again. The builds themselves are the cache, it survives restarts and expires as old
+ * builds are pruned. Only the builds of the namespace of the deployment, or of the remote build namespace, that built
+ * the same repository at the same commit are reused, a label alone is not trusted.
+ */
+@ApplicationScoped
+public class BuildCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BuildCache.class);
+    public static final String INPUTS_LABEL = "spaship.io/build-inputs";
+    // a label value holds at most 63 characters
+    private static final int LABEL_LENGTH = 63;
+    // the parameters that name the environment, two environments of an app build the same image
+    private static final Set<String> ENVIRONMENT_PARAMETERS = Set.of("NAME", "OUTPUT_NAME", "IMAGE_TAG", "GIT_REF");
+
+    private final GitFlowResourceProvisioner provisioner;
+    private final GitRefResolver resolver;
+    private final MeterRegistry registry;
+    private final boolean enabled;
+
+    @Inject
+    public BuildCache(GitFlowResourceProvisioner provisioner, MeterRegistry registry) {
+        this(provisioner, new GitRefResolver(Duration.ofMillis(ConfigProvider.getConfig()
+                        .getOptionalValue("operator.build.cache.resolve.timeout.ms", Long.class).orElse(5000L))),
+                registry, ConfigProvider.getConfig().getOptionalValue("operator.build.cache.enabled", Boolean.class)
+                        .orElse(true));
+    }
+
+    BuildCache(GitFlowResourceProvisioner provisioner, GitRefResolver resolver, MeterRegistry registry,
+               boolean enabled) {
+        this.provisioner = provisioner;
+        this.resolver = resolver;
+        this.registry = registry;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Resolves the commit of the deployment and looks the build of its inputs up. A ref that cannot be resolved is
+     * built as before, without being pinned nor cached.
+     */
+    public Lookup lookUp(GitFlowMeta meta) {
+        if (!enabled)
+            return Lookup.NONE;
+        var commit = resolver.resolve(meta.repoUrl(), meta.gitRef());
+        if (commit.isEmpty()) {
+            count("unresolved");
+            LOG.debug("ref {} of {} not resolved, the build is not cached", meta.gitRef(), meta.repoUrl());
+            return Lookup.NONE;
+        }
+        var isRemoteBuild = ReUsableItems.isRemoteBuild();
+        var parameters = meta.toTemplateParameterMap();
+        parameters.put("APP", meta.imageStreamName());
+        var digest = inputsDigest(parameters, meta.buildArgs(), commit.get(), isRemoteBuild);
+        Optional<Build> cached;
+        try {
+            cached = provisioner.completeBuilds(Map.of(INPUTS_LABEL, digest), meta.nameSpace(), isRemoteBuild)
+                    .stream()
+                    .filter(build -> built(build, meta.repoUrl(), commit.get()))
+                    .max(Comparator.comparing(build -> Objects.requireNonNullElse(
+                            build.getStatus().getCompletionTimestamp(), "")));
+        } catch (KubernetesClientException e) {
+            // the builds are labelled anyway, a later lookup may find them
+            count("error");
+            LOG.warn("failed to look the build cache up due to {}, building {}", e.getMessage(), commit.get());
+            return new Lookup(commit.get(), digest, null);
+        }
+        count(cached.isPresent() ? "hit" : "miss");
+        cached.ifPresent(build -> LOG.info("commit {} of {} was built by {} in {}, reusing its image", commit.get(),
+                meta.repoUrl(), build.getMetadata().getName(), build.getMetadata().getNamespace()));
+        return new Lookup(commit.get(), digest, cached.orElse(null));
+    }
+
+    static String inputsDigest(Map<String, String> templateParameters, List<Map<String, String>> buildArgs,
+                               String commit, boolean isRemoteBuild) {
+        var inputs = new TreeMap<>(templateParameters);
+        inputs.keySet().removeAll(ENVIRONMENT_PARAMETERS);
+        inputs.put("GIT_COMMIT", commit);
+        inputs.put("REMOTE_BUILD", String.valueOf(isRemoteBuild));
+        if (Objects.nonNull(buildArgs))
+            inputs.put("BUILD_ARGS", buildArgs.stream()
+                    .map(TreeMap::new)
+                    .map(Object::toString)
+                    .sorted()
+                    .collect(Collectors.joining(",")));
+        try {
+            var sha256 = MessageDigest.getInstance("SHA-256").digest(inputs.toString()
+                    .getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha256).substring(0, LABEL_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Whether the build built the repository at the commit, as its spec tells. The label of a build may be copied, the
+     * spec of its source is what the build controller checked out.
+     */
+    static boolean built(Build build, String repoUrl, String commit) {
+        var spec = build.getSpec();
+        if (Objects.isNull(spec) || Objects.isNull(spec.getSource()) || Objects.isNull(spec.getSource().getGit())
+                || Objects.isNull(spec.getRevision()) || Objects.isNull(spec.getRevision().getGit()))
+            return false;
+        return Objects.equals(withoutTrailingSlash(spec.getSource().getGit().getUri()), withoutTrailingSlash(repoUrl))
+                && commit.equals(spec.getRevision().getGit().getCommit());
+    }
+
+    private static String withoutTrailingSlash(String url) {
+        return Objects.isNull(url) ? null : url.replaceAll("/+$", "");
+    }
+
+    private void count(String outcome) {
+        registry.counter("spaship.build.cache.lookups", "outcome", outcome).increment();
+    }
+
+    /**
+     * @param commit the commit the ref resolved to, the build is pinned to it
+     * @param cached the successful build of the same inputs, null when there is none
+     */
+    public record Lookup(String commit, String inputsDigest, Build cached) {
+
+        static final Lookup NONE = new Lookup(null, null, null);
+
+        public boolean hit() {
+            return Objects.nonNull(cached);
+        }
+
+        /**
+         * Labels of the build of the inputs, for the next lookups to find it.
+         */
+        public Map<String, String> labels() {
+            return Objects.isNull(inputsDigest) ? Map.of() : Map.of(INPUTS_LABEL, inputsDigest);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.spaship.operator.service.k8s;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.openshift.api.model.Build;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.function.Function;
+
+/**
+ * Cancels the builds a new build of the same BuildConfig makes pointless. Two pushes in a row used to build both
+ * commits and deploy both images in the order the builds ended, now the new build cancels the queued or running
+ * older ones and only its image is deployed. Builds are ordered by the number the build controller gives them, so of
+ * two builds triggered at the same time the later one wins whichever cancels first.
+ * <p>
+ * A request that reuses the image of a cached build supersedes the builds of its BuildConfig as well, the image of an
+ * older request still building must not be deployed over it.
+ */
+@ApplicationScoped
+public class BuildSupersession {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BuildSupersession.class);
+    private static final String BUILD_NUMBER_ANNOTATION = "openshift.io/build.number";
+
+    private final GitFlowResourceProvisioner provisioner;
+    private final MeterRegistry registry;
+    private final boolean enabled;
+
+    public BuildSupersession(GitFlowResourceProvisioner provisioner, MeterRegistry registry) {
+        this.provisioner = provisioner;
+        this.registry = registry;
+        this.enabled = ConfigProvider.getConfig().getOptionalValue("operator.build.supersede.enabled", Boolean.class)
+                .orElse(true);
+    }
+
+    /**
+     * Cancels the builds of the BuildConfig older than the build that has just been triggered and not ended yet. A
+     * build that cannot be cancelled keeps running, the new build is not affected.
+     *
+     * @return the builds asked to cancel, not the ones that ended before they could be
+     */
+    public List<Build> supersede(String buildConfigName, String ns, boolean isRemoteBuild, String buildName) {
+        return cancel(buildConfigName, ns, isRemoteBuild, buildName, builds -> superseded(builds, buildName));
+    }
+
+    /**
+     * Cancels the builds of the BuildConfig that have not ended, the image of the ended build {@code reusedBuildName}
+     * is deployed instead.
+     *
+     * @return the builds asked to cancel, not the ones that ended before they could be
+     */
+    public List<Build> supersedeByReuse(String buildConfigName, String ns, boolean isRemoteBuild,
+                                        String reusedBuildName) {
+        return cancel(buildConfigName, ns, isRemoteBuild, reusedBuildName,
+                builds -> supersededByReuse(builds, reusedBuildName));
+    }
+
+    private List<Build> cancel(String buildConfigName, String ns, boolean isRemoteBuild, String buildName,
+                               Function<List<Build>, List<Build>> selection) {
+        if (!enabled)
+            return List.of();
+        List<Build> older;
+        try {
+            older = selection.apply(provisioner.buildsOf(buildConfigName, ns, isRemoteBuild));
+        } catch (KubernetesClientException e) {
+            LOG.warn("failed to list the builds of {} in {} due to {}, none superseded", buildConfigName, ns,
+                    e.getMessage());
+            return List.of();
+        }
+        var cancelled = new ArrayList<Build>();
+        for (var build : older) {
+            var name = build.getMetadata().getName();
+            try {
+                if (provisioner.cancelBuild(name, ns, isRemoteBuild, buildName))
+                    cancelled.add(build);
+            } catch (KubernetesClientException e) {
+                LOG.warn("failed to cancel build {} in {} due to {}", name, ns, e.getMessage());
+            }
+        }
+        registry.counter("spaship.build.superseded").increment(cancelled.size());
+        return cancelled;
+    }
+
+    /**
+     * @return the builds numbered before the named build that have not ended, none when the build is not listed
+     */
+    static List<Build> superseded(List<Build> builds, String buildName) {
+        var latest = builds.stream()
+                .filter(build -> buildName.equals(build.getMetadata().getName()))
+                .map(BuildSupersession::numberOf)
+                .filter(OptionalLong::isPresent)
+                .mapToLong(OptionalLong::getAsLong)
+                .findFirst();
+        if (latest.isEmpty())
+            return List.of();
+        return builds.stream()
+                .filter(build -> !BuildWatcher.hasEnded(build))
+                .filter(build -> numberOf(build).stream().anyMatch(number -> number < latest.getAsLong()))
+                .toList();
+    }
+
+    /**
+     * @return the builds other than the reused one that have not ended
+     */
+    static List<Build> supersededByReuse(List<Build> builds, String reusedBuildName) {
+        return builds.stream()
+                .filter(build -> !reusedBuildName.equals(build.getMetadata().getName()))
+                .filter(build -> !BuildWatcher.hasEnded(build))
+                .toList();
+    }
+
+    private static OptionalLong numberOf(Build build) {
+        var annotations = build.getMetadata().getAnnotations();
+        if (Objects.isNull(annotations) || Objects.isNull(annotations.get(BUILD_NUMBER_ANNOTATION)))
+            return OptionalLong.empty();
+        try {
+            return OptionalLong.of(Long.parseLong(annotations.get(BUILD_NUMBER_ANNOTATION)));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+}
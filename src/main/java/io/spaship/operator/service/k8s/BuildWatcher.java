@@ -0,0 +1,223 @@
+package io.spaship.operator.service.k8s;
+
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.client.OpenShiftClient;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Completes the waits for the end of builds, and streams the changes of builds, from Build informers instead of
+ * polling every build. There is one informer per namespace (and client) with builds being watched, it is shared by
+ * all the builds of the namespace and stopped once none is watched anymore. A wait does not hold a thread.
+ */
+@ApplicationScoped
+public class BuildWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BuildWatcher.class);
+    private static final Set<String> END_PHASES = Set.of("Complete", "Failed", "Cancelled", "Error");
+    // the informer is only used for its events, a periodic resync would not bring anything
+    private static final long NO_RESYNC = 0;
+
+    // creates the informer of a namespace, on the build client when remote
+    private final BiFunction<String, Boolean, SharedIndexInformer<Build>> informers;
+    // guarded by this
+    private final Map<NamespaceKey, NamespaceWatch> watches = new HashMap<>();
+
+    @Inject
+    public BuildWatcher(@Named("default") OpenShiftClient openShiftClient,
+                        @Named("build") OpenShiftClient remoteBuildClient) {
+        this((ns, remote) -> (remote ? remoteBuildClient : openShiftClient).builds().inNamespace(ns)
+                .runnableInformer(NO_RESYNC));
+    }
+
+    BuildWatcher(BiFunction<String, Boolean, SharedIndexInformer<Build>> informers) {
+        this.informers = informers;
+    }
+
+    /**
+     * Emits the build as soon as it has ended, whether it succeeded or not. The wait is unbounded, the caller is
+     * expected to bound it and cancelling it releases the informer when it was the last wait in the namespace.
+     */
+    public Uni<Build> awaitEnd(String buildName, String ns, boolean isRemoteBuild) {
+        var key = new NamespaceKey(ns, isRemoteBuild);
+        return Uni.createFrom().emitter(emitter -> {
+            var listener = new Listener() {
+                @Override
+                public void changed(Build build) {
+                    if (hasEnded(build))
+                        emitter.complete(build);
+                }
+
+                @Override
+                public void failed(Throwable failure) {
+                    emitter.fail(failure);
+                }
+            };
+            listen(key, buildName, listener);
+            // a wait terminated before is unregistered right away
+            emitter.onTermination(() -> unregister(key, buildName, listener));
+        });
+    }
+
+    /**
+     * Emits every change of the build, starting with its current state, and completes once it has ended. A change
+     * may be emitted twice.
+     */
+    public Multi<Build> changes(String buildName, String ns, boolean isRemoteBuild) {
+        var key = new NamespaceKey(ns, isRemoteBuild);
+        return Multi.createFrom().emitter(emitter -> {
+            var listener = new Listener() {
+                @Override
+                public void changed(Build build) {
+                    emitter.emit(build);
+                    if (hasEnded(build))
+                        emitter.complete();
+                }
+
+                @Override
+                public void failed(Throwable failure) {
+                    emitter.fail(failure);
+                }
+            };
+            listen(key, buildName, listener);
+            // a wait terminated before is unregistered right away
+            emitter.onTermination(() -> unregister(key, buildName, listener));
+        });
+    }
+
+    public static boolean hasEnded(Build build) {
+        return Objects.nonNull(build.getStatus()) && hasEnded(build.getStatus().getPhase());
+    }
+
+    public static boolean hasEnded(String phase) {
+        return END_PHASES.contains(phase);
+    }
+
+    private void listen(NamespaceKey key, String buildName, Listener listener) {
+        var watch = register(key, buildName, listener);
+        start(key, watch);
+        // the build may have changed before the listener was registered, the initial list of a starting informer
+        // covers that case and the store of a running one does
+        var current = watch.informer.getStore().getByKey(key.ns() + "/" + buildName);
+        if (Objects.nonNull(current))
+            listener.changed(current);
+    }
+
+    private synchronized NamespaceWatch register(NamespaceKey key, String buildName, Listener listener) {
+        var watch = watches.computeIfAbsent(key, this::watch);
+        watch.listeners.computeIfAbsent(buildName, name -> new HashSet<>()).add(listener);
+        return watch;
+    }
+
+    private synchronized void unregister(NamespaceKey key, String buildName, Listener listener) {
+        var watch = watches.get(key);
+        if (Objects.isNull(watch))
+            return;
+        var listeners = watch.listeners.get(buildName);
+        if (Objects.nonNull(listeners) && listeners.remove(listener) && listeners.isEmpty())
+            watch.listeners.remove(buildName);
+        if (watch.listeners.isEmpty()) {
+            LOG.debug("no build watched in {}, stopping its informer", key);
+            watches.remove(key);
+            watch.informer.stop();
+        }
+    }
+
+    private synchronized Set<Listener> listenersOf(NamespaceKey key, String buildName) {
+        var watch = watches.get(key);
+        if (Objects.isNull(watch))
+            return Set.of();
+        return Set.copyOf(watch.listeners.getOrDefault(buildName, Set.of()));
+    }
+
+    private NamespaceWatch watch(NamespaceKey key) {
+        LOG.debug("starting the build informer of {}", key);
+        var informer = informers.apply(key.ns(), key.remote());
+        informer.addEventHandler(new ResourceEventHandler<Build>() {
+            @Override
+            public void onAdd(Build build) {
+                onChange(key, build);
+            }
+
+            @Override
+            public void onUpdate(Build oldBuild, Build build) {
+                onChange(key, build);
+            }
+
+            @Override
+            public void onDelete(Build build, boolean deletedFinalStateUnknown) {
+                var buildName = build.getMetadata().getName();
+                listenersOf(key, buildName).forEach(listener -> listener.failed(
+                    new IllegalStateException("build " + buildName + " was deleted before it ended")));
+            }
+        });
+        return new NamespaceWatch(informer, new HashMap<>(), new AtomicBoolean());
+    }
+
+    // the informer is started under the lock so that it cannot be started once stopped, the last wait of the
+    // namespace may have been cancelled since it was registered. Its outcome is handled outside of the lock since
+    // a failure to start may be reported on the calling thread
+    private void start(NamespaceKey key, NamespaceWatch watch) {
+        CompletionStage<Void> started;
+        synchronized (this) {
+            if (watches.get(key) != watch || !watch.started.compareAndSet(false, true))
+                return;
+            started = watch.informer.start();
+        }
+        started.whenComplete((ignored, failure) -> {
+            if (Objects.isNull(failure))
+                return;
+            LOG.error("build informer of {} failed to start due to {}", key, failure.getMessage());
+            failAll(key, failure);
+        });
+    }
+
+    private void onChange(NamespaceKey key, Build build) {
+        var listeners = listenersOf(key, build.getMetadata().getName());
+        if (!listeners.isEmpty() && hasEnded(build))
+            LOG.debug("build {} in {} ended with phase {}", build.getMetadata().getName(), key,
+                build.getStatus().getPhase());
+        listeners.forEach(listener -> listener.changed(build));
+    }
+
+    private void failAll(NamespaceKey key, Throwable failure) {
+        Set<Listener> listeners = new HashSet<>();
+        synchronized (this) {
+            var watch = watches.get(key);
+            if (Objects.nonNull(watch))
+                watch.listeners.values().forEach(listeners::addAll);
+        }
+        listeners.forEach(listener -> listener.failed(failure));
+    }
+
+    private interface Listener {
+
+        void changed(Build build);
+
+        void failed(Throwable failure);
+    }
+
+    private record NamespaceKey(String ns, boolean remote) {
+    }
+
+    private record NamespaceWatch(SharedIndexInformer<Build> informer,
+                                  Map<String, Set<Listener>> listeners,
+                                  AtomicBoolean started) {
+    }
+}
@@ -2,8 +2,16 @@ package io.spaship.operator.service.k8s;
 
 import io.fabric8.kubernetes.api.model.KubernetesList;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.Loggable;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
 import io.fabric8.openshift.api.model.BuildRequest;
 import io.fabric8.openshift.api.model.BuildRequestBuilder;
+import io.fabric8.openshift.api.model.ImageStreamTagBuilder;
 import io.fabric8.openshift.client.OpenShiftClient;
 import io.spaship.operator.util.ReUsableItems;
 import org.slf4j.Logger;
@@ -12,7 +20,7 @@ import org.slf4j.LoggerFactory;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Named;
 import java.io.InputStream;
-import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.util.*;
 import java.util.function.Function;
 
@@ -27,6 +35,9 @@ public class GitFlowResourceProvisioner {
     private final OpenShiftClient openShiftClient;
     private final OpenShiftClient remoteBuildClient;
     private static final String CONTAINER_NAME = "httpd-server";
+    public static final String BUILD_CONFIG_LABEL = "openshift.io/build-config.name";
+    public static final String SUPERSEDED_BY_ANNOTATION = "spaship.io/superseded-by";
+    private static final int CANCEL_ATTEMPTS = 3;
 
     public GitFlowResourceProvisioner(@Named("default")OpenShiftClient openShiftClient,
                                       @Named("build")OpenShiftClient remoteBuildClient) {
@@ -67,20 +78,42 @@ public class GitFlowResourceProvisioner {
 
 
     public String triggerBuildWrapper(String buildConfigName, String ns, boolean isRemote){
+        return triggerBuildWrapper(buildConfigName, ns, isRemote, null, Map.of());
+    }
+
+    /**
+     * @param commit the commit to build instead of the ref of the BuildConfig, null to build the ref
+     * @param labels labels added to the build once it is created, a build that could not be labelled is not cached
+     */
+    public String triggerBuildWrapper(String buildConfigName, String ns, boolean isRemote, String commit,
+                                      Map<String, String> labels){
         OpenShiftClient selectedClient = openShiftClient;
         if(isRemote){
             LOG.debug("Remote build client selected ");
             selectedClient = remoteBuildClient;
         }
-        return triggerBuild(buildConfigName,ns,selectedClient);
+        var buildName = triggerBuild(buildConfigName, ns, commit, selectedClient);
+        if (labels.isEmpty())
+            return buildName;
+        // the build is running already, failing here would have the stage retried and trigger another build
+        try {
+            selectedClient.builds().inNamespace(ns).withName(buildName).edit(build -> new BuildBuilder(build)
+                    .editMetadata().addToLabels(labels).endMetadata().build());
+        } catch (KubernetesClientException e) {
+            LOG.warn("failed to label build {} in {} due to {}, it will not be reused", buildName, ns,
+                    e.getMessage());
+        }
+        return buildName;
     }
 
-    private String triggerBuild(String buildConfigName, String ns, OpenShiftClient client) {
-        BuildRequest buildRequest = new BuildRequestBuilder()
+    private String triggerBuild(String buildConfigName, String ns, String commit, OpenShiftClient client) {
+        var requestBuilder = new BuildRequestBuilder()
                 .withNewMetadata()
                 .withName(buildConfigName)
-                .endMetadata()
-                .build();
+                .endMetadata();
+        if (Objects.nonNull(commit))
+            requestBuilder.withNewRevision().withType("Git").withNewGit().withCommit(commit).endGit().endRevision();
+        BuildRequest buildRequest = requestBuilder.build();
         var buildConfig = client.buildConfigs().inNamespace(ns).withName(buildConfigName).isReady();
         throwExceptionWhenConditionNotMatched(buildConfig,
                 "BuildConfig resource named " + buildConfigName + " in namespace " + ns + " not found ");
@@ -90,8 +123,95 @@ public class GitFlowResourceProvisioner {
         return build.getMetadata().getName();
     }
 
+    /**
+     * The successful builds with the labels whose image is known, local builds are looked up in the namespace of the
+     * deployment only and remote builds in the remote build namespace. Labels can be set by anyone who can build, the
+     * builds of other namespaces are not trusted.
+     */
+    public List<Build> completeBuilds(Map<String, String> labels, String ns, boolean isRemoteBuild) {
+        var builds = isRemoteBuild
+                ? remoteBuildClient.builds().inNamespace(ReUsableItems.remoteBuildNameSpace()).withLabels(labels).list()
+                : openShiftClient.builds().inNamespace(ns).withLabels(labels).list();
+        return builds.getItems().stream()
+                .filter(build -> Objects.nonNull(build.getStatus()) && "Complete".equals(build.getStatus().getPhase()))
+                .filter(build -> Objects.nonNull(imageDigestOf(build)))
+                .toList();
+    }
+
+    /**
+     * Points the image stream tag at the image an earlier build pushed, which may be the tag of another environment.
+     * The tag pulls the image through its own image stream, as if it had been built for it.
+     */
+    public void tagBuildImage(Build build, String ns, String imageStreamTag) {
+        var output = build.getSpec().getOutput().getTo();
+        var sourceNs = Objects.requireNonNullElse(output.getNamespace(), build.getMetadata().getNamespace());
+        var sourceImageStream = output.getName().split(":")[0];
+        var tag = new ImageStreamTagBuilder()
+                .withNewMetadata().withName(imageStreamTag).endMetadata()
+                .withNewTag()
+                .withNewFrom()
+                .withKind("ImageStreamImage")
+                .withNamespace(sourceNs)
+                .withName(sourceImageStream + "@" + imageDigestOf(build))
+                .endFrom()
+                .withNewReferencePolicy().withType("Local").endReferencePolicy()
+                .endTag()
+                .build();
+        openShiftClient.imageStreamTags().inNamespace(ns).resource(tag).createOrReplace();
+        LOG.debug("tagged {}/{}@{} as {} in {}", sourceNs, sourceImageStream, imageDigestOf(build), imageStreamTag, ns);
+    }
+
+    /**
+     * The builds instantiated from the BuildConfig, whatever their phase.
+     */
+    public List<Build> buildsOf(String buildConfigName, String ns, boolean isRemote) {
+        OpenShiftClient client = selectClient(isRemote, "listing the builds of " + buildConfigName);
+        return client.builds().inNamespace(ns).withLabel(BUILD_CONFIG_LABEL, buildConfigName).list().getItems();
+    }
+
+    /**
+     * Asks the build controller to cancel the build the way {@code oc cancel-build} does, the build is annotated with
+     * the build that superseded it so that the wait for its end can tell it apart from a build cancelled by hand. The
+     * build is replaced at the version it was read at, a build that ended meanwhile is left as it is.
+     *
+     * @return whether the build was cancelled, false when it had ended or is gone
+     */
+    public boolean cancelBuild(String buildName, String ns, boolean isRemote, String supersededBy) {
+        OpenShiftClient client = selectClient(isRemote, "cancelling build " + buildName);
+        for (int attempt = 1; ; attempt++) {
+            var build = client.builds().inNamespace(ns).withName(buildName).get();
+            if (Objects.isNull(build) || BuildWatcher.hasEnded(build))
+                return false;
+            var cancelled = new BuildBuilder(build)
+                    .editMetadata().addToAnnotations(SUPERSEDED_BY_ANNOTATION, supersededBy).endMetadata()
+                    .editOrNewStatus().withCancelled(true).endStatus()
+                    .build();
+            try {
+                client.builds().inNamespace(ns).resource(cancelled).lockResourceVersion().replace();
+                LOG.info("build {} in {} superseded by {}, cancelled", buildName, ns, supersededBy);
+                return true;
+            } catch (KubernetesClientException e) {
+                // the build changed since it was read, read it again to tell whether it has ended
+                if (e.getCode() != HttpURLConnection.HTTP_CONFLICT || attempt == CANCEL_ATTEMPTS)
+                    throw e;
+            }
+        }
+    }
 
-    public Reader getBuildLog(String buildName, String ns, int upto, boolean isRemoteBuild) {
+    public static Optional<String> supersededBy(Build build) {
+        return Optional.ofNullable(build.getMetadata().getAnnotations())
+                .map(annotations -> annotations.get(SUPERSEDED_BY_ANNOTATION));
+    }
+
+    public static String imageDigestOf(Build build) {
+        var output = build.getStatus().getOutput();
+        if (Objects.isNull(output) || Objects.isNull(output.getTo()))
+            return null;
+        return output.getTo().getImageDigest();
+    }
+
+
+    public Loggable getBuildLog(String buildName, String ns, int upto, boolean isRemoteBuild) {
         LOG.debug("getBuildLog called with buildName: {}; namespace: {}; upto: {}", buildName, ns, upto);
 
         if (upto <= 0)
@@ -108,24 +228,32 @@ public class GitFlowResourceProvisioner {
         return Objects.nonNull(condition) && "True".equals(condition.getStatus());
     }
 
-    public Reader getDeploymentLog(String deploymentName, String ns, int upto, boolean isHttpDeployment){
+    /**
+     * Watches the deployment, the current state is received first.
+     */
+    public Watch watchDeployment(String deploymentName, String ns, Watcher<Deployment> watcher) {
+        LOG.debug("watching deployment {} in namespace {}", deploymentName, ns);
+        return openShiftClient.apps().deployments().inNamespace(ns).withName(deploymentName).watch(watcher);
+    }
+
+    public Loggable getDeploymentLog(String deploymentName, String ns, int upto, boolean isHttpDeployment){
         LOG.debug("getDeploymentLog called with deploymentName: {}; namespace: {}; upto: {}", deploymentName, ns, upto);
-        Function<OpenShiftClient, Reader> deploymentLogFunction = client -> client.apps().deployments().inNamespace(ns).withName(deploymentName)
-                .tailingLines(upto).withPrettyOutput().getLogReader();
-        Function<OpenShiftClient, Reader> httpDeploymentFunction = client -> client.apps().deployments().inNamespace(ns)
-                .withName(deploymentName).inContainer(CONTAINER_NAME).getLogReader();
+        Function<OpenShiftClient, Loggable> deploymentLogFunction = client -> client.apps().deployments().inNamespace(ns).withName(deploymentName)
+                .tailingLines(upto).withPrettyOutput();
+        Function<OpenShiftClient, Loggable> httpDeploymentFunction = client -> client.apps().deployments().inNamespace(ns)
+                .withName(deploymentName).inContainer(CONTAINER_NAME);
 
         if (isHttpDeployment)
             return httpDeploymentFunction.apply(openShiftClient);
         return deploymentLogFunction.apply(openShiftClient);
     }
 
-    public Reader getLog(String podName, String ns, int upto, boolean isHttpPod){
+    public Loggable getLog(String podName, String ns, int upto, boolean isHttpPod){
         LOG.debug("getLog called with podName: {}; namespace: {}; upto: {}", podName, ns, upto);
-        Function<OpenShiftClient, Reader> podLogFunction = client -> client.pods().inNamespace(ns).withName(podName)
-                .tailingLines(upto).withPrettyOutput().getLogReader();
-        Function<OpenShiftClient, Reader> httpPodLogFunction = client -> client.pods().inNamespace(ns)
-                .withName(podName).inContainer(CONTAINER_NAME).tailingLines(upto).withPrettyOutput().getLogReader();
+        Function<OpenShiftClient, Loggable> podLogFunction = client -> client.pods().inNamespace(ns).withName(podName)
+                .tailingLines(upto).withPrettyOutput();
+        Function<OpenShiftClient, Loggable> httpPodLogFunction = client -> client.pods().inNamespace(ns)
+                .withName(podName).inContainer(CONTAINER_NAME).tailingLines(upto).withPrettyOutput();
         if(isHttpPod)
             return httpPodLogFunction.apply(openShiftClient);
         return podLogFunction.apply(openShiftClient);
@@ -163,42 +291,40 @@ public class GitFlowResourceProvisioner {
         LOG.debug(debugMessage, createdBc);
     }
 
-    Reader getTailingBuildLog(String buildName, String ns, int upto, boolean isRemoteBuild) {
+    Loggable getTailingBuildLog(String buildName, String ns, int upto, boolean isRemoteBuild) {
         LOG.debug("Inside getTailingBuildLog");
         OpenShiftClient client = selectClient(isRemoteBuild,"fetching trailing build log");
         return client.builds().inNamespace(ns).withName(buildName)
-                .tailingLines(upto).withPrettyOutput().getLogReader();
+                .tailingLines(upto).withPrettyOutput();
     }
 
-    Reader getCompleteBuildLog(String buildName, String ns, boolean isRemoteBuild) {
+    Loggable getCompleteBuildLog(String buildName, String ns, boolean isRemoteBuild) {
         LOG.debug("Inside getCompleteBuildLog");
         OpenShiftClient client = selectClient(isRemoteBuild,"fetching build log");
 
-        return client.builds().inNamespace(ns).withName(buildName).getLogReader();
-    }
-
-    public boolean hasBuildEnded(String buildName, String ns, boolean isRemoteBuild) {
-        LOG.debug("Invoked hasBuildEnded");
-        OpenShiftClient client = selectClient(isRemoteBuild,"checking build status");
-        var phase = client.builds().inNamespace(ns).withName(buildName).get().getStatus().getPhase();
-        return "Complete".equals(phase) || "Failed".equals(phase) || "Cancelled".equals(phase);
+        return client.builds().inNamespace(ns).withName(buildName);
     }
 
     public Map<String,Object> fetchBuildMeta(String buildName, String ns, boolean isRemote) {
         LOG.debug("Invoked buildMeta");
-        Map<String,Object> meta = new HashMap<>();
         OpenShiftClient client = selectClient(isRemote,"fetching build meta");
         try{
-            var build = client.builds().inNamespace(ns).withName(buildName).get();
-            var durationInNanos = build.getStatus().getDuration();
-            meta.put("Phase",build.getStatus().getPhase());
-            meta.put("Name",buildName);
-            meta.put("NameSpace",ns);
-            // 1 second = 1_000_000_000 nano seconds
-            meta.put("DurationInSecs",(durationInNanos / 1_000_000_000));
+            return buildMeta(client.builds().inNamespace(ns).withName(buildName).get());
         }catch(Exception ex){
+            Map<String,Object> meta = new HashMap<>();
             meta.put("Exception", ex.getMessage());
+            return meta;
         }
+    }
+
+    public static Map<String,Object> buildMeta(Build build) {
+        Map<String,Object> meta = new HashMap<>();
+        var durationInNanos = build.getStatus().getDuration();
+        meta.put("Phase",build.getStatus().getPhase());
+        meta.put("Name",build.getMetadata().getName());
+        meta.put("NameSpace",build.getMetadata().getNamespace());
+        // 1 second = 1_000_000_000 nano seconds
+        meta.put("DurationInSecs",(Objects.isNull(durationInNanos) ? 0 : durationInNanos / 1_000_000_000));
         return meta;
     }
 
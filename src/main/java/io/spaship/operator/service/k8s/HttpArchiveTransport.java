@@ -0,0 +1,109 @@
+package io.spaship.operator.service.k8s;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
+import io.vertx.mutiny.ext.web.client.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streams a spa archive to a sidecar as raw binary. The file is read from an {@link io.vertx.mutiny.core.file.AsyncFile}
+ * in fixed size chunks and framed into the multipart envelope expected by the sidecar upload api, so the request has
+ * an explicit content length and the archive is never buffered on the heap nor passed through the generic multipart
+ * encoder.
+ */
+public class HttpArchiveTransport implements ArchiveTransport {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HttpArchiveTransport.class);
+  private static final String UPLOAD_PATH = "/api/upload";
+  private static final String CRLF = "\r\n";
+  private static final String FORM_FIELD = "spa";
+  private static final String ARCHIVE_CONTENT_TYPE = "application/zip";
+
+  private final Vertx vertx;
+  private final WebClient client;
+  private final int chunkSize;
+  private final boolean checksumEnabled;
+
+  public HttpArchiveTransport(Vertx vertx, WebClient client, int chunkSize, boolean checksumEnabled) {
+    this.vertx = vertx;
+    this.client = client;
+    this.chunkSize = chunkSize;
+    this.checksumEnabled = checksumEnabled;
+  }
+
+  /**
+   * Resolves the size and (when enabled) the digest of the archive once, so that retries of the same push do not
+   * have to read the file again.
+   */
+  @Override
+  public Uni<Archive> describe(Path archivePath, String fileName, String nameSpace) {
+    var path = archivePath.toAbsolutePath().toString();
+    return vertx.fileSystem().props(path)
+      .chain(props -> digest(archivePath).map(sha256 -> new Archive(path, fileName, props.size(), sha256)));
+  }
+
+  public Uni<HttpResponse<Buffer>> send(String sidecarUrl, Archive archive) {
+    return send(sidecarUrl, archive, () -> false);
+  }
+
+  /**
+   * Checks {@code aborted} before every chunk. Once it returns true the body fails, which makes the client reset
+   * the request so the sidecar discards the partial upload.
+   */
+  @Override
+  public Uni<HttpResponse<Buffer>> send(String sidecarUrl, Archive archive, BooleanSupplier aborted,
+                                        Map<String, String> headers) {
+    var requestUri = sidecarUrl.concat(UPLOAD_PATH);
+    var boundary = "spaship-" + UUID.randomUUID();
+    var head = Buffer.buffer("--" + boundary + CRLF
+      + "Content-Disposition: form-data; name=\"" + FORM_FIELD + "\"; filename=\"" + archive.fileName() + "\"" + CRLF
+      + "Content-Type: " + ARCHIVE_CONTENT_TYPE + CRLF
+      + "Content-Transfer-Encoding: binary" + CRLF
+      + CRLF);
+    var tail = Buffer.buffer(CRLF + "--" + boundary + "--" + CRLF);
+    var contentLength = head.length() + archive.size() + tail.length();
+    LOG.debug("streaming {} bytes of archive {} to {}", archive.size(), archive.path(), requestUri);
+
+    return vertx.fileSystem().open(archive.path(), new OpenOptions().setRead(true).setWrite(false).setCreate(false))
+      .chain(file -> {
+        file.setReadBufferSize(chunkSize);
+        var body = Multi.createBy().concatenating()
+          .streams(Multi.createFrom().item(head), file.toMulti(), Multi.createFrom().item(tail))
+          .invoke(chunk -> {
+            if (aborted.getAsBoolean())
+              throw new CancellationException("transfer of " + archive.path() + " aborted");
+          });
+        var request = client.requestAbs(HttpMethod.POST, requestUri);
+        headers.forEach(request::putHeader);
+        request.putHeader("Content-Type", "multipart/form-data; boundary=" + boundary)
+          .putHeader("Content-Length", Long.toString(contentLength));
+        if (Objects.nonNull(archive.sha256()))
+          request.putHeader("Digest", "sha-256=" + Base64.getEncoder()
+            .encodeToString(HexFormat.of().parseHex(archive.sha256())));
+        return request.sendStream(body).eventually(file::close);
+      });
+  }
+
+  private Uni<String> digest(Path archivePath) {
+    if (!checksumEnabled)
+      return Uni.createFrom().nullItem();
+    return Uni.createFrom().item(() -> ArchiveTransport.sha256Hex(archivePath, chunkSize))
+      .runSubscriptionOn(Infrastructure.getDefaultExecutor());
+  }
+}
@@ -13,25 +13,28 @@ import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.spaship.operator.business.EventManager;
 import io.spaship.operator.exception.ResourceNotFoundException;
+import io.spaship.operator.repo.EnvironmentLockManager;
 import io.spaship.operator.service.Operations;
+import io.spaship.operator.service.PipelineMetrics;
+import io.spaship.operator.service.PipelineMetrics.Stage;
 import io.spaship.operator.type.ApplicationConstants;
 import io.spaship.operator.type.Environment;
 import io.spaship.operator.type.EventStructure;
 import io.spaship.operator.type.OperationResponse;
 import io.spaship.operator.util.BuildConfigYamlModifier;
-import io.spaship.operator.util.ReUsableItems;
 import lombok.SneakyThrows;
 import org.eclipse.microprofile.config.ConfigProvider;
-import org.javatuples.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Named;
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Consumer;
 
@@ -39,6 +42,8 @@ import java.util.function.Consumer;
 @ApplicationScoped
 public class Operator implements Operations {
     private static final Logger LOG = LoggerFactory.getLogger(Operator.class);
+    private static final String SIDECAR = "sidecar";
+    private static final String STAGING_VOLUME = "spaship-staging";
     private final OpenShiftClient ocClient;
     private final EventManager eventManager;
     private final String domain;
@@ -46,16 +51,32 @@ public class Operator implements Operations {
     private final String routerShard;
     private final String appInstance;
     private final String deDebugNs;
+    private final EnvironmentLockManager lockManager;
+    private final PipelineMetrics metrics;
+    // the claim of the staging volume mounted into the sidecars, null unless archives are handed over through it
+    private final String stagingClaim;
+    private final String stagingMountPath;
 
     public Operator(@Named("default") OpenShiftClient ocClient,
-                    EventManager eventManager, @Named("deNamespace") String ns) {
+                    EventManager eventManager, @Named("deNamespace") String ns,
+                    EnvironmentLockManager lockManager, PipelineMetrics metrics) {
         this.ocClient = ocClient;
+        this.lockManager = lockManager;
+        this.metrics = metrics;
         this.eventManager = eventManager;
         domain = ConfigProvider.getConfig().getValue("operator.domain.name", String.class);
         routerDomain = ConfigProvider.getConfig().getValue("operator.router.domain.name", String.class);
         routerShard = ConfigProvider.getConfig().getValue("operator.router.shard.type", String.class);
         appInstance = setAppInstanceValue();
         this.deDebugNs = ns;
+        var config = ConfigProvider.getConfig();
+        var sharedVolume = "shared-volume".equals(
+                config.getOptionalValue("operator.sidecar.transport", String.class).orElse("http"));
+        stagingClaim = sharedVolume
+                ? config.getOptionalValue("operator.sidecar.staging.claim", String.class).orElse("spaship-staging")
+                : null;
+        stagingMountPath = config.getOptionalValue("operator.sidecar.staging.mount.path", String.class)
+                .orElse("/app/staging");
     }
 
     private String setAppInstanceValue() {
@@ -69,12 +90,17 @@ public class Operator implements Operations {
 
 
 
-    public OperationResponse createOrUpdateEnvironment(Environment environment, boolean rebuildEnvironment) {
+    public Uni<OperationResponse> createOrUpdateEnvironment(Environment environment, boolean rebuildEnvironment) {
 
         propertyValidation();
 
-        ReUsableItems.enforceOpsLocking(new Pair<>(environment.getIdentification(), environment.getTraceID()));
+        // lock environment creation operation for same environment
+        return lockManager.withLock(environment.getIdentification(), environment.getTraceID(),
+                () -> Uni.createFrom().item(() -> applyEnvironment(environment, rebuildEnvironment))
+                        .runSubscriptionOn(Infrastructure.getDefaultExecutor()));
+    }
 
+    private OperationResponse applyEnvironment(Environment environment, boolean rebuildEnvironment) {
         boolean envExists = environmentExists(environment);
         LOG.debug("envExists is {}", envExists);
         if (!envExists || rebuildEnvironment)
@@ -83,7 +109,6 @@ public class Operator implements Operations {
         // todo mutability is not good, we should not change the state of the object
         environment.setOperationPerformed(true);
 
-        ReUsableItems.releaseLock(environment.getIdentification());
         LOG.debug("\n");
         // todo change the status code type to enum instead of int for better readability
         return OperationResponse.builder().environment(environment).sideCarServiceUrl(sideCarSvcUrl)
@@ -144,11 +169,13 @@ public class Operator implements Operations {
 
     void createNewEnvironment(Environment environment, boolean rebuildEnvironment) {
         if (!rebuildEnvironment && !nameSpaceExists(environment)) {
-            createMpPlusProject(environment);
+            metrics.run(Stage.NAMESPACE_BOOTSTRAP, environment.getTraceID(), () -> createMpPlusProject(environment));
         }
-        KubernetesList result = buildK8sResourceList(environment);
+        KubernetesList result = metrics.time(Stage.TEMPLATE_RENDER, environment.getTraceID(),
+                () -> buildK8sResourceList(environment));
         LOG.debug("create environment is in progress");
-        processK8sList(result, environment.getTraceID(), environment.getNameSpace(),rebuildEnvironment);
+        metrics.run(Stage.RESOURCE_APPLY, environment.getTraceID(),
+                () -> processK8sList(result, environment.getTraceID(), environment.getNameSpace(), rebuildEnvironment));
     }
 
     // TODO: this implementation is mp+ specific, using inheritance
@@ -290,6 +317,45 @@ public class Operator implements Operations {
 
     }
 
+    /**
+     * Lists the environments of this operator instance whose sidecar service in the namespace carries all the given
+     * labels.
+     */
+    public List<Environment> environmentsBySelector(String nameSpace, Map<String, String> selector) {
+        var labels = new HashMap<>(selector);
+        labels.put(ApplicationConstants.MANAGED_BY, ApplicationConstants.SPASHIP);
+        var environments = environmentsOf(
+                ocClient.services().inNamespace(nameSpace).withLabels(labels).list().getItems(), appInstance,
+                nameSpace);
+        LOG.debug("{} environments matched selector {} in namespace {}", environments.size(), labels, nameSpace);
+        return environments;
+    }
+
+    /**
+     * The environments of the operator instance among the sidecar services. A service is told apart by its
+     * {@code appInstance} label, or by its name if it was created before the label, a name prefix alone would also
+     * match the instances whose name starts with this one's.
+     */
+    static List<Environment> environmentsOf(List<Service> services, String appInstance, String nameSpace) {
+        return services.stream()
+                .filter(svc -> isOfInstance(svc, appInstance))
+                .map(svc -> svc.getMetadata().getLabels())
+                .map(svcLabels -> new Environment(svcLabels.get(ApplicationConstants.ENVIRONMENT),
+                        svcLabels.get(ApplicationConstants.WEBSITE), null, nameSpace, true, null, null, null, null,
+                        null, true, false, null))
+                .toList();
+    }
+
+    private static boolean isOfInstance(Service svc, String appInstance) {
+        var labels = Optional.ofNullable(svc.getMetadata().getLabels()).orElse(Map.of());
+        if (labels.containsKey(ApplicationConstants.APP_INSTANCE))
+            return appInstance.equals(labels.get(ApplicationConstants.APP_INSTANCE));
+        var website = labels.get(ApplicationConstants.WEBSITE);
+        var environment = labels.get(ApplicationConstants.ENVIRONMENT);
+        return Objects.nonNull(website) && Objects.nonNull(environment)
+                && svc.getMetadata().getName().equals("svc-" + appInstance + "-" + website + "-" + environment);
+    }
+
     Map<String, String> searchCriteriaLabel(Environment environment) {
         return Map.of(ApplicationConstants.MANAGED_BY, ApplicationConstants.SPASHIP,
                 ApplicationConstants.WEBSITE, environment.getWebsiteName().toLowerCase(),
@@ -339,10 +405,31 @@ public class Operator implements Operations {
         }
         if (Objects.isNull(kubernetesList))
             throw new RuntimeException("Faild to locally process kubernetesList");
-
+        if (Objects.nonNull(stagingClaim))
+            mountStagingVolume(kubernetesList, stagingClaim, stagingMountPath);
         return kubernetesList;
     }
 
+    /**
+     * Mounts the staging volume of the namespace, read only, into the sidecars of the environment for them to pull the
+     * archives the operator staged there. The claim is not created by the operator, it has to exist in every namespace
+     * and be bound to the storage the operator mounts at {@code <staging-root>/<namespace>}.
+     */
+    static void mountStagingVolume(KubernetesList resources, String claim, String mountPath) {
+        resources.getItems().stream()
+                .filter(Deployment.class::isInstance)
+                .map(item -> ((Deployment) item).getSpec().getTemplate().getSpec())
+                .filter(pod -> pod.getContainers().stream().anyMatch(container -> SIDECAR.equals(container.getName())))
+                .forEach(pod -> {
+                    pod.getVolumes().add(new VolumeBuilder().withName(STAGING_VOLUME)
+                            .withNewPersistentVolumeClaim(claim, true).build());
+                    pod.getContainers().stream()
+                            .filter(container -> SIDECAR.equals(container.getName()))
+                            .forEach(container -> container.getVolumeMounts().add(new VolumeMountBuilder()
+                                    .withName(STAGING_VOLUME).withMountPath(mountPath).withReadOnly(true).build()));
+                });
+    }
+
     public boolean isEnvironmentAvailable(Environment environment) {
         boolean isAvailable = false;
 
@@ -0,0 +1,189 @@
+package io.spaship.operator.service.k8s;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
+import io.vertx.mutiny.ext.web.client.WebClient;
+import lombok.SneakyThrows;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Hands archives over through a staging volume shared with the environments of a namespace instead of uploading
+ * them. The archive is written once per namespace under {@code <staging-root>/<namespace>/<sha256>.zip} and every
+ * sidecar only receives a small command telling it where to pull the archive from and which digest to expect.
+ * <p>
+ * The staging directory of a namespace must be the same storage the sidecars of that namespace mount at
+ * {@code sidecarMountPath}: the {@code operator.sidecar.staging.claim} of the namespace, which {@link Operator} mounts
+ * into the sidecars, has to be bound to a directory of a shared file system that the operator mounts at
+ * {@code <staging-root>/<namespace>}. Neither is provisioned by the operator, an archive for a namespace whose staging
+ * directory is missing fails instead of being staged where no sidecar can read it. Staged archives are content
+ * addressed, so the same archive deployed again is not copied again, and are removed once they are older than the
+ * retention.
+ */
+public class SharedVolumeArchiveTransport implements ArchiveTransport {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SharedVolumeArchiveTransport.class);
+  private static final String PULL_PATH = "/api/upload/pull";
+  private static final String ARCHIVE_EXTENSION = ".zip";
+
+  private final WebClient client;
+  private final Path stagingRoot;
+  private final String sidecarMountPath;
+  private final int bufferSize;
+  private final Duration retention;
+  // digest per version of an uploaded file and staged copy per namespace and digest, shared by all the environments
+  // of a deployment
+  private final Map<String, Memo<String>> digests = new ConcurrentHashMap<>();
+  private final Map<String, Memo<Path>> stagedArchives = new ConcurrentHashMap<>();
+
+  public SharedVolumeArchiveTransport(Vertx vertx, WebClient client, Path stagingRoot, String sidecarMountPath,
+                                      int bufferSize, Duration retention) {
+    this.client = client;
+    this.stagingRoot = stagingRoot;
+    this.sidecarMountPath = sidecarMountPath;
+    this.bufferSize = bufferSize;
+    this.retention = retention;
+    vertx.setPeriodic(Math.max(retention.toMillis() / 2, 1000),
+      id -> Infrastructure.getDefaultExecutor().execute(this::sweep));
+  }
+
+  @Override
+  public Uni<Archive> describe(Path archivePath, String fileName, String nameSpace) {
+    var source = archivePath.toAbsolutePath();
+    return blocking(() -> version(source))
+      .chain(version -> once(digests, version, () -> blocking(() -> ArchiveTransport.sha256Hex(source, bufferSize))))
+      .chain(sha256 -> once(stagedArchives, nameSpace + "/" + sha256,
+        () -> blocking(() -> stage(source, stagingRoot.resolve(nameSpace).resolve(sha256 + ARCHIVE_EXTENSION))))
+        .chain(staged -> blocking(() -> new Archive(staged.toString(), fileName, Files.size(staged), sha256))));
+  }
+
+  @Override
+  public Uni<HttpResponse<Buffer>> send(String sidecarUrl, Archive archive, BooleanSupplier aborted,
+                                        Map<String, String> headers) {
+    if (aborted.getAsBoolean())
+      return Uni.createFrom().failure(new CancellationException("hand over of " + archive.path() + " aborted"));
+    var command = new JsonObject()
+      .put("path", sidecarMountPath + "/" + Path.of(archive.path()).getFileName())
+      .put("sha256", archive.sha256())
+      .put("fileName", archive.fileName())
+      .put("size", archive.size());
+    LOG.debug("asking sidecar {} to pull {}", sidecarUrl, command);
+    var request = client.requestAbs(HttpMethod.POST, sidecarUrl.concat(PULL_PATH));
+    headers.forEach(request::putHeader);
+    return request.sendJsonObject(command);
+  }
+
+  // an upload path may be reused for another archive, its digest is only reused while the file is the same one
+  private static String version(Path source) throws IOException {
+    var attributes = Files.readAttributes(source, BasicFileAttributes.class);
+    return source + "|" + attributes.fileKey() + "|" + attributes.size() + "|"
+      + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+  }
+
+  // copies next to the target and renames, a sidecar (or another operator replica) never sees a partial archive
+  private Path stage(Path source, Path target) throws IOException {
+    if (Files.exists(target)) {
+      Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+      LOG.debug("archive {} already staged", target);
+      return target;
+    }
+    if (!Files.isDirectory(target.getParent()))
+      throw new IOException("the staging volume of namespace " + target.getParent().getFileName()
+        + " is not mounted at " + target.getParent());
+    var tmp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    try {
+      Files.copy(source, tmp);
+      Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+    LOG.info("archive {} staged at {}", source, target);
+    return target;
+  }
+
+  private void sweep() {
+    var expiry = System.currentTimeMillis() - retention.toMillis();
+    digests.values().removeIf(memo -> memo.createdAt() < expiry);
+    stagedArchives.values().removeIf(memo -> memo.createdAt() < expiry);
+    if (!Files.isDirectory(stagingRoot))
+      return;
+    try (Stream<Path> archives = Files.walk(stagingRoot, 2)) {
+      archives.filter(path -> path.getFileName().toString().endsWith(ARCHIVE_EXTENSION))
+        .filter(path -> lastModified(path) < expiry)
+        .forEach(this::delete);
+    } catch (IOException e) {
+      LOG.warn("failed to clean up the staging volume due to {}", e.getMessage());
+    }
+  }
+
+  private void delete(Path path) {
+    try {
+      Files.deleteIfExists(path);
+      LOG.debug("removed expired staged archive {}", path);
+    } catch (IOException e) {
+      LOG.warn("failed to remove staged archive {} due to {}", path, e.getMessage());
+    }
+  }
+
+  @SneakyThrows
+  private static long lastModified(Path path) {
+    return Files.getLastModifiedTime(path).toMillis();
+  }
+
+  private static <T> Uni<T> blocking(BlockingSupplier<T> supplier) {
+    return Uni.createFrom().item(() -> supplier.getUnchecked())
+      .runSubscriptionOn(Infrastructure.getDefaultExecutor());
+  }
+
+  // concurrent callers for the same key share one computation, a failed one is forgotten so that it can be retried.
+  // every caller gets a copy of the shared future, a caller cancelling its subscription must not cancel the others
+  private static <T> Uni<T> once(Map<String, Memo<T>> cache, String key, Supplier<Uni<T>> work) {
+    return Uni.createFrom().deferred(() -> {
+      var memo = new Memo<T>(new CompletableFuture<>(), System.currentTimeMillis());
+      var existing = cache.putIfAbsent(key, memo);
+      if (existing != null)
+        return Uni.createFrom().completionStage(existing.result().copy());
+      work.get().subscribe().with(memo.result()::complete, failure -> {
+        cache.remove(key, memo);
+        memo.result().completeExceptionally(failure);
+      });
+      return Uni.createFrom().completionStage(memo.result().copy());
+    });
+  }
+
+  private record Memo<T>(CompletableFuture<T> result, long createdAt) {
+  }
+
+  @FunctionalInterface
+  private interface BlockingSupplier<T> {
+    T get() throws IOException;
+
+    @SneakyThrows
+    default T getUnchecked() {
+      return get();
+    }
+  }
+}
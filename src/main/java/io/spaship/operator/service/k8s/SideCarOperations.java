@@ -1,12 +1,21 @@
 package io.spaship.operator.service.k8s;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.trace.SpanKind;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.Cancellable;
 import io.spaship.operator.business.EventManager;
+import io.spaship.operator.service.PipelineMetrics;
+import io.spaship.operator.service.PipelineMetrics.Stage;
+import io.spaship.operator.service.PipelineTracing;
+import io.spaship.operator.type.BulkSyncResponse;
 import io.spaship.operator.type.Environment;
 import io.spaship.operator.type.EventStructure;
 import io.spaship.operator.type.OperationResponse;
+import io.spaship.operator.util.AsyncSemaphore;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClientOptions;
@@ -14,7 +23,6 @@ import io.vertx.mutiny.core.Vertx;
 import io.vertx.mutiny.core.buffer.Buffer;
 import io.vertx.mutiny.ext.web.client.HttpResponse;
 import io.vertx.mutiny.ext.web.client.WebClient;
-import io.vertx.mutiny.ext.web.multipart.MultipartForm;
 import lombok.SneakyThrows;
 import org.eclipse.microprofile.config.ConfigProvider;
 import org.slf4j.Logger;
@@ -22,64 +30,164 @@ import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import java.io.File;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @ApplicationScoped
 public class SideCarOperations {
   private static final Logger LOG = LoggerFactory.getLogger(SideCarOperations.class);
+  private static final String SYNC_FAILURE_PREFIX = "failed to communicate due to ";
   private final WebClient client;
   private final EventManager eventManager;
-  private final ExecutorService executor = Executors.newFixedThreadPool(10); // TODO smartly handle this thread as it
-                                                                             // will only support 10 environments at a
-                                                                             // time
   private final Operator k8sOperator;
+  // bounds the number of archives being transferred to sidecars at the same time
+  private final AsyncSemaphore pushPermits;
+  // bounds the number of concurrent pod readiness look-ups against the k8s api
+  private final AsyncSemaphore readinessPermits;
+  private final Duration readinessInterval;
+  private final ArchiveTransport archiveTransport;
+  private final SidecarResilience sidecarResilience;
+  // latest push per (namespace, website, environment, spa), an older push is superseded as soon as a newer one arrives
+  private final Map<PushKey, PendingPush> pendingPushes = new ConcurrentHashMap<>();
+  private final ObjectMapper objectMapper;
+  // number of environments synced at the same time by a bulk sync
+  private final int syncParallelism;
+  private final PipelineMetrics metrics;
+  private final PipelineTracing tracing;
 
   public SideCarOperations(Vertx vertx,
       EventManager eventManager,
-      Operator k8sOperator) {
+      Operator k8sOperator,
+      SidecarResilience sidecarResilience,
+      ObjectMapper objectMapper,
+      PipelineMetrics metrics,
+      PipelineTracing tracing) {
     this.k8sOperator = k8sOperator;
+    this.metrics = metrics;
+    this.tracing = tracing;
+    this.objectMapper = objectMapper;
+    this.sidecarResilience = sidecarResilience;
     WebClientOptions options = new WebClientOptions()
         .setUserAgent("spaship-operator/0.0.1");
     this.client = WebClient.create(vertx, options);
 
     this.eventManager = eventManager;
+    var config = ConfigProvider.getConfig();
+    this.archiveTransport = archiveTransport(vertx);
+    this.pushPermits = new AsyncSemaphore(
+        config.getOptionalValue("operator.sidecar.push.concurrency", Integer.class).orElse(50));
+    this.readinessPermits = new AsyncSemaphore(
+        config.getOptionalValue("operator.sidecar.readiness.concurrency", Integer.class).orElse(20));
+    this.readinessInterval = Duration.ofMillis(
+        config.getOptionalValue("operator.sidecar.readiness.interval.ms", Long.class).orElse(4000L));
+    this.syncParallelism = config.getOptionalValue("operator.sidecar.sync.parallelism", Integer.class).orElse(20);
+  }
+
+  private ArchiveTransport archiveTransport(Vertx vertx) {
+    var config = ConfigProvider.getConfig();
+    var chunkSize = config.getOptionalValue("operator.sidecar.upload.chunk.size", Integer.class).orElse(64 * 1024);
+    var transport = config.getOptionalValue("operator.sidecar.transport", String.class).orElse("http");
+    LOG.info("archives are handed over to sidecars through {} transport", transport);
+    if ("shared-volume".equals(transport))
+      return new SharedVolumeArchiveTransport(vertx, client,
+          Path.of(config.getOptionalValue("operator.sidecar.staging.root", String.class)
+              .orElse("/var/spaship/staging")),
+          config.getOptionalValue("operator.sidecar.staging.mount.path", String.class).orElse("/app/staging"),
+          chunkSize,
+          Duration.ofMinutes(
+              config.getOptionalValue("operator.sidecar.staging.retention.minutes", Long.class).orElse(60L)));
+    return new HttpArchiveTransport(vertx, client, chunkSize,
+        config.getOptionalValue("operator.sidecar.upload.checksum.enabled", Boolean.class).orElse(false));
   }
 
-  // TODO 1. remove manual thread handling 2. replace hard coded time with pod
-  // ready status
   public void asyncCreateOrUpdateSPDirectory(OperationResponse operationResponse) {
-    executor.submit(() -> {
-      var envName = operationResponse.getEnvironmentName();
-      if (operationResponse.getStatus() == 1)
-        LOG.info("env {} is a new environment", envName);
-      var res = createOrUpdateSPDirectory(operationResponse);
-      LOG.info("sidecar ops completed with following response {}", res);
-    });
+    var envName = operationResponse.getEnvironmentName();
+    if (operationResponse.getStatus() == 1)
+      LOG.info("env {} is a new environment", envName);
+    var key = PushKey.of(operationResponse.getEnvironment());
+    var push = new PendingPush(operationResponse);
+    var superseded = pendingPushes.put(key, push);
+    if (Objects.nonNull(superseded))
+      supersede(superseded, operationResponse);
+    push.attach(createOrUpdateSPDirectory(operationResponse, push::isSuperseded)
+        .onTermination().invoke(() -> pendingPushes.remove(key, push))
+        .subscribe()
+        .with(res -> LOG.info("sidecar ops completed with following response {}", res),
+            err -> LOG.error("sidecar ops of env {} failed due to {}", envName, err.getMessage())));
+  }
+
+  // drops the older push wherever it is: waiting for readiness, queued for a permit or in the middle of a transfer
+  private void supersede(PendingPush superseded, OperationResponse newer) {
+    var older = superseded.operationResponse;
+    LOG.info("push of spa {} in env {} (trace {}) superseded by trace {}", older.getSpaName(),
+        older.getEnvironmentName(), older.getEnvironment().getTraceID(), newer.getEnvironment().getTraceID());
+    superseded.cancel();
+    eventManager.queue(
+        EventStructure.builder()
+            .websiteName(older.getEnvironment().getWebsiteName())
+            .environmentName(older.getEnvironmentName())
+            .uuid(older.getEnvironment().getTraceID().toString())
+            .state("spa deployment ops superseded")
+            .spaName(older.getSpaName())
+            .contextPath(older.getContextPath())
+            .meta(Map.of("supersededBy", newer.getEnvironment().getTraceID().toString()))
+            .build());
   }
 
   @SneakyThrows
   public Uni<String> triggerSyncAsync(String syncConfig, Environment environment) {
 
-    ObjectMapper objectMapper = new ObjectMapper();
     Object syncJson = objectMapper.readValue(syncConfig, Object.class);
 
     LOG.info("converted String into Object");
 
+    return syncEnvironment(syncConfig, syncJson, environment);
+  }
+
+  /**
+   * Rolls the same sync configuration out to all the given environments, a bounded number at a time. The payload
+   * is parsed once and shared by every environment, a failing environment is reported in the result and does not
+   * stop the others.
+   */
+  public Uni<BulkSyncResponse> triggerBulkSync(JsonNode syncConfig, List<Environment> environments) {
+    var syncJson = objectMapper.convertValue(syncConfig, Object.class);
+    var serializedConfig = syncConfig.toString();
+    LOG.info("bulk sync of {} environments with parallelism {}", environments.size(), syncParallelism);
+    return Multi.createFrom().iterable(environments)
+        .onItem()
+        .transformToUni(env -> syncEnvironment(serializedConfig, syncJson, env)
+            .onFailure()
+            .recoverWithItem(e -> SYNC_FAILURE_PREFIX + e.getMessage())
+            .map(response -> new BulkSyncResponse.Result(env.getWebsiteName(), env.getName(), env.getNameSpace(),
+                !response.contains(SYNC_FAILURE_PREFIX), response)))
+        .merge(syncParallelism)
+        .collect()
+        .asList()
+        .map(BulkSyncResponse::of);
+  }
+
+  private Uni<String> syncEnvironment(String syncConfig, Object syncJson, Environment environment) {
     return Uni.createFrom()
         .item(() -> k8sOperator.environmentSidecarUrl(environment))
         .runSubscriptionOn(Infrastructure.getDefaultExecutor())
-        .map(url -> triggerSync(url, syncJson, environment)).onFailure()
+        .chain(url -> triggerSync(url, syncJson, environment)).onFailure()
         .recoverWithItem(throwable -> {
           LOG.error("sync operation failed due to {}", throwable.getMessage());
-          return new JsonObject().put("status", "failed to communicate due to " + throwable.getMessage())
+          return new JsonObject().put("status", SYNC_FAILURE_PREFIX + throwable.getMessage())
               .encodePrettily();
         })
         .onItem()
         .call(i -> {
-          if (!(i.contains("failed to communicate due to"))) {
+          if (!(i.contains(SYNC_FAILURE_PREFIX))) {
             LOG.info("everything went well updating the sync config");
             return updateSideCarConfigMap(syncConfig, environment);
           }
@@ -94,8 +202,7 @@ public class SideCarOperations {
         .map(syncCfg -> k8sOperator.updateConfigMap(environment, syncConfig));
   }
 
-  @SneakyThrows
-  public String triggerSync(String sidecarUrl, Object syncConfig, Environment environment) {
+  public Uni<String> triggerSync(String sidecarUrl, Object syncConfig, Environment environment) {
 
     sidecarUrl = sidecarUrl.replace("tcp", "http");
     LOG.debug("sidecar url {} syncConfig details {}", sidecarUrl, syncConfig);
@@ -105,27 +212,26 @@ public class SideCarOperations {
     var requestUri = host.concat(":").concat(port).concat("/api/sync");
     LOG.info("sidecar env {} url, {}", environment, requestUri);
 
-    waitForReadiness(environment, 15);
-
-    return client.requestAbs(HttpMethod.POST, requestUri)
-        .sendJson(syncConfig)
-        .map(bufferHttpResponse -> {
-          var output = bufferHttpResponse.bodyAsString();
-          LOG.debug("bufferHttpResponse.bodyAsString() is {}", output);
-          return output;
-        })
+    return waitForReadiness(environment, 15)
+        .chain(() -> callSidecar(endpointOf(host, port), () -> client
+                .requestAbs(HttpMethod.POST, requestUri)
+                .sendJson(syncConfig),
+            bufferHttpResponse -> {
+              var output = bufferHttpResponse.bodyAsString();
+              LOG.debug("bufferHttpResponse.bodyAsString() is {}", output);
+              return output;
+            }))
         .onFailure()
-        .retry()
-        .withBackOff(Duration.ofSeconds(2), Duration.ofSeconds(4))
-        .atMost(30).onFailure()
         .recoverWithItem(
-            e -> new JsonObject().put("status", "failed to communicate due to " + e.getMessage()).encodePrettily())
-        .subscribeAsCompletionStage().get();
+            e -> new JsonObject().put("status", SYNC_FAILURE_PREFIX + e.getMessage()).encodePrettily());
   }
 
-  @SneakyThrows
   // TODO break into multiple methods
-  private OperationResponse createOrUpdateSPDirectory(OperationResponse operationResponse) {
+  Uni<OperationResponse> createOrUpdateSPDirectory(OperationResponse operationResponse) {
+    return createOrUpdateSPDirectory(operationResponse, () -> false);
+  }
+
+  Uni<OperationResponse> createOrUpdateSPDirectory(OperationResponse operationResponse, BooleanSupplier superseded) {
     var sideCarUrl = operationResponse.getSideCarServiceUrl().replace("tcp", "http");
     var environment = operationResponse.getEnvironment();
     LOG.debug("sidecar url {} invoked with the following details {}", sideCarUrl, environment);
@@ -134,36 +240,55 @@ public class SideCarOperations {
     var host = "http://".concat(sideCarUrlPart[1].replace("//", ""));
     var port = sideCarUrlPart[2];
 
-    MultipartForm form = MultipartForm.create()
-        .textFileUpload("spa", operationResponse.spaName(), operationResponse.filePath().toAbsolutePath()
-            .toString(), "application/zip");
-
     var responseOnFailure = OperationResponse.builder().environment(environment)
         .sideCarServiceUrl(operationResponse.getSideCarServiceUrl()).status(0)
         .originatedFrom(this.getClass().toString());
 
-    var requestUri = host.concat(":").concat(port).concat("/api/upload");
-    LOG.info("sidecar env {} url, {}", operationResponse.getEnvironmentName(), requestUri);
+    var sidecarApiUrl = host.concat(":").concat(port);
+    LOG.info("sidecar env {} url, {}", operationResponse.getEnvironmentName(), sidecarApiUrl);
 
-    waitForReadiness(operationResponse.getEnvironment());
-
-    var opResp = client.requestAbs(HttpMethod.POST, requestUri).sendMultipartForm(form)
-        .map(item -> apply(responseOnFailure, item))
-        .onFailure()
-        .retry()
-        .withBackOff(Duration.ofSeconds(2), Duration.ofSeconds(4))
-        .atMost(30)
+    // the readiness look-ups run with the span of their stage, so the k8s api calls are attached to it, and the
+    // span of the transfer is propagated to the sidecar
+    var traceId = environment.getTraceID();
+    return metrics.time(Stage.READINESS_WAIT, traceId, SpanKind.INTERNAL,
+            context -> waitForReadiness(environment, context.wrap(Infrastructure.getDefaultExecutor())))
+        .chain(() -> metrics.time(Stage.SIDECAR_TRANSFER, traceId, SpanKind.CLIENT,
+            context -> archiveTransport.describe(operationResponse.filePath(), operationResponse.spaName(),
+                    environment.getNameSpace())
+                .chain(archive -> callSidecar(endpointOf(host, port),
+                    () -> archiveTransport.send(sidecarApiUrl, archive, superseded, tracing.headers(context)),
+                    item -> apply(responseOnFailure, item)))))
         .onFailure()
         .recoverWithItem(e -> fallbackResponse(responseOnFailure, e))
-        .subscribeAsCompletionStage()
-        .get();
+        .invoke(opResp -> queueDeploymentEvent(operationResponse, opResp));
+  }
+
+  // every attempt goes through the circuit of the sidecar and takes its own permit, so a sidecar that keeps failing
+  // does not hold one during the back-off, retries stop as soon as the circuit opens or the retry budget is spent
+  private <T> Uni<T> callSidecar(String endpoint, Supplier<Uni<HttpResponse<Buffer>>> request,
+      Function<HttpResponse<Buffer>, T> mapper) {
+    return Uni.createFrom().deferred(() -> {
+      sidecarResilience.onRequest();
+      return sidecarResilience.guard(endpoint, () -> pushPermits.withPermit(request))
+          .map(mapper)
+          .onFailure(sidecarResilience::shouldRetry)
+          .retry()
+          .withBackOff(Duration.ofSeconds(2), Duration.ofSeconds(4))
+          .atMost(30);
+    });
+  }
 
+  private static String endpointOf(String host, String port) {
+    return host.replace("http://", "").concat(":").concat(port);
+  }
+
+  private void queueDeploymentEvent(OperationResponse operationResponse, OperationResponse opResp) {
     LOG.info("computed context path by sidecar container is {}", opResp.getContextPath());
     // todo, because the env access host url has a fixed logic that's why computing
     // based on that to save some time and
     // network latency, if performance is not a constant then it's better to use k8s
     // client to get the host
-    var environmentUri = computeEnvironmentUri(environment);
+    var environmentUri = computeEnvironmentUri(operationResponse.getEnvironment());
 
     eventManager.queue(
         EventStructure.builder()
@@ -175,8 +300,6 @@ public class SideCarOperations {
             .contextPath(operationResponse.getContextPath())
             .accessUrl(environmentUri)
             .build());
-
-    return opResp;
   }
 
   // hell of a detail :D
@@ -191,24 +314,40 @@ public class SideCarOperations {
         .concat(environment.getSpaContextPath().replace(".", "").replace(File.separator, "_"));
   }
 
-  private void waitForReadiness(Environment env) throws InterruptedException {
-    waitForReadiness(env, 150);
+  private Uni<Boolean> waitForReadiness(Environment env, Executor executor) {
+    return waitForReadiness(env, 150, executor);
   }
 
-  private void waitForReadiness(Environment env, int threshold) throws InterruptedException {
-    int attempt = 0;
-    while (!k8sOperator.isEnvironmentAvailable(env)) {
-      if (attempt == 0)
-        LOG.info("waiting for readiness of {}.{} ", env.getName(), env.getWebsiteName());
-      Thread.sleep(4000);
-      if (attempt > threshold) {
-        LOG.warn("environment {}.{} still not ready, releasing the block to prevent from infinite looping ",
-            env.getName(), env.getWebsiteName());
-        break;
-      }
-      attempt++;
-    }
-    LOG.info("environment {}.{} is ready, total no retry attempt is {}", env.getName(), env.getWebsiteName(), attempt);
+  private Uni<Boolean> waitForReadiness(Environment env, int threshold) {
+    return waitForReadiness(env, threshold, Infrastructure.getDefaultExecutor());
+  }
+
+  // polls the pod readiness on a timer instead of sleeping, the k8s look-up itself runs on the worker pool
+  private Uni<Boolean> waitForReadiness(Environment env, int threshold, Executor executor) {
+    var attempt = new AtomicInteger();
+    return Uni.createFrom()
+        .deferred(() -> readinessPermits.withPermit(() -> Uni.createFrom()
+            .item(() -> k8sOperator.isEnvironmentAvailable(env))
+            .runSubscriptionOn(executor)))
+        .invoke(isReady -> {
+          if (Boolean.TRUE.equals(isReady))
+            return;
+          if (attempt.getAndIncrement() == 0)
+            LOG.info("waiting for readiness of {}.{} ", env.getName(), env.getWebsiteName());
+          throw new EnvironmentNotReadyException();
+        })
+        .onFailure()
+        .retry()
+        .withBackOff(readinessInterval, readinessInterval)
+        .atMost(threshold)
+        .invoke(() -> LOG.info("environment {}.{} is ready, total no retry attempt is {}", env.getName(),
+            env.getWebsiteName(), attempt.get()))
+        .onFailure()
+        .recoverWithItem(() -> {
+          LOG.warn("environment {}.{} still not ready, releasing the block to prevent from infinite looping ",
+              env.getName(), env.getWebsiteName());
+          return false;
+        });
   }
 
   private OperationResponse fallbackResponse(OperationResponse.OperationResponseBuilder responseOnFailure,
@@ -229,4 +368,43 @@ public class SideCarOperations {
     return responseFromSidecar;
   }
 
+  private record PushKey(String nameSpace, String websiteName, String environmentName, String spaName) {
+    static PushKey of(Environment environment) {
+      return new PushKey(environment.getNameSpace(), environment.getWebsiteName(), environment.getName(),
+          environment.getSpaName());
+    }
+  }
+
+  private static class PendingPush {
+    private final OperationResponse operationResponse;
+    private Cancellable subscription;
+    private volatile boolean superseded;
+
+    PendingPush(OperationResponse operationResponse) {
+      this.operationResponse = operationResponse;
+    }
+
+    boolean isSuperseded() {
+      return superseded;
+    }
+
+    synchronized void attach(Cancellable subscription) {
+      this.subscription = subscription;
+      if (superseded)
+        subscription.cancel();
+    }
+
+    synchronized void cancel() {
+      superseded = true;
+      if (Objects.nonNull(subscription))
+        subscription.cancel();
+    }
+  }
+
+  private static class EnvironmentNotReadyException extends RuntimeException {
+    EnvironmentNotReadyException() {
+      super("environment is not ready yet", null, false, false);
+    }
+  }
+
 }
@@ -0,0 +1,144 @@
+package io.spaship.operator.service.k8s;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.exception.CircuitOpenException;
+import io.spaship.operator.util.CircuitBreaker;
+import io.spaship.operator.util.RetryBudget;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps one circuit breaker per sidecar endpoint (host:port) and a retry budget shared by all sidecar calls, so a
+ * dead sidecar is failed fast instead of being retried for minutes and a cluster wide outage can not turn into a
+ * retry storm.
+ */
+@ApplicationScoped
+public class SidecarResilience {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SidecarResilience.class);
+  private static final String CALLS_METRIC = "spaship.sidecar.calls";
+  private static final String RETRIES_METRIC = "spaship.sidecar.retries";
+
+  private final MeterRegistry registry;
+  private final RetryBudget retryBudget;
+  // entries live as long as the operator, there is one per environment which keeps the map small
+  private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+  private final int windowSize;
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final Duration openDuration;
+  private final int halfOpenCalls;
+
+  private final Counter succeededCalls;
+  private final Counter failedCalls;
+  private final Counter rejectedCalls;
+  private final Counter allowedRetries;
+  private final Counter deniedRetries;
+
+  public SidecarResilience(MeterRegistry registry) {
+    this.registry = registry;
+    var config = ConfigProvider.getConfig();
+    this.windowSize = config.getOptionalValue("operator.sidecar.breaker.window.size", Integer.class).orElse(20);
+    this.minimumCalls = config.getOptionalValue("operator.sidecar.breaker.minimum.calls", Integer.class).orElse(5);
+    this.failureRateThreshold = config.getOptionalValue("operator.sidecar.breaker.failure.rate", Double.class)
+      .orElse(0.5);
+    this.openDuration = Duration.ofMillis(
+      config.getOptionalValue("operator.sidecar.breaker.open.duration.ms", Long.class).orElse(30000L));
+    this.halfOpenCalls = config.getOptionalValue("operator.sidecar.breaker.half.open.calls", Integer.class).orElse(2);
+    this.retryBudget = new RetryBudget(
+      config.getOptionalValue("operator.sidecar.retry.budget.ratio", Double.class).orElse(0.2),
+      config.getOptionalValue("operator.sidecar.retry.budget.min.per.second", Double.class).orElse(5d),
+      config.getOptionalValue("operator.sidecar.retry.budget.capacity", Double.class).orElse(100d));
+
+    this.succeededCalls = registry.counter(CALLS_METRIC, "outcome", "success");
+    this.failedCalls = registry.counter(CALLS_METRIC, "outcome", "failure");
+    this.rejectedCalls = registry.counter(CALLS_METRIC, "outcome", "rejected");
+    this.allowedRetries = registry.counter(RETRIES_METRIC, "outcome", "allowed");
+    this.deniedRetries = registry.counter(RETRIES_METRIC, "outcome", "denied");
+    Gauge.builder("spaship.sidecar.retry.budget.balance", retryBudget, RetryBudget::balance)
+      .description("retries that can currently be spent on sidecar calls")
+      .register(registry);
+  }
+
+  /**
+   * Must be called once per logical request (not per attempt), it is what earns the retry budget.
+   */
+  public void onRequest() {
+    retryBudget.deposit();
+  }
+
+  /**
+   * Performs a single attempt through the circuit of the endpoint. A failure or a 5xx response counts against the
+   * circuit, when it is open the attempt fails with {@link CircuitOpenException} without reaching the sidecar.
+   */
+  public Uni<HttpResponse<Buffer>> guard(String endpoint, Supplier<Uni<HttpResponse<Buffer>>> attempt) {
+    return Uni.createFrom().deferred(() -> {
+      var breaker = breakerOf(endpoint);
+      var permit = breaker.tryAcquire();
+      if (permit == CircuitBreaker.REJECTED) {
+        rejectedCalls.increment();
+        return Uni.createFrom().failure(new CircuitOpenException(endpoint));
+      }
+      return attempt.get()
+        .onItemOrFailure().invoke((response, failure) -> {
+          if (failure != null || response.statusCode() >= 500) {
+            failedCalls.increment();
+            breaker.onFailure(permit);
+          } else {
+            succeededCalls.increment();
+            breaker.onSuccess(permit);
+          }
+        })
+        .onCancellation().invoke(() -> breaker.release(permit));
+    });
+  }
+
+  /**
+   * Retry predicate for sidecar calls, rejects retries once the circuit is open or the global budget is spent.
+   */
+  public boolean shouldRetry(Throwable failure) {
+    if (failure instanceof CircuitOpenException)
+      return false;
+    if (retryBudget.tryWithdraw()) {
+      allowedRetries.increment();
+      return true;
+    }
+    deniedRetries.increment();
+    LOG.debug("retry budget exhausted, not retrying after {}", failure.getMessage());
+    return false;
+  }
+
+  public CircuitBreaker.State state(String endpoint) {
+    var breaker = breakers.get(endpoint);
+    return breaker == null ? CircuitBreaker.State.CLOSED : breaker.state();
+  }
+
+  private CircuitBreaker breakerOf(String endpoint) {
+    return breakers.computeIfAbsent(endpoint, this::newBreaker);
+  }
+
+  private CircuitBreaker newBreaker(String endpoint) {
+    var breaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls,
+      (from, to) -> {
+        LOG.warn("circuit of sidecar {} moved from {} to {}", endpoint, from, to);
+        registry.counter("spaship.sidecar.circuit.transitions", "state", to.name().toLowerCase()).increment();
+      });
+    Gauge.builder("spaship.sidecar.circuit.state", breaker, b -> b.state().ordinal())
+      .description("0 closed, 1 open, 2 half-open")
+      .tag("endpoint", endpoint)
+      .register(registry);
+    return breaker;
+  }
+}
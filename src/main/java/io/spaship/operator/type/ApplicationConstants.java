@@ -10,4 +10,5 @@ public class ApplicationConstants {
     public static final String WEBSITE = "website";
     public static final String ENVIRONMENT = "environment";
     public static final String SPASHIP = "spaship";
+    public static final String APP_INSTANCE = "appInstance";
 }
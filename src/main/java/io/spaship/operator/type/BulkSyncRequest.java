@@ -0,0 +1,17 @@
+package io.spaship.operator.type;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sync configuration to roll out to several environments at once. The environments are either listed explicitly in
+ * {@code targets} or selected by the labels of their sidecar services in {@code nameSpace}.
+ */
+public record BulkSyncRequest(String nameSpace, List<Target> targets, Map<String, String> selector,
+                              JsonNode syncConfig) {
+
+  public record Target(String websiteName, String envName, String nameSpace) {
+  }
+}
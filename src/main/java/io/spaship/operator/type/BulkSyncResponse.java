@@ -0,0 +1,14 @@
+package io.spaship.operator.type;
+
+import java.util.List;
+
+public record BulkSyncResponse(int total, int synced, int failed, List<Result> results) {
+
+  public static BulkSyncResponse of(List<Result> results) {
+    var synced = (int) results.stream().filter(Result::synced).count();
+    return new BulkSyncResponse(results.size(), synced, results.size() - synced, results);
+  }
+
+  public record Result(String websiteName, String envName, String nameSpace, boolean synced, String response) {
+  }
+}
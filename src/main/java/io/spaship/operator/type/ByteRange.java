@@ -0,0 +1,48 @@
+package io.spaship.operator.type;
+
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * A single byte range of a {@code Range} header, both bounds inclusive.
+ */
+public record ByteRange(long from, long to) {
+
+  private static final Pattern SPEC = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+  /**
+   * Resolves {@code bytes=from-to}, {@code bytes=from-} and {@code bytes=-suffixLength} against a resource of the
+   * given size, the end is capped to the last byte. A range starting past the last byte, or a suffix of no byte, is
+   * resolved but not {@link #satisfiable()}.
+   *
+   * @return empty when the header is malformed or asks for several ranges, it is ignored and the whole resource sent
+   */
+  public static Optional<ByteRange> parse(String header, long size) {
+    var spec = SPEC.matcher(header.trim());
+    if (!spec.matches() || spec.group(1).isEmpty() && spec.group(2).isEmpty())
+      return Optional.empty();
+    try {
+      if (spec.group(1).isEmpty()) {
+        var suffixLength = Long.parseLong(spec.group(2));
+        return Optional.of(new ByteRange(size - Math.min(suffixLength, size), size - 1));
+      }
+      var from = Long.parseLong(spec.group(1));
+      if (spec.group(2).isEmpty())
+        return Optional.of(new ByteRange(from, size - 1));
+      var to = Long.parseLong(spec.group(2));
+      if (to < from)
+        return Optional.empty();
+      return Optional.of(new ByteRange(from, Math.min(to, size - 1)));
+    } catch (NumberFormatException e) {
+      // a bound too large for a long
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @return whether the range holds a byte of the resource, one that does not is answered with a 416
+   */
+  public boolean satisfiable() {
+    return from <= to;
+  }
+}
@@ -0,0 +1,12 @@
+package io.spaship.operator.type;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public record EnvironmentLockInfo(String key, UUID owner, LocalDateTime acquiredAt, long heldForMs, boolean leased,
+                                  List<Waiter> waiters) {
+
+  public record Waiter(UUID owner, long waitingForMs) {
+  }
+}
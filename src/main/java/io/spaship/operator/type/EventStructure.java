@@ -1,28 +1,45 @@
 package io.spaship.operator.type;
 
+import io.vertx.core.json.Json;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
-import lombok.Setter;
 
 import java.time.LocalDateTime;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 @AllArgsConstructor
 @Builder
 @Getter
-@Setter
 public class EventStructure {
   private final LocalDateTime dateTime;
-  private String uuid;
-  private String websiteName;
-  private String environmentName;
-  private String state;
-  private String spaName;
-  private String contextPath;
-  private String accessUrl;
-  private Map<String, Object> meta;
+  private final String uuid;
+  private final String websiteName;
+  private final String environmentName;
+  private final String state;
+  private final String spaName;
+  private final String contextPath;
+  private final String accessUrl;
+  private final Map<String, Object> meta;
+  @Getter(AccessLevel.NONE)
+  private final AtomicReference<String> json = new AtomicReference<>();
+
+  /**
+   * The JSON of the event, computed once on first use and shared by every subscriber, the event has no setters to
+   * make it stale.
+   */
+  public String toJson() {
+    var encoded = json.get();
+    if (encoded == null) {
+      encoded = Json.encode(this);
+      if (!json.compareAndSet(null, encoded))
+        encoded = json.get();
+    }
+    return encoded;
+  }
 
   @Override
   public String toString() {
@@ -97,7 +97,7 @@ public record GitFlowMeta(SsrResourceDetails deploymentDetails, String gitRef, S
         }
         throw new RuntimeException("Some required details are missing");
     }
-    private String buildOutputLocation() {
+    public String buildOutputLocation() {
         if (Objects.nonNull(deploymentDetails) && Objects.nonNull(deploymentDetails.website())
                 && Objects.nonNull(deploymentDetails.app()) &&
                 Objects.nonNull(deploymentDetails.environment())) {
@@ -140,6 +140,10 @@ public record GitFlowMeta(SsrResourceDetails deploymentDetails, String gitRef, S
         }else{
             imageRepoUrl = completeImageRepoUrl();
         }
+        return constructNewDeploymentResource(imageRepoUrl);
+    }
+
+    private SsrResourceDetails constructNewDeploymentResource(String imageRepoUrl) {
         return new SsrResourceDetails(nameSpace,imageRepoUrl
                 , deploymentDetails.app(), deploymentDetails.contextPath(),
                 deploymentDetails.healthCheckPath(), deploymentDetails.website(),
@@ -166,6 +170,23 @@ public record GitFlowMeta(SsrResourceDetails deploymentDetails, String gitRef, S
     }
 
 
+    /**
+     * The meta of a deployment of an image that was built already, by another build than its own.
+     */
+    public GitFlowMeta newGitFlowMetaWithImage(String buildName, String imageRepoUrl) {
+        return new GitFlowMeta(
+                this.constructNewDeploymentResource(imageRepoUrl),
+                this.gitRef,
+                this.repoUrl,
+                this.contextDir,
+                this.buildArgs,
+                this.nameSpace,
+                this.reDeployment,
+                buildName,
+                this.dockerFilePath
+        );
+    }
+
     public BuildType typeOfBuild() {
         boolean isMono = (Objects.nonNull(contextDir) && !StringUtil.containsOnlyForwardSlash(contextDir));
         boolean hasBuildArg = Objects.nonNull(buildArgs) && !buildArgs.isEmpty();
@@ -0,0 +1,18 @@
+package io.spaship.operator.type;
+
+/**
+ * A search over the log of a build, deployment or pod.
+ *
+ * @param query      text a line must contain, a regular expression when {@code regex} is set, at most
+ *                   {@code operator.log.search.max.query.length} characters
+ * @param level      least severe level a line must have (trace, debug, info, warn, error, fatal)
+ * @param context    lines returned before and after each match, capped by {@code operator.log.search.max.context}
+ * @param maxMatches matches after which the search stops, capped by {@code operator.log.search.max.matches}
+ */
+public record LogSearchRequest(String objectName, String ns, int upto, String query, boolean regex,
+                               boolean ignoreCase, String level, int context, int maxMatches) {
+
+  public FetchK8sInfoRequest target() {
+    return new FetchK8sInfoRequest(objectName, ns, upto, false);
+  }
+}
@@ -0,0 +1,4 @@
+package io.spaship.operator.type;
+
+public record SequencedEvent(long id, EventStructure event) {
+}
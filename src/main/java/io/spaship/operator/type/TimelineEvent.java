@@ -0,0 +1,30 @@
+package io.spaship.operator.type;
+
+import io.vertx.core.json.JsonObject;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One entry of the timeline of a GitFlow deployment.
+ *
+ * @param kind   phase, build-log, rollout, pod-log, error or end
+ * @param source the object the entry is about, such as {@code build/web-1} or {@code pod/web-6d9f-x2x7k}
+ * @param detail the phase of the build, the progress of the rollout or the {@code text} of log lines
+ */
+public record TimelineEvent(String kind, String source, Instant time, Map<String, Object> detail) {
+
+    public TimelineEvent(String kind, String source, Map<String, Object> detail) {
+        this(kind, source, Instant.now(), detail);
+    }
+
+    public String toJson(long id) {
+        return new JsonObject()
+                .put("id", id)
+                .put("kind", kind)
+                .put("source", source)
+                .put("time", time.toString())
+                .put("detail", new JsonObject(detail))
+                .encode();
+    }
+}
@@ -0,0 +1,88 @@
+package io.spaship.operator.util;
+
+import io.smallrye.mutiny.Uni;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * A non-blocking counting semaphore. Callers waiting for a permit are parked as pending futures (FIFO) instead of
+ * blocked threads, so the amount of concurrent work is bounded without tying up a thread per waiter.
+ */
+public class AsyncSemaphore {
+
+  private final int permits;
+  private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+  private int available;
+
+  public AsyncSemaphore(int permits) {
+    if (permits < 1)
+      throw new IllegalArgumentException("number of permits must be positive, found " + permits);
+    this.permits = permits;
+    this.available = permits;
+  }
+
+  /**
+   * Runs the supplied action once a permit is available and gives the permit back when the action terminates,
+   * whether by item, failure or cancellation. Cancelling while still waiting simply abandons the place in the queue.
+   */
+  public <T> Uni<T> withPermit(Supplier<Uni<T>> action) {
+    return Uni.createFrom().deferred(() -> {
+      var ticket = acquire();
+      return Uni.createFrom().completionStage(ticket)
+        .chain(granted -> action.get())
+        .onTermination().invoke(() -> relinquish(ticket));
+    });
+  }
+
+  public int permits() {
+    return permits;
+  }
+
+  public synchronized int available() {
+    return available;
+  }
+
+  public synchronized int waiting() {
+    return waiters.size();
+  }
+
+  private synchronized CompletableFuture<Void> acquire() {
+    var ticket = new CompletableFuture<Void>();
+    if (available > 0) {
+      available--;
+      ticket.complete(null);
+    } else {
+      waiters.addLast(ticket);
+    }
+    return ticket;
+  }
+
+  // a ticket that can still be cancelled was never granted, otherwise it holds a permit that must be handed over
+  private void relinquish(CompletableFuture<Void> ticket) {
+    synchronized (this) {
+      waiters.remove(ticket);
+    }
+    if (ticket.cancel(false) || ticket.isCancelled())
+      return;
+    release();
+  }
+
+  // completes the next waiter outside the lock so that its continuation never runs while holding the monitor
+  private void release() {
+    while (true) {
+      CompletableFuture<Void> next;
+      synchronized (this) {
+        next = waiters.pollFirst();
+        if (next == null) {
+          available++;
+          return;
+        }
+      }
+      if (next.complete(null))
+        return;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package io.spaship.operator.util;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count based circuit breaker. The outcome of the last {@code windowSize} calls is kept in a ring, once at least
+ * {@code minimumCalls} are recorded and the failure rate reaches the threshold the circuit opens and every call is
+ * rejected for {@code openDuration}. After that a limited number of trial calls is let through (half-open), a single
+ * failing trial opens the circuit again while enough successful trials close it.
+ * <p>
+ * Every granted call gets a permit carrying the generation of the circuit it was granted in, outcomes reported for
+ * an older generation (e.g. a slow call that started before the circuit opened) are ignored.
+ */
+public class CircuitBreaker {
+
+  public static final long REJECTED = -1;
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final long openDurationNanos;
+  private final int halfOpenCalls;
+  private final LongSupplier nanoClock;
+  private final StateListener listener;
+
+  private final boolean[] window;
+  private int cursor;
+  private int recorded;
+  private int failures;
+
+  private State state = State.CLOSED;
+  private long generation;
+  private long openedAt;
+  private int trialsInFlight;
+  private int trialSuccesses;
+
+  public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                        int halfOpenCalls, StateListener listener) {
+    this(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls, listener, System::nanoTime);
+  }
+
+  CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                 int halfOpenCalls, StateListener listener, LongSupplier nanoClock) {
+    if (windowSize < 1 || halfOpenCalls < 1)
+      throw new IllegalArgumentException("window size and half-open calls must be positive");
+    this.window = new boolean[windowSize];
+    this.minimumCalls = Math.min(Math.max(minimumCalls, 1), windowSize);
+    this.failureRateThreshold = failureRateThreshold;
+    this.openDurationNanos = openDuration.toNanos();
+    this.halfOpenCalls = halfOpenCalls;
+    this.listener = listener;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * @return a permit to hand back through {@link #onSuccess(long)}, {@link #onFailure(long)} or
+   * {@link #release(long)}, or {@link #REJECTED} if the call must not be attempted
+   */
+  public synchronized long tryAcquire() {
+    if (state == State.OPEN) {
+      if (nanoClock.getAsLong() - openedAt < openDurationNanos)
+        return REJECTED;
+      transitionTo(State.HALF_OPEN);
+    }
+    if (state == State.HALF_OPEN) {
+      if (trialsInFlight + trialSuccesses >= halfOpenCalls)
+        return REJECTED;
+      trialsInFlight++;
+    }
+    return generation;
+  }
+
+  public synchronized void onSuccess(long permit) {
+    if (permit != generation)
+      return;
+    if (state == State.HALF_OPEN) {
+      trialsInFlight--;
+      if (++trialSuccesses >= halfOpenCalls)
+        transitionTo(State.CLOSED);
+      return;
+    }
+    record(false);
+  }
+
+  public synchronized void onFailure(long permit) {
+    if (permit != generation)
+      return;
+    if (state == State.HALF_OPEN) {
+      transitionTo(State.OPEN);
+      return;
+    }
+    record(true);
+    if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold)
+      transitionTo(State.OPEN);
+  }
+
+  // the call was abandoned before it produced an outcome, only the half-open trial slot has to be given back
+  public synchronized void release(long permit) {
+    if (permit == generation && state == State.HALF_OPEN)
+      trialsInFlight--;
+  }
+
+  public synchronized State state() {
+    return state;
+  }
+
+  public synchronized double failureRate() {
+    return recorded == 0 ? 0 : (double) failures / recorded;
+  }
+
+  private void record(boolean failed) {
+    if (recorded == window.length) {
+      if (window[cursor])
+        failures--;
+    } else {
+      recorded++;
+    }
+    window[cursor] = failed;
+    if (failed)
+      failures++;
+    cursor = (cursor + 1) % window.length;
+  }
+
+  private void transitionTo(State next) {
+    var previous = state;
+    state = next;
+    generation++;
+    trialsInFlight = 0;
+    trialSuccesses = 0;
+    if (next == State.OPEN)
+      openedAt = nanoClock.getAsLong();
+    if (next == State.CLOSED) {
+      cursor = 0;
+      recorded = 0;
+      failures = 0;
+    }
+    if (listener != null)
+      listener.onTransition(previous, next);
+  }
+
+  @FunctionalInterface
+  public interface StateListener {
+    void onTransition(State from, State to);
+  }
+}
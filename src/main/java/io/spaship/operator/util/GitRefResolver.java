@@ -0,0 +1,127 @@
+package io.spaship.operator.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves a git ref (branch, tag or commit) of a repository to the commit it points to, the way
+ * {@code git ls-remote} does, by reading the ref advertisement of the smart HTTP protocol. Only http(s) repositories
+ * that can be read anonymously are resolved.
+ */
+public class GitRefResolver {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GitRefResolver.class);
+  private static final Pattern COMMIT = Pattern.compile("[0-9a-f]{40}");
+  private static final String PEELED = "^{}";
+  private static final String ADVERTISEMENT_TYPE = "application/x-git-upload-pack-advertisement";
+
+  private final HttpClient client;
+  private final Duration timeout;
+
+  public GitRefResolver(Duration timeout) {
+    this.client = HttpClient.newBuilder()
+      .connectTimeout(timeout)
+      .followRedirects(HttpClient.Redirect.NORMAL)
+      .build();
+    this.timeout = timeout;
+  }
+
+  /**
+   * @param ref a branch, a tag, a full ref name or a commit, none for the default branch
+   * @return the commit, empty when the repository or the ref cannot be resolved
+   */
+  public Optional<String> resolve(String repoUrl, String ref) {
+    if (Objects.nonNull(ref) && COMMIT.matcher(ref).matches())
+      return Optional.of(ref);
+    if (Objects.isNull(repoUrl) || !repoUrl.startsWith("http"))
+      return Optional.empty();
+    var request = HttpRequest.newBuilder(URI.create(repoUrl.replaceAll("/+$", "")
+        + "/info/refs?service=git-upload-pack"))
+      .timeout(timeout)
+      .GET()
+      .build();
+    try {
+      var response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+      try (var body = response.body()) {
+        if (response.statusCode() != 200) {
+          LOG.debug("the refs of {} are not readable, status {}", repoUrl, response.statusCode());
+          return Optional.empty();
+        }
+        // a login page reached through a redirect or a dumb http server answers 200 as well
+        var contentType = response.headers().firstValue("Content-Type").orElse("");
+        if (!contentType.startsWith(ADVERTISEMENT_TYPE)) {
+          LOG.debug("the refs of {} are not advertised by the smart http protocol, content type {}", repoUrl,
+            contentType);
+          return Optional.empty();
+        }
+        return find(parseAdvertisement(body), ref);
+      }
+    } catch (IOException e) {
+      LOG.debug("failed to read the refs of {} due to {}", repoUrl, e.getMessage());
+      return Optional.empty();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    }
+  }
+
+  static Optional<String> find(Map<String, String> refs, String ref) {
+    if (Objects.isNull(ref) || ref.isBlank())
+      return Optional.ofNullable(refs.get("HEAD"));
+    // an annotated tag is advertised peeled as well, the commit it tags is the peeled one
+    for (var candidate : List.of(ref, "refs/heads/" + ref, "refs/tags/" + ref + PEELED, "refs/tags/" + ref)) {
+      var commit = refs.get(candidate);
+      if (Objects.nonNull(commit))
+        return Optional.of(commit);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Reads the pkt-lines of an advertisement, {@code <commit> <ref>} each, the first one followed by the capabilities
+   * of the server.
+   *
+   * @return the commits by ref name
+   * @throws IOException if the content is not made of pkt-lines
+   */
+  static Map<String, String> parseAdvertisement(InputStream in) throws IOException {
+    var refs = new HashMap<String, String>();
+    byte[] header;
+    while ((header = in.readNBytes(4)).length == 4) {
+      var length = pktLength(header);
+      if (length <= 4)
+        continue;
+      var line = new String(in.readNBytes(length - 4), StandardCharsets.UTF_8);
+      var end = line.indexOf('\0');
+      line = (end >= 0 ? line.substring(0, end) : line).stripTrailing();
+      var separator = line.indexOf(' ');
+      if (separator == 40 && COMMIT.matcher(line.substring(0, 40)).matches())
+        refs.put(line.substring(41), line.substring(0, 40));
+    }
+    return refs;
+  }
+
+  private static int pktLength(byte[] header) throws IOException {
+    var hex = new String(header, StandardCharsets.US_ASCII);
+    try {
+      return Integer.parseUnsignedInt(hex, 16);
+    } catch (NumberFormatException e) {
+      throw new IOException("malformed pkt-line length '" + hex + "'", e);
+    }
+  }
+}
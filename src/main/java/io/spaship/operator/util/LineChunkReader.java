@@ -0,0 +1,61 @@
+package io.spaship.operator.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads a text stream in chunks of whole lines. A chunk holds every complete line available at the time of the read,
+ * up to the size of the buffer, so a followed log is emitted as soon as its lines arrive while a log that is already
+ * there is read in large chunks. A line longer than the buffer is split.
+ */
+public class LineChunkReader implements Closeable {
+
+  private final InputStream in;
+  private final byte[] buffer;
+  // bytes read but not handed out yet, a partial line
+  private int pending;
+
+  public LineChunkReader(InputStream in, int chunkSize) {
+    this.in = in;
+    this.buffer = new byte[chunkSize];
+  }
+
+  /**
+   * @return the next chunk, null once the stream is over
+   */
+  public byte[] next() throws IOException {
+    while (true) {
+      var read = in.read(buffer, pending, buffer.length - pending);
+      if (read < 0)
+        return pending == 0 ? null : take(pending);
+      pending += read;
+      var end = lastLineEnd(pending - read);
+      if (end > 0)
+        return take(end);
+      if (pending == buffer.length)
+        return take(pending);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  // the bytes before from were pending already, they hold no line end
+  private int lastLineEnd(int from) {
+    for (var i = pending - 1; i >= from; i--)
+      if (buffer[i] == '\n')
+        return i + 1;
+    return 0;
+  }
+
+  private byte[] take(int length) {
+    var chunk = Arrays.copyOf(buffer, length);
+    System.arraycopy(buffer, length, buffer, 0, pending - length);
+    pending -= length;
+    return chunk;
+  }
+}
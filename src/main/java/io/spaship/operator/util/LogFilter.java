@@ -0,0 +1,210 @@
+package io.spaship.operator.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Greps a log while it is read. Chunks of the log go in, the matching lines come out in the format of {@code grep -n}:
+ * a match is prefixed with {@code <line>:}, a context line with {@code <line>-} and non adjacent groups are separated
+ * by {@code --}. Only the context lines before the current line are held in memory. Once the last match and its
+ * context are out the filter is {@link #isDone() done} and the rest of the log does not need to be read.
+ * <p>
+ * A regular expression gets a bounded time to match each line, so that one that backtracks catastrophically fails the
+ * search instead of holding its thread.
+ */
+public class LogFilter {
+
+  private static final byte[] SEPARATOR = "--\n".getBytes(StandardCharsets.UTF_8);
+  private static final Pattern LEVEL = Pattern.compile(
+    "\\b(TRACE|DEBUG|INFO|WARN|WARNING|ERR|ERROR|SEVERE|FATAL|CRITICAL|PANIC)\\b", Pattern.CASE_INSENSITIVE);
+
+  private final Pattern pattern;
+  private final Level level;
+  private final int context;
+  private final int maxMatches;
+  private final long matchTimeoutNanos;
+
+  // the part of a line that has no line end yet
+  private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+  private final ArrayDeque<String> before = new ArrayDeque<>();
+  private long lineNumber;
+  private long lastWritten;
+  private int afterLeft;
+  private int matches;
+
+  /**
+   * @param query      text or regular expression a line must contain, none to match any line
+   * @param level      least severe level a line must have, none to skip the level check
+   * @param context    lines shown before and after each match
+   * @param maxMatches matches after which the search stops
+   * @param matchTimeout time a regular expression may take to match a line
+   * @throws IllegalArgumentException when the regular expression does not compile or a limit is negative
+   */
+  public LogFilter(String query, boolean regex, boolean ignoreCase, Level level, int context, int maxMatches,
+                   Duration matchTimeout) {
+    if (context < 0 || maxMatches <= 0)
+      throw new IllegalArgumentException("context must not be negative and max matches must be positive");
+    try {
+      this.pattern = Objects.isNull(query) || query.isEmpty() ? null : Pattern.compile(query,
+        (regex ? 0 : Pattern.LITERAL) | (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0));
+    } catch (PatternSyntaxException e) {
+      throw new IllegalArgumentException("invalid regular expression " + e.getPattern() + ": " + e.getDescription());
+    }
+    this.level = level;
+    this.context = context;
+    this.maxMatches = maxMatches;
+    // a literal text is matched in linear time
+    this.matchTimeoutNanos = regex ? matchTimeout.toNanos() : 0;
+  }
+
+  /**
+   * @return the matches and context lines completed by the chunk, empty when there are none
+   */
+  public byte[] filter(byte[] chunk) {
+    var out = new ByteArrayOutputStream();
+    var start = 0;
+    for (var i = 0; i < chunk.length && !isDone(); i++) {
+      if (chunk[i] != '\n')
+        continue;
+      partial.write(chunk, start, i - start);
+      start = i + 1;
+      accept(partial.toString(StandardCharsets.UTF_8), out);
+      partial.reset();
+    }
+    if (!isDone())
+      partial.write(chunk, start, chunk.length - start);
+    return out.toByteArray();
+  }
+
+  /**
+   * Ends the log, the last line may have no line end.
+   */
+  public byte[] finish() {
+    var out = new ByteArrayOutputStream();
+    if (partial.size() > 0 && !isDone())
+      accept(partial.toString(StandardCharsets.UTF_8), out);
+    partial.reset();
+    return out.toByteArray();
+  }
+
+  public boolean isDone() {
+    return matches >= maxMatches && afterLeft == 0;
+  }
+
+  private void accept(String line, ByteArrayOutputStream out) {
+    lineNumber++;
+    if (matches < maxMatches && matches(line)) {
+      matches++;
+      var first = lineNumber - before.size();
+      while (!before.isEmpty())
+        write(first++, '-', before.poll(), out);
+      write(lineNumber, ':', line, out);
+      afterLeft = context;
+    } else if (afterLeft > 0) {
+      afterLeft--;
+      write(lineNumber, '-', line, out);
+    } else if (context > 0) {
+      if (before.size() == context)
+        before.poll();
+      before.add(line);
+    }
+  }
+
+  private boolean matches(String line) {
+    if (Objects.nonNull(level) && Level.detect(line).filter(found -> found.compareTo(level) >= 0).isEmpty())
+      return false;
+    if (Objects.isNull(pattern))
+      return true;
+    if (matchTimeoutNanos == 0)
+      return pattern.matcher(line).find();
+    try {
+      return pattern.matcher(new DeadlineSequence(line, System.nanoTime() + matchTimeoutNanos)).find();
+    } catch (DeadlineSequence.Expired e) {
+      throw new IllegalArgumentException("regular expression " + pattern.pattern() + " took more than "
+        + Duration.ofNanos(matchTimeoutNanos).toMillis() + " ms to match line " + lineNumber);
+    }
+  }
+
+  private void write(long number, char kind, String line, ByteArrayOutputStream out) {
+    if (context > 0 && lastWritten > 0 && number > lastWritten + 1)
+      out.writeBytes(SEPARATOR);
+    lastWritten = number;
+    out.writeBytes((number + String.valueOf(kind) + line + "\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  // a line that cannot be read past a deadline, the matcher reads it again and again while it backtracks
+  private static final class DeadlineSequence implements CharSequence {
+
+    // reads between two looks at the clock
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence line;
+    private final long deadline;
+    private int reads;
+
+    private DeadlineSequence(CharSequence line, long deadline) {
+      this.line = line;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (++reads % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0)
+        throw new Expired();
+      return line.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return line.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new DeadlineSequence(line.subSequence(start, end), deadline);
+    }
+
+    @Override
+    public String toString() {
+      return line.toString();
+    }
+
+    private static class Expired extends RuntimeException {
+      Expired() {
+        super(null, null, false, false);
+      }
+    }
+  }
+
+  /**
+   * Severity of a log line, ordered from the least severe.
+   */
+  public enum Level {
+    TRACE, DEBUG, INFO, WARN, ERROR, FATAL;
+
+    /**
+     * @return the level named by the first level keyword of the line, such as {@code ERROR}, {@code [warn]} or
+     * {@code npm ERR!}
+     */
+    public static Optional<Level> detect(String line) {
+      var matcher = LEVEL.matcher(line);
+      if (!matcher.find())
+        return Optional.empty();
+      return Optional.of(switch (matcher.group(1).toUpperCase(Locale.ROOT)) {
+        case "TRACE" -> TRACE;
+        case "DEBUG" -> DEBUG;
+        case "INFO" -> INFO;
+        case "WARN", "WARNING" -> WARN;
+        case "ERR", "ERROR", "SEVERE" -> ERROR;
+        default -> FATAL;
+      });
+    }
+  }
+}
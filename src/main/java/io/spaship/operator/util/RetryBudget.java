@@ -0,0 +1,64 @@
+package io.spaship.operator.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Caps retries to a fraction of the regular traffic. Every request deposits {@code ratio} of a token and every retry
+ * withdraws a whole one, so with a ratio of 0.2 at most one retry is spent for every five requests no matter how many
+ * of them fail. A small reserve, refilled at {@code minRetriesPerSecond}, keeps retries possible when traffic is low.
+ */
+public class RetryBudget {
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  private final double ratio;
+  private final double minRetriesPerSecond;
+  private final double capacity;
+  private final LongSupplier nanoClock;
+
+  private double balance;
+  private double reserve;
+  private long lastRefill;
+
+  public RetryBudget(double ratio, double minRetriesPerSecond, double capacity) {
+    this(ratio, minRetriesPerSecond, capacity, System::nanoTime);
+  }
+
+  RetryBudget(double ratio, double minRetriesPerSecond, double capacity, LongSupplier nanoClock) {
+    this.ratio = ratio;
+    this.minRetriesPerSecond = minRetriesPerSecond;
+    this.capacity = capacity;
+    this.nanoClock = nanoClock;
+    this.reserve = minRetriesPerSecond;
+    this.lastRefill = nanoClock.getAsLong();
+  }
+
+  public synchronized void deposit() {
+    balance = Math.min(capacity, balance + ratio);
+  }
+
+  public synchronized boolean tryWithdraw() {
+    refillReserve();
+    if (reserve >= 1) {
+      reserve--;
+      return true;
+    }
+    if (balance >= 1) {
+      balance--;
+      return true;
+    }
+    return false;
+  }
+
+  public synchronized double balance() {
+    refillReserve();
+    return balance + reserve;
+  }
+
+  private void refillReserve() {
+    var now = nanoClock.getAsLong();
+    var elapsedSeconds = (now - lastRefill) / NANOS_PER_SECOND;
+    lastRefill = now;
+    reserve = Math.min(minRetriesPerSecond, reserve + elapsedSeconds * minRetriesPerSecond);
+  }
+}
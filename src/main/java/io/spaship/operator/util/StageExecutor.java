@@ -0,0 +1,52 @@
+package io.spaship.operator.util;
+
+import io.smallrye.mutiny.TimeoutException;
+import io.smallrye.mutiny.Uni;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking steps of a pipeline on an executor. A failed attempt is retried with an exponential, jittered
+ * back-off, a successful one is emitted right away. Each attempt is bounded by the timeout of the stage, an attempt
+ * that timed out is not retried since its work may still be running and most steps are not safe to run twice
+ * concurrently (a build would be triggered twice). An attempt rejected by a saturated executor is not retried either,
+ * the caller is told right away that it has to come back later.
+ */
+public class StageExecutor {
+
+  private static final double JITTER = 0.5;
+
+  private final Executor executor;
+
+  public StageExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  public <T> Uni<T> run(Supplier<T> work, Policy policy) {
+    var attempt = Uni.createFrom().item(work)
+      .runSubscriptionOn(executor)
+      .ifNoItem().after(policy.timeout()).fail();
+    if (policy.retries() <= 0)
+      return attempt;
+    return attempt
+      .onFailure(failure -> !(failure instanceof TimeoutException) && !(failure instanceof RejectedExecutionException))
+      .retry()
+      .withBackOff(policy.initialBackOff(), policy.maxBackOff())
+      .withJitter(JITTER)
+      .atMost(policy.retries());
+  }
+
+  /**
+   * @param retries number of attempts after the first one
+   * @param timeout bound of a single attempt
+   */
+  public record Policy(int retries, Duration initialBackOff, Duration maxBackOff, Duration timeout) {
+
+    public Policy withTimeout(Duration timeout) {
+      return new Policy(retries, initialBackOff, maxBackOff, timeout);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package io.spaship.operator.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.config.RestExceptionMapperConfig;
+import io.spaship.operator.exception.ValidationException;
+import io.spaship.operator.service.k8s.Operator;
+import io.spaship.operator.service.k8s.SideCarOperations;
+import io.spaship.operator.type.BulkSyncRequest;
+import io.spaship.operator.type.BulkSyncResponse;
+import io.spaship.operator.type.Environment;
+import io.vertx.mutiny.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EnvironmentControllerTest {
+
+  private static final Map<String, String> CONFIG = Map.of(
+    "operator.domain.name", "example.com",
+    "operator.router.domain.name", "router.example.com",
+    "operator.router.shard.type", "internal",
+    "app.instance", "spaship");
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final List<Environment> synced = new CopyOnWriteArrayList<>();
+  private final List<String> selections = new CopyOnWriteArrayList<>();
+  private Vertx vertx;
+  private EnvironmentController controller;
+
+  @BeforeEach
+  void start() {
+    CONFIG.forEach(System::setProperty);
+    vertx = Vertx.vertx();
+    var operator = new Operator(null, null, null, null, null) {
+      @Override
+      public List<Environment> environmentsBySelector(String nameSpace, Map<String, String> selector) {
+        selections.add(nameSpace + " " + selector);
+        return List.of(environment("blog", "prod", nameSpace));
+      }
+    };
+    var sidecarOps = new SideCarOperations(vertx, null, operator, null, mapper, null, null) {
+      @Override
+      public Uni<BulkSyncResponse> triggerBulkSync(JsonNode syncConfig, List<Environment> environments) {
+        synced.addAll(environments);
+        return Uni.createFrom().item(BulkSyncResponse.of(environments.stream()
+          .map(env -> new BulkSyncResponse.Result(env.getWebsiteName(), env.getName(), env.getNameSpace(), true,
+            "{}"))
+          .toList()));
+      }
+    };
+    controller = new EnvironmentController(operator, sidecarOps);
+  }
+
+  @AfterEach
+  void stop() {
+    CONFIG.keySet().forEach(System::clearProperty);
+    vertx.closeAndAwait();
+  }
+
+  @Test
+  void targetsAreSyncedInTheirOwnOrTheDefaultNamespace() throws Exception {
+    var request = request("""
+      {"nameSpace": "web-ns", "syncConfig": {"sync": []},
+       "targets": [{"websiteName": "home", "envName": "dev"},
+                   {"websiteName": "home", "envName": "qa", "nameSpace": "qa-ns"}]}""");
+
+    var response = controller.scheduleBulkSync(request).await().atMost(Duration.ofSeconds(5));
+
+    assertEquals(2, response.synced());
+    assertEquals(List.of("home-dev web-ns", "home-qa qa-ns"), synced.stream()
+      .map(env -> env.getIdentification() + " " + env.getNameSpace()).toList());
+    assertEquals(List.of(), selections);
+  }
+
+  @Test
+  void aSelectorSyncsTheEnvironmentsOfItsNamespace() throws Exception {
+    var request = request("""
+      {"nameSpace": "web-ns", "syncConfig": {"sync": []}, "selector": {"website": "blog"}}""");
+
+    var response = controller.scheduleBulkSync(request).await().atMost(Duration.ofSeconds(5));
+
+    assertEquals(1, response.total());
+    assertEquals(List.of("web-ns {website=blog}"), selections);
+    assertEquals("blog-prod", synced.get(0).getIdentification());
+  }
+
+  @Test
+  void anIncompleteRequestIsABadRequest() throws Exception {
+    var noConfig = request("""
+      {"nameSpace": "web-ns", "selector": {"website": "blog"}}""");
+    var noTargets = request("""
+      {"nameSpace": "web-ns", "syncConfig": {}}""");
+    var noNamespace = request("""
+      {"syncConfig": {}, "selector": {"website": "blog"}}""");
+    var noEnvironment = request("""
+      {"nameSpace": "web-ns", "syncConfig": {}, "targets": [{"websiteName": "home"}]}""");
+
+    for (var request : List.of(noConfig, noTargets, noNamespace, noEnvironment)) {
+      var failure = assertThrows(ValidationException.class, () -> controller.scheduleBulkSync(request));
+      assertEquals(400, new RestExceptionMapperConfig().toResponse(failure).getStatus(), failure.getMessage());
+    }
+    assertEquals(List.of(), synced);
+  }
+
+  private BulkSyncRequest request(String json) throws Exception {
+    return mapper.readValue(json, BulkSyncRequest.class);
+  }
+
+  private static Environment environment(String website, String name, String nameSpace) {
+    return new Environment(name, website, null, nameSpace, true, null, null, null, null, null, true, false, null);
+  }
+}
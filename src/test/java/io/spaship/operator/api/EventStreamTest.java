@@ -0,0 +1,64 @@
+package io.spaship.operator.api;
+
+import io.spaship.operator.business.EventJournal;
+import io.spaship.operator.config.RestExceptionMapperConfig;
+import io.spaship.operator.exception.ValidationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EventStreamTest {
+
+  private final List<String> queries = new CopyOnWriteArrayList<>();
+  private EventStream eventStream;
+
+  @BeforeEach
+  void start() {
+    System.setProperty("operator.event.journal.query.max.limit", "50");
+    var journal = new EventJournal() {
+      @Override
+      public boolean isEnabled() {
+        return true;
+      }
+
+      @Override
+      public List<String> query(String traceId, String website, Instant from, Instant to, int limit) {
+        queries.add(from + " " + to + " " + limit);
+        return List.of();
+      }
+    };
+    eventStream = new EventStream(null, journal);
+  }
+
+  @AfterEach
+  void stop() {
+    System.clearProperty("operator.event.journal.query.max.limit");
+  }
+
+  @Test
+  void aJournalQueryIsCappedAtTheMaximumLimit() {
+    assertEquals("[]", eventStream.journal("trace-1", null, "2024-01-31T10:15:30Z", null, 10));
+    assertEquals("[]", eventStream.journal("trace-1", null, null, "2024-01-31T10:15:30Z", 100_000));
+
+    assertEquals(List.of("2024-01-31T10:15:30Z null 10", "null 2024-01-31T10:15:30Z 50"), queries);
+  }
+
+  @Test
+  void aMalformedJournalQueryIsABadRequest() {
+    for (var query : List.<Runnable>of(
+      () -> eventStream.journal(null, "home", "yesterday", null, 10),
+      () -> eventStream.journal(null, "home", null, "2024-01-31", 10),
+      () -> eventStream.journal(null, "home", null, null, 0))) {
+      var failure = assertThrows(ValidationException.class, query::run);
+      assertEquals(400, new RestExceptionMapperConfig().toResponse(failure).getStatus(), failure.getMessage());
+    }
+    assertEquals(List.of(), queries);
+  }
+}
@@ -0,0 +1,169 @@
+package io.spaship.operator.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.business.GitFlowRequestProcessor;
+import io.spaship.operator.repo.BuildLogCache;
+import io.spaship.operator.service.PipelineMetrics;
+import io.spaship.operator.service.PipelineTracing;
+import io.spaship.operator.service.k8s.GitFlowResourceProvisioner;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.BodyHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the routes through a router wired the way the reactive routes are: the uni of a route answers the request
+ * and its failure goes to the failure route.
+ */
+class GitFlowResourceTest {
+
+  private static final String STATUS_THREADS = "operator.gitflow.pool.status.threads";
+  private static final String STATUS_QUEUE = "operator.gitflow.pool.status.queue";
+  private static final String LOG = "step 1\nstep 2\nstep 3\n";
+
+  private final CountDownLatch checking = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private Vertx vertx;
+  private HttpServer server;
+
+  @BeforeEach
+  void start() throws Exception {
+    // a status pool of a single thread that queues nothing
+    System.setProperty(STATUS_THREADS, "1");
+    System.setProperty(STATUS_QUEUE, "0");
+    GitFlowRequestProcessor processor;
+    try {
+      processor = new GitFlowRequestProcessor(new BlockingProvisioner(), null, null,
+        new PipelineMetrics(new SimpleMeterRegistry(), new PipelineTracing(OpenTelemetrySdk.builder()
+          .setTracerProvider(SdkTracerProvider.builder().build()).build())), null, null, null, null) {
+        @Override
+        public Uni<BuildLogCache.Entry> finishedBuildLog(String buildName, String ns) {
+          return Uni.createFrom().item(() -> {
+            try {
+              return new BuildLogCache(new SimpleMeterRegistry()).put(new BuildLogCache.Key(ns, buildName, false),
+                new ByteArrayInputStream(LOG.getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+        }
+      };
+    } finally {
+      System.clearProperty(STATUS_THREADS);
+      System.clearProperty(STATUS_QUEUE);
+    }
+    var resource = new GitFlowResource(processor, null);
+    vertx = Vertx.vertx();
+    var router = Router.router(vertx);
+    router.post("/api/gf/v1/deployment-status").handler(BodyHandler.create())
+      .handler(rc -> resource.deploymentStats(rc).subscribe().with(rc::json, rc::fail));
+    router.get("/api/gf/v1/build-log/:ns/:name").handler(resource::finishedBuildLog);
+    router.route("/api/gf/v1/*").failureHandler(rc -> {
+      if (rc.failure() instanceof RejectedExecutionException e)
+        resource.saturated(e, rc.response());
+      else
+        rc.next();
+    });
+    server = vertx.createHttpServer().requestHandler(router).listen(0).toCompletionStage().toCompletableFuture()
+      .get(5, TimeUnit.SECONDS);
+  }
+
+  @AfterEach
+  void stop() throws Exception {
+    release.countDown();
+    vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void saturatedStatusPoolIsAnsweredWithATooManyRequests() throws Exception {
+    var client = HttpClient.newHttpClient();
+    var first = client.sendAsync(statusRequest(), HttpResponse.BodyHandlers.ofString());
+    assertTrue(checking.await(5, TimeUnit.SECONDS));
+
+    var rejected = client.send(statusRequest(), HttpResponse.BodyHandlers.ofString());
+    assertEquals(429, rejected.statusCode());
+    assertEquals("1", rejected.headers().firstValue("Retry-After").orElseThrow());
+
+    release.countDown();
+    var accepted = first.get(5, TimeUnit.SECONDS);
+    assertEquals(200, accepted.statusCode());
+    assertTrue(accepted.body().contains("READY"), accepted.body());
+  }
+
+  @Test
+  void aRangeThatCannotBeServedIsIgnoredUnlessItIsPastTheEnd() throws Exception {
+    var client = HttpClient.newHttpClient();
+
+    var part = client.send(logRequest("bytes=7-13"), HttpResponse.BodyHandlers.ofString());
+    assertEquals(206, part.statusCode());
+    assertEquals("step 2\n", part.body());
+    assertEquals("bytes 7-13/21", part.headers().firstValue("Content-Range").orElseThrow());
+
+    for (var range : List.of("bytes=0-6,14-20", "bytes=13-7", "lines=1-2")) {
+      var whole = client.send(logRequest(range), HttpResponse.BodyHandlers.ofString());
+      assertEquals(200, whole.statusCode(), range);
+      assertEquals(LOG, whole.body(), range);
+    }
+
+    var past = client.send(logRequest("bytes=21-"), HttpResponse.BodyHandlers.ofString());
+    assertEquals(416, past.statusCode());
+    assertEquals("bytes */21", past.headers().firstValue("Content-Range").orElseThrow());
+  }
+
+  private HttpRequest logRequest(String range) {
+    return HttpRequest.newBuilder(URI.create("http://localhost:" + server.actualPort()
+        + "/api/gf/v1/build-log/web-ns/web-1"))
+      .header("Range", range)
+      .GET()
+      .build();
+  }
+
+  private HttpRequest statusRequest() {
+    return HttpRequest.newBuilder(URI.create("http://localhost:" + server.actualPort()
+        + "/api/gf/v1/deployment-status"))
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString("{\"objectName\":\"web\",\"ns\":\"web-ns\"}"))
+      .build();
+  }
+
+  // holds the only status thread until released
+  private class BlockingProvisioner extends GitFlowResourceProvisioner {
+
+    BlockingProvisioner() {
+      super(null, null);
+    }
+
+    @Override
+    public boolean deploymentIsReady(String deploymentName, String ns) {
+      checking.countDown();
+      try {
+        return release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+}
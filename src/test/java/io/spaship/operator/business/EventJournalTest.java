@@ -0,0 +1,70 @@
+package io.spaship.operator.business;
+
+import io.spaship.operator.type.EventStructure;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventJournalTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void eventsAreQueryableAcrossSegmentsAndRestarts() throws Exception {
+    var journal = new EventJournal(tempDir, 1024, Duration.ofDays(1));
+    journal.open();
+    for (var i = 0; i < 30; i++)
+      journal.append(event("trace-" + (i % 3), i % 2 == 0 ? "home" : "blog", "step " + i));
+    journal.flush();
+
+    try (var segments = Files.list(tempDir)) {
+      assertTrue(segments.count() > 1);
+    }
+    assertEquals(10, journal.query("trace-1", null, null, null, 100).size());
+    assertEquals(5, journal.query("trace-1", "home", null, null, 100).size());
+    assertEquals(15, journal.query(null, "blog", null, null, 100).size());
+    assertEquals(7, journal.query(null, null, null, null, 7).size());
+    assertEquals(0, journal.query(null, null, Instant.now().plusSeconds(60), null, 100).size());
+
+    var reopened = new EventJournal(tempDir, 1024, Duration.ofDays(1));
+    reopened.open();
+    reopened.append(event("trace-1", "home", "after restart"));
+    var trace = reopened.query("trace-1", null, null, null, 100);
+    assertEquals(11, trace.size());
+    assertTrue(trace.get(0).contains("step 1"));
+    assertTrue(trace.get(10).contains("after restart"));
+  }
+
+  @Test
+  void expiredSegmentsAreRemoved() throws Exception {
+    var journal = new EventJournal(tempDir, 512, Duration.ZERO);
+    journal.open();
+    for (var i = 0; i < 20; i++)
+      journal.append(event("trace-" + i, "home", "step " + i));
+    Thread.sleep(5);
+    journal.sweep();
+
+    try (var segments = Files.list(tempDir)) {
+      assertEquals(1, segments.count());
+    }
+  }
+
+  private static EventStructure event(String traceId, String website, String state) {
+    return EventStructure.builder()
+      .uuid(traceId)
+      .websiteName(website)
+      .environmentName("dev")
+      .state(state)
+      .meta(Map.of())
+      .build();
+  }
+}
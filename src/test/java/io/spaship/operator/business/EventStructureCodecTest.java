@@ -0,0 +1,53 @@
+package io.spaship.operator.business;
+
+import io.spaship.operator.type.EventStructure;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventStructureCodecTest {
+
+  private final EventStructureCodec codec = new EventStructureCodec();
+
+  @Test
+  void anEventIsDecodedFromTheWire() {
+    // as quarkus encodes it, dates as ISO-8601 text
+    var json = """
+      {"dateTime":"2024-01-31T10:15:30.123","uuid":"trace-1","websiteName":"home","environmentName":"dev",\
+      "state":"spa deployment ops performed","spaName":"main-spa","contextPath":"/","accessUrl":"https://home.dev",\
+      "meta":{"attempt":2,"supersededBy":"trace-2"}}""".getBytes(StandardCharsets.UTF_8);
+    var buffer = Buffer.buffer("header").appendInt(json.length).appendBytes(json);
+
+    var event = codec.decodeFromWire("header".length(), buffer);
+
+    assertEquals(LocalDateTime.of(2024, 1, 31, 10, 15, 30, 123_000_000), event.getDateTime());
+    assertEquals("trace-1", event.getUuid());
+    assertEquals("home", event.getWebsiteName());
+    assertEquals("dev", event.getEnvironmentName());
+    assertEquals("spa deployment ops performed", event.getState());
+    assertEquals("main-spa", event.getSpaName());
+    assertEquals("/", event.getContextPath());
+    assertEquals("https://home.dev", event.getAccessUrl());
+    assertEquals(Map.of("attempt", 2, "supersededBy", "trace-2"), event.getMeta());
+  }
+
+  @Test
+  void anEventSurvivesARoundTrip() {
+    var sent = EventStructure.builder().uuid("trace-1").websiteName("home").environmentName("qa")
+      .state("spa deployment ops superseded").meta(Map.of("supersededBy", "trace-2")).build();
+    var buffer = Buffer.buffer();
+    codec.encodeToWire(buffer, sent);
+
+    var received = codec.decodeFromWire(0, buffer);
+
+    assertNull(received.getDateTime());
+    assertNull(received.getSpaName());
+    assertEquals(sent.toJson(), received.toJson());
+  }
+}
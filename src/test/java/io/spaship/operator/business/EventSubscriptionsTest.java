@@ -0,0 +1,181 @@
+package io.spaship.operator.business;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.spaship.operator.type.EventStructure;
+import io.spaship.operator.type.SequencedEvent;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.mutiny.core.Vertx;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventSubscriptionsTest {
+
+  private final EventSubscriptions subscriptions = new EventSubscriptions(new SimpleMeterRegistry(), 4, 100, 2, SubscriberQueue.OverflowPolicy.DROP_OLDEST);
+
+  @Test
+  void eventsOnlyReachMatchingSubscribers() {
+    var byTrace = collect(new EventSubscriptions.Filter("trace-1", null, null, null));
+    var byWebsiteAndEnvironment = collect(new EventSubscriptions.Filter(null, "home", "dev", null));
+    var byState = collect(new EventSubscriptions.Filter(null, null, null, "failed"));
+    var everything = collect(new EventSubscriptions.Filter(null, null, null, null));
+
+    subscriptions.dispatch(event("trace-1", "home", "dev", "started"));
+    subscriptions.dispatch(event("trace-2", "home", "qa", "failed"));
+    subscriptions.dispatch(event("trace-3", "blog", "dev", "started"));
+
+    assertEquals(List.of("trace-1"), byTrace);
+    assertEquals(List.of("trace-1"), byWebsiteAndEnvironment);
+    assertEquals(List.of("trace-2"), byState);
+    assertEquals(List.of("trace-1", "trace-2", "trace-3"), everything);
+  }
+
+  @Test
+  void cancelledSubscribersAreDropped() {
+    var received = new CopyOnWriteArrayList<String>();
+    var cancellable = subscriptions.subscribe(new EventSubscriptions.Filter(null, "home", null, null), null)
+      .subscribe().with(event -> received.add(event.event().getUuid()));
+
+    subscriptions.dispatch(event("trace-1", "home", "dev", "started"));
+    cancellable.cancel();
+    subscriptions.dispatch(event("trace-2", "home", "dev", "started"));
+
+    assertEquals(List.of("trace-1"), received);
+  }
+
+  @Test
+  void theLagOfEverySubscriptionIsMeasuredWhileItIsConnected() {
+    var registry = new SimpleMeterRegistry();
+    var measured = new EventSubscriptions(registry, 4, 100, 4, SubscriberQueue.OverflowPolicy.DROP_OLDEST);
+    var first = new AssertSubscriber<SequencedEvent>(0);
+    var second = new AssertSubscriber<SequencedEvent>(0);
+    measured.subscribe(new EventSubscriptions.Filter(null, "home", null, null), null).subscribe(first);
+    measured.subscribe(new EventSubscriptions.Filter(null, "blog", null, null), null).subscribe(second);
+    for (var website : List.of("home", "home", "blog"))
+      measured.dispatch(event("trace-1", website, "dev", "started"));
+
+    assertEquals(2, lag(registry, "0"));
+    assertEquals(1, lag(registry, "1"));
+
+    // the number of a subscriber that went away is given to the next one
+    first.cancel();
+    assertNull(registry.find("spaship.event.subscription.lag").tag("subscription", "0").gauge());
+    var third = new AssertSubscriber<SequencedEvent>(0);
+    measured.subscribe(new EventSubscriptions.Filter(null, null, null, null), null).subscribe(third);
+    assertEquals(0, lag(registry, "0"));
+    assertEquals(1, lag(registry, "1"));
+    assertNull(registry.find("spaship.event.subscription.lag").tag("subscription", "2").gauge());
+  }
+
+  @Test
+  void resumingSubscribersReceiveWhatTheyMissed() {
+    for (var trace : List.of("trace-1", "trace-2", "trace-1", "trace-3", "trace-1"))
+      subscriptions.dispatch(event(trace, "home", "dev", "started"));
+
+    var resumed = new CopyOnWriteArrayList<Long>();
+    subscriptions.subscribe(new EventSubscriptions.Filter(null, "home", null, null), 102L)
+      .subscribe().with(event -> resumed.add(event.id()));
+    subscriptions.dispatch(event("trace-4", "home", "dev", "started"));
+
+    assertEquals(List.of(103L, 104L, 105L), resumed);
+    // the history holds four events, the first one of trace-1 was evicted
+    assertEquals(List.of(102L, 104L), subscriptions.history("trace-1").stream().map(SequencedEvent::id).toList());
+    assertEquals(List.of(), subscriptions.history("trace-2"));
+  }
+
+  @Test
+  void slowSubscribersLoseTheirOldestEventsOrAreDisconnected() {
+    var slow = new AssertSubscriber<SequencedEvent>(0);
+    subscriptions.subscribe(new EventSubscriptions.Filter(null, null, null, null), null).subscribe(slow);
+    for (var trace : List.of("trace-1", "trace-2", "trace-3"))
+      subscriptions.dispatch(event(trace, "home", "dev", "started"));
+    slow.request(10);
+    assertEquals(List.of("trace-2", "trace-3"), slow.getItems().stream().map(e -> e.event().getUuid()).toList());
+
+    var strict = new EventSubscriptions(new SimpleMeterRegistry(), 4, 100, 2, SubscriberQueue.OverflowPolicy.DISCONNECT);
+    var disconnected = new AssertSubscriber<SequencedEvent>(0);
+    strict.subscribe(new EventSubscriptions.Filter(null, null, null, null), null).subscribe(disconnected);
+    for (var trace : List.of("trace-1", "trace-2", "trace-3"))
+      strict.dispatch(event(trace, "home", "dev", "started"));
+    disconnected.assertFailedWith(BackPressureFailure.class);
+  }
+
+  @Test
+  void slowBatchSubscribersGetWhatTheyRequestUnderTheOverflowPolicy() throws InterruptedException {
+    var batching = new EventSubscriptions(new SimpleMeterRegistry(), 10, 100, 4,
+      SubscriberQueue.OverflowPolicy.DROP_OLDEST);
+    var slow = new AssertSubscriber<List<SequencedEvent>>(0);
+    batching.subscribe(new EventSubscriptions.Filter(null, null, null, null), null, 3, Duration.ofMillis(50))
+      .subscribe(slow);
+    for (var trace : List.of("trace-1", "trace-2", "trace-3", "trace-4", "trace-5", "trace-6"))
+      batching.dispatch(event(trace, "home", "dev", "started"));
+
+    // nothing requested, the windows elapse without the subscriber being failed or sent anything
+    Thread.sleep(150);
+    slow.assertNotTerminated();
+    assertEquals(List.of(), slow.getItems());
+
+    // a full batch is sent as soon as it is requested, the rest once its window has elapsed
+    slow.request(1);
+    assertEquals(List.of(List.of("trace-3", "trace-4", "trace-5")), traces(slow.getItems()));
+    slow.request(1);
+    slow.awaitItems(2, Duration.ofSeconds(5));
+    assertEquals(List.of(List.of("trace-3", "trace-4", "trace-5"), List.of("trace-6")), traces(slow.getItems()));
+    slow.assertNotTerminated();
+  }
+
+  private static List<List<String>> traces(List<List<SequencedEvent>> batches) {
+    return batches.stream().map(batch -> batch.stream().map(e -> e.event().getUuid()).toList()).toList();
+  }
+
+  private List<String> collect(EventSubscriptions.Filter filter) {
+    var received = new CopyOnWriteArrayList<String>();
+    subscriptions.subscribe(filter, null).subscribe().with(event -> received.add(event.event().getUuid()));
+    return received;
+  }
+
+  @Test
+  void eventsPublishedBeforeTheFirstSubscriberAreKept() throws InterruptedException {
+    System.setProperty("operator.event.bus.address", "spaship-events");
+    var vertx = Vertx.vertx();
+    try {
+      vertx.eventBus().registerCodec(new EventStructureCodec());
+      subscriptions.onStartup(null, vertx);
+      vertx.eventBus().publish("spaship-events", event("trace-1", "home", "dev", "started"),
+        new DeliveryOptions().setCodecName(EventStructureCodec.NAME));
+      var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (subscriptions.history("trace-1").isEmpty() && System.nanoTime() < deadline)
+        Thread.sleep(10);
+      assertEquals(List.of("trace-1"), subscriptions.history("trace-1").stream()
+        .map(e -> e.event().getUuid()).toList());
+    } finally {
+      System.clearProperty("operator.event.bus.address");
+      vertx.closeAndAwait();
+    }
+  }
+
+  private static double lag(SimpleMeterRegistry registry, String subscription) {
+    return registry.find("spaship.event.subscription.lag").tag("subscription", subscription).gauge().value();
+  }
+
+  private static EventStructure event(String traceId, String website, String environment, String state) {
+    return EventStructure.builder()
+      .dateTime(LocalDateTime.now())
+      .uuid(traceId)
+      .websiteName(website)
+      .environmentName(environment)
+      .state(state)
+      .meta(Map.of())
+      .build();
+  }
+}
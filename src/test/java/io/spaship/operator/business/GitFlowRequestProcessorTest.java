@@ -0,0 +1,208 @@
+package io.spaship.operator.business;
+
+import io.fabric8.kubernetes.client.dsl.Loggable;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.spaship.operator.service.PipelineMetrics;
+import io.spaship.operator.service.PipelineTracing;
+import io.spaship.operator.service.k8s.BuildSupersession;
+import io.spaship.operator.service.k8s.GitFlowResourceProvisioner;
+import io.spaship.operator.type.EventStructure;
+import io.spaship.operator.type.FetchK8sInfoRequest;
+import io.spaship.operator.type.GitFlowMeta;
+import io.spaship.operator.type.SsrResourceDetails;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GitFlowRequestProcessorTest {
+
+  private static final Map<String, String> CONFIG = Map.of(
+    "mpp.remote.build", "false",
+    "mpp.is.repository.base.url", "image-registry.example.com",
+    "mpp.remote.build.repository.url", "quay.example.com/spaship/builds",
+    "mpp.remote.build.repository.access.secret", "push-secret",
+    "operator.event.bus.address", "spaship-events",
+    "operator.gitflow.pool.log.threads", "1",
+    "operator.gitflow.pool.log.queue", "0",
+    "operator.log.chunk.size", "7");
+
+  private final List<String> tags = new CopyOnWriteArrayList<>();
+  private final List<Build> builds = new CopyOnWriteArrayList<>();
+  private final List<String> cancelled = new CopyOnWriteArrayList<>();
+  private final List<SsrResourceDetails> deployments = new CopyOnWriteArrayList<>();
+  private final List<EventStructure> events = new CopyOnWriteArrayList<>();
+  private final CountDownLatch deploymentStarted = new CountDownLatch(1);
+  private Vertx vertx;
+  private GitFlowRequestProcessor processor;
+
+  @BeforeEach
+  void start() {
+    CONFIG.forEach(System::setProperty);
+    vertx = Vertx.vertx();
+    var provisioner = new GitFlowResourceProvisioner(null, null) {
+      @Override
+      public void tagBuildImage(Build build, String ns, String imageStreamTag) {
+        tags.add(ns + "/" + imageStreamTag + " <- " + build.getMetadata().getName());
+      }
+
+      @Override
+      public List<Build> buildsOf(String buildConfigName, String ns, boolean isRemote) {
+        return builds;
+      }
+
+      @Override
+      public Loggable getLog(String podName, String ns, int upto, boolean isHttpPod) {
+        return (Loggable) Proxy.newProxyInstance(Loggable.class.getClassLoader(), new Class<?>[]{Loggable.class},
+          (proxy, method, args) -> {
+            if (!"getLogInputStream".equals(method.getName()))
+              throw new UnsupportedOperationException(method.getName());
+            return new ByteArrayInputStream("line-1\nline-2\nline-3\n".getBytes(StandardCharsets.UTF_8));
+          });
+      }
+
+      @Override
+      public boolean cancelBuild(String buildName, String ns, boolean isRemote, String supersededBy) {
+        return cancelled.add(ns + "/" + buildName + " <- " + supersededBy);
+      }
+    };
+    var cdProcessor = new SsrRequestProcessor(null) {
+      @Override
+      public Uni<JsonObject> processSPAProvisionRequest(SsrResourceDetails requestPayload) {
+        deployments.add(requestPayload);
+        return Uni.createFrom().item(new JsonObject().put("website", requestPayload.website())
+          .put("environment", requestPayload.environment()).put("application", requestPayload.app())
+          .put("accessUrl", "https://web.example.com/home"));
+      }
+    };
+    var eventManager = new EventManager(vertx) {
+      @Override
+      public void queue(EventStructure event) {
+        events.add(event);
+        if ("DEPLOYMENT_STARTED".equals(event.getState()))
+          deploymentStarted.countDown();
+      }
+    };
+    processor = new GitFlowRequestProcessor(provisioner, cdProcessor, eventManager,
+      new PipelineMetrics(new SimpleMeterRegistry(), new PipelineTracing(OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder().build()).build())), null, null, null,
+      new BuildSupersession(provisioner, new SimpleMeterRegistry()));
+  }
+
+  @AfterEach
+  void stop() {
+    CONFIG.keySet().forEach(System::clearProperty);
+    vertx.closeAndAwait();
+  }
+
+  @Test
+  void aReusedBuildIsTaggedAndDeployedWithoutBuilding() throws InterruptedException {
+    var cached = new BuildBuilder()
+      .withNewMetadata().withName("web-home-dev-2").withNamespace("web-ns").endMetadata()
+      .withNewStatus().withPhase("Complete").endStatus()
+      .build();
+
+    var reused = processor.reuseBuild(meta(), cached);
+    assertEquals("web-home-dev-2", reused.buildName());
+    assertEquals(List.of("web-ns/web-home:dev <- web-home-dev-2"), tags);
+
+    var response = processor.deploymentHandler(reused, built -> Uni.createFrom().item(cached))
+      .await().atMost(Duration.ofSeconds(5));
+    assertEquals("web-home-dev-2", response.buildName());
+    assertTrue(deploymentStarted.await(5, TimeUnit.SECONDS));
+    assertEquals("image-registry.example.com/web-ns/web-home:dev", deployments.get(0).imageUrl());
+    assertEquals(List.of("BUILD_REUSED", "DEPLOYMENT_STARTED"), events.stream().map(EventStructure::getState).toList());
+  }
+
+  @Test
+  void aCachedBuildThatWasLaterMarkedSupersededIsStillDeployed() throws InterruptedException {
+    // it completed right before a newer build tried to cancel it
+    var cached = new BuildBuilder()
+      .withNewMetadata().withName("web-home-dev-2").withNamespace("web-ns")
+      .addToAnnotations(GitFlowResourceProvisioner.SUPERSEDED_BY_ANNOTATION, "web-home-dev-3").endMetadata()
+      .withNewStatus().withPhase("Complete").endStatus()
+      .build();
+    processor.deploymentHandler(processor.reuseBuild(meta(), cached), built -> Uni.createFrom().item(cached))
+      .await().atMost(Duration.ofSeconds(5));
+    assertTrue(deploymentStarted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void aReusedBuildSupersedesTheBuildsOfOlderRequests() {
+    var cached = new BuildBuilder()
+      .withNewMetadata().withName("web-home-dev-2").withNamespace("web-ns").endMetadata()
+      .withNewStatus().withPhase("Complete").endStatus()
+      .build();
+    builds.add(cached);
+    builds.add(new BuildBuilder()
+      .withNewMetadata().withName("web-home-dev-3").withNamespace("web-ns").endMetadata()
+      .withNewStatus().withPhase("Running").endStatus()
+      .build());
+
+    processor.reuseBuild(meta(), cached);
+
+    // the build of the older push would deploy its image over the reused one once it ends
+    assertEquals(List.of("web-ns/web-home-dev-3 <- web-home-dev-2"), cancelled);
+    assertEquals(List.of("BUILD_REUSED", "BUILD_SUPERSEDED"), events.stream().map(EventStructure::getState).toList());
+    assertEquals("web-home-dev-3", events.get(1).getMeta().get("Name"));
+  }
+
+  @Test
+  void aStreamedLogIsReadToTheEndWhileTheLogPoolIsFull() throws InterruptedException {
+    var request = new FetchK8sInfoRequest("web-home-1", "web-ns", 0, false);
+    var stream = processor.fetchLogByType(request, GitFlowRequestProcessor.LogType.POD, false)
+      .subscribe().withSubscriber(AssertSubscriber.<Buffer>create(1));
+    stream.awaitItems(1, Duration.ofSeconds(5));
+
+    // every log thread is taken, a new stream is rejected but the open one goes on
+    var busy = new CountDownLatch(1);
+    processor.logExecutor().execute(() -> {
+      try {
+        busy.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    try {
+      processor.fetchLogByType(request, GitFlowRequestProcessor.LogType.POD, false)
+        .subscribe().withSubscriber(AssertSubscriber.<Buffer>create(1))
+        .awaitFailure(Duration.ofSeconds(5))
+        .assertFailedWith(RejectedExecutionException.class);
+
+      stream.request(Long.MAX_VALUE).awaitCompletion(Duration.ofSeconds(5));
+      assertEquals(List.of("line-1\n", "line-2\n", "line-3\n"),
+        stream.getItems().stream().map(Buffer::toString).toList());
+    } finally {
+      busy.countDown();
+    }
+  }
+
+  private static GitFlowMeta meta() {
+    var details = new SsrResourceDetails("web-ns", null, "home", "/", null, "web", "dev", "8080", Map.of(), Map.of(),
+      null, null, null, null, null, null);
+    return new GitFlowMeta(details, "main", "https://example.com/web.git", null, List.of(), "web-ns", false, null,
+      null);
+  }
+}
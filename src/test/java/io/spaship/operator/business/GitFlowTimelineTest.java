@@ -0,0 +1,133 @@
+package io.spaship.operator.business;
+
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.smallrye.mutiny.Multi;
+import io.spaship.operator.business.GitFlowRequestProcessor.LogType;
+import io.spaship.operator.service.PipelineMetrics;
+import io.spaship.operator.service.PipelineTracing;
+import io.spaship.operator.service.k8s.BuildWatcher;
+import io.spaship.operator.service.k8s.GitFlowResourceProvisioner;
+import io.spaship.operator.type.FetchK8sInfoRequest;
+import io.spaship.operator.type.TimelineEvent;
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GitFlowTimelineTest {
+
+  private static final Instant BUILD_END = Instant.parse("2026-10-19T10:00:00Z");
+
+  @Test
+  void rolloutIsCompleteOnceTheNewPodsOfALaterRolloutAreAvailable() {
+    assertEquals("complete", GitFlowTimeline.rolloutState(
+      deployment(2, 2, "True", "NewReplicaSetAvailable", "2026-10-19T10:00:30Z"), BUILD_END));
+    // the deployment was rolled out before the build ended, its new rollout has not started yet
+    assertEquals("progressing", GitFlowTimeline.rolloutState(
+      deployment(2, 2, "True", "NewReplicaSetAvailable", "2026-10-19T09:00:00Z"), BUILD_END));
+    assertEquals("progressing", GitFlowTimeline.rolloutState(
+      deployment(1, 2, "True", "ReplicaSetUpdated", "2026-10-19T10:00:30Z"), BUILD_END));
+  }
+
+  @Test
+  void rolloutFailsOnceItsDeadlineIsExceeded() {
+    assertEquals("failed", GitFlowTimeline.rolloutState(
+      deployment(1, 2, "False", "ProgressDeadlineExceeded", "2026-10-19T10:10:00Z"), BUILD_END));
+  }
+
+  @Test
+  void aCompleteBuildIsFollowedByItsRolloutAndABoundedFollowOfThePodLogs() {
+    var timeline = new GitFlowTimeline(new LogProcessor(), new Provisioner(), new Builds(), Duration.ofMinutes(1), 10,
+      Duration.ofMillis(300));
+    var events = timeline.follow("web-ns", "web-1", "web").collect().asList().await().atMost(Duration.ofSeconds(10));
+    assertEquals(List.of("phase", "build-log", "phase", "rollout", "pod-log", "end"),
+      events.stream().map(TimelineEvent::kind).toList());
+    assertEquals("complete", events.get(3).detail().get("state"));
+    // the pod log never ends, the stream ends once it has been followed for a while
+    assertEquals("serving", events.get(4).detail().get("text"));
+  }
+
+  private static Build build(String phase) {
+    return new BuildBuilder()
+      .withNewMetadata().withName("web-1").withNamespace("web-ns").endMetadata()
+      .withNewStatus().withPhase(phase).withCompletionTimestamp("Complete".equals(phase) ? BUILD_END.toString() : null)
+      .endStatus()
+      .build();
+  }
+
+  private static Deployment deployment(int available, int replicas, String status, String reason,
+                                       String lastUpdate) {
+    return new DeploymentBuilder()
+      .withNewMetadata().withName("web").withGeneration(2L).endMetadata()
+      .withNewSpec().withReplicas(replicas).endSpec()
+      .withNewStatus()
+      .withObservedGeneration(2L)
+      .withUpdatedReplicas(replicas)
+      .withAvailableReplicas(available)
+      .addNewCondition().withType("Progressing").withStatus(status).withReason(reason)
+      .withLastUpdateTime(lastUpdate).endCondition()
+      .endStatus()
+      .build();
+  }
+
+  private static class LogProcessor extends GitFlowRequestProcessor {
+
+    LogProcessor() {
+      super(null, null, null, new PipelineMetrics(new SimpleMeterRegistry(),
+        new PipelineTracing(OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder().build()).build())), null, null, null, null);
+    }
+
+    @Override
+    public Multi<Buffer> fetchLogByType(FetchK8sInfoRequest request, LogType logType, boolean follow) {
+      if (logType == LogType.BUILD)
+        return Multi.createFrom().item(Buffer.buffer("building"));
+      return Multi.createBy().concatenating().streams(Multi.createFrom().item(Buffer.buffer("serving")),
+        Multi.createFrom().nothing());
+    }
+  }
+
+  private static class Provisioner extends GitFlowResourceProvisioner {
+
+    Provisioner() {
+      super(null, null);
+    }
+
+    @Override
+    public Watch watchDeployment(String deploymentName, String ns, Watcher<Deployment> watcher) {
+      watcher.eventReceived(Watcher.Action.MODIFIED,
+        deployment(2, 2, "True", "NewReplicaSetAvailable", "2026-10-19T10:00:30Z"));
+      return () -> {
+      };
+    }
+
+    @Override
+    public List<String> getPodNames(String deploymentName, String ns) {
+      return List.of("web-1-abcde");
+    }
+  }
+
+  private static class Builds extends BuildWatcher {
+
+    Builds() {
+      super(null, null);
+    }
+
+    @Override
+    public Multi<Build> changes(String buildName, String ns, boolean isRemoteBuild) {
+      return Multi.createFrom().items(build("Running"), build("Running"), build("Complete"));
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package io.spaship.operator.config;
+
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class K8sApiMetricsInterceptorTest {
+
+  @Test
+  void resourceIsTakenFromTheApiPath() {
+    assertEquals("pods", K8sApiMetricsInterceptor.resource(URI.create("https://k8s/api/v1/namespaces/spaship/pods")));
+    assertEquals("deployments",
+      K8sApiMetricsInterceptor.resource(URI.create("https://k8s/apis/apps/v1/namespaces/spaship/deployments/home")));
+    assertEquals("builds",
+      K8sApiMetricsInterceptor.resource(URI.create("https://k8s/apis/build.openshift.io/v1/namespaces/ns/builds/b-1/log")));
+    assertEquals("namespaces", K8sApiMetricsInterceptor.resource(URI.create("https://k8s/api/v1/namespaces/spaship")));
+    assertEquals("unknown", K8sApiMetricsInterceptor.resource(URI.create("https://k8s/version")));
+  }
+
+  @Test
+  void aGetIsTellingAReadFromAListAndAWatch() {
+    assertEquals("get", verb("GET", "https://k8s/api/v1/namespaces/spaship/pods/home-dev-1"));
+    assertEquals("get", verb("GET", "https://k8s/apis/build.openshift.io/v1/namespaces/ns/builds/b-1/log"));
+    assertEquals("list", verb("GET", "https://k8s/api/v1/namespaces/spaship/pods?labelSelector=app%3Dhome"));
+    assertEquals("list", verb("GET", "https://k8s/api/v1/namespaces"));
+    assertEquals("watch", verb("GET", "https://k8s/apis/build.openshift.io/v1/namespaces/ns/builds?watch=true"));
+    assertEquals("patch", verb("PATCH", "https://k8s/apis/apps/v1/namespaces/spaship/deployments/home"));
+    assertEquals("delete", verb("DELETE", "https://k8s/api/v1/namespaces/spaship/pods/home-dev-1"));
+  }
+
+  @Test
+  void callsAreCountedByVerbAndResource() {
+    var registry = new SimpleMeterRegistry();
+    var interceptor = new K8sApiMetricsInterceptor(registry, "openshift");
+
+    interceptor.before(null, request("GET", "https://k8s/api/v1/namespaces/spaship/pods"));
+    interceptor.before(null, request("GET", "https://k8s/api/v1/namespaces/spaship/pods"));
+    interceptor.before(null, request("GET", "https://k8s/api/v1/namespaces/spaship/pods?watch=true"));
+
+    assertEquals(2, registry.get("spaship.k8s.api.calls").tags("client", "openshift", "verb", "list",
+      "resource", "pods").counter().count());
+    assertEquals(1, registry.get("spaship.k8s.api.calls").tags("client", "openshift", "verb", "watch",
+      "resource", "pods").counter().count());
+  }
+
+  private static String verb(String method, String uri) {
+    return K8sApiMetricsInterceptor.verb(request(method, uri));
+  }
+
+  // only the method and the uri of a request are read
+  private static HttpRequest request(String method, String uri) {
+    return (HttpRequest) Proxy.newProxyInstance(HttpRequest.class.getClassLoader(), new Class<?>[]{HttpRequest.class},
+      (proxy, invoked, args) -> switch (invoked.getName()) {
+        case "method" -> method;
+        case "uri" -> URI.create(uri);
+        default -> throw new UnsupportedOperationException(invoked.getName());
+      });
+  }
+}
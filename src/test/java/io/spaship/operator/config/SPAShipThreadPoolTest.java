@@ -0,0 +1,63 @@
+package io.spaship.operator.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SPAShipThreadPoolTest {
+
+  @Test
+  void fullPoolRejects() throws InterruptedException {
+    var pool = SPAShipThreadPool.boundedPool("test", 1, 1);
+    var release = new CountDownLatch(1);
+    var thread = new AtomicReference<Thread>();
+    try {
+      pool.execute(() -> {
+        thread.set(Thread.currentThread());
+        awaitQuietly(release);
+      });
+      pool.execute(() -> {
+      });
+      assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> {
+      }));
+    } finally {
+      release.countDown();
+      pool.shutdown();
+    }
+    assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals("spaship-test-1", thread.get().getName());
+    assertTrue(thread.get().isDaemon());
+  }
+
+  @Test
+  void queueingPoolQueuesWhatItCannotRunYet() throws InterruptedException {
+    var pool = SPAShipThreadPool.queueingPool("test", 1);
+    var release = new CountDownLatch(1);
+    var ran = new CountDownLatch(100);
+    try {
+      pool.execute(() -> awaitQuietly(release));
+      for (int i = 0; i < 100; i++)
+        pool.execute(ran::countDown);
+      assertEquals(100, pool.getQueue().size());
+    } finally {
+      release.countDown();
+    }
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    pool.shutdown();
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
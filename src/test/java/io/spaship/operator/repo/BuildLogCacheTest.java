@@ -0,0 +1,68 @@
+package io.spaship.operator.repo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.spaship.operator.type.ByteRange;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildLogCacheTest {
+
+  @Test
+  void leastRecentlyReadLogIsEvicted() throws IOException {
+    var first = new BuildLogCache.Key("ns", "web-1", false);
+    var second = new BuildLogCache.Key("ns", "web-2", false);
+    var third = new BuildLogCache.Key("ns", "web-3", false);
+    // random bytes do not compress, so each log takes a bit more than 1 KiB
+    var cache = new BuildLogCache(new SimpleMeterRegistry(), 2500);
+    cache.put(first, randomLog());
+    cache.put(second, randomLog());
+    cache.get(first);
+    cache.put(third, randomLog());
+
+    assertTrue(cache.get(first).isPresent());
+    assertTrue(cache.get(second).isEmpty());
+    assertTrue(cache.get(third).isPresent());
+    assertTrue(cache.usedBytes() <= 2500);
+  }
+
+  @Test
+  void rangeIsReadFromTheCompressedLog() throws IOException {
+    var log = "step 1\nstep 2\nstep 3\n".getBytes(StandardCharsets.UTF_8);
+    var entry = new BuildLogCache(new SimpleMeterRegistry(), 1024)
+      .put(new BuildLogCache.Key("ns", "web-1", false), new ByteArrayInputStream(log));
+    assertEquals(log.length, entry.size());
+
+    var range = ByteRange.parse("bytes=7-", entry.size()).orElseThrow();
+    assertEquals("step 2\nstep 3\n",
+      new String(entry.read(range.from(), range.to()), StandardCharsets.UTF_8));
+    assertEquals(Optional.of(new ByteRange(14, 20)), ByteRange.parse("bytes=-7", entry.size()));
+    assertFalse(ByteRange.parse("bytes=21-", entry.size()).orElseThrow().satisfiable());
+    assertFalse(ByteRange.parse("bytes=-0", entry.size()).orElseThrow().satisfiable());
+    assertEquals(Optional.of(new ByteRange(0, 20)), ByteRange.parse("bytes=0-99", entry.size()));
+    assertArrayEquals(log, entry.open().readAllBytes());
+  }
+
+  @Test
+  void malformedOrSeveralRangesAreIgnored() {
+    for (var header : List.of("bytes=0-1,4-5", "bytes=5-2", "bytes=a-", "bytes=-", "bytes=+1-2", "items=0-1",
+      "bytes=99999999999999999999-"))
+      assertEquals(Optional.empty(), ByteRange.parse(header, 21), header);
+  }
+
+  private static ByteArrayInputStream randomLog() {
+    var bytes = new byte[1024];
+    new Random(bytes.length).nextBytes(bytes);
+    return new ByteArrayInputStream(bytes);
+  }
+}
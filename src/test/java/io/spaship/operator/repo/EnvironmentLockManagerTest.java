@@ -0,0 +1,121 @@
+package io.spaship.operator.repo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.exception.LockReapedException;
+import io.spaship.operator.exception.LockTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EnvironmentLockManagerTest {
+
+  private final EnvironmentLockManager lockManager =
+    new EnvironmentLockManager(new SimpleMeterRegistry(), Duration.ofMillis(200));
+
+  @Test
+  void waitersAreServedInArrivalOrder() {
+    var gate = new CompletableFuture<String>();
+    List<String> started = new ArrayList<>();
+
+    lockManager.withLock("home-dev", UUID.randomUUID(), () -> action(started, "first", gate))
+      .subscribe().with(item -> {
+      });
+    for (var name : List.of("second", "third"))
+      lockManager.withLock("home-dev", UUID.randomUUID(), () -> action(started, name, null))
+        .subscribe().with(item -> {
+        });
+    lockManager.withLock("home-qa", UUID.randomUUID(), () -> action(started, "other environment", null))
+      .subscribe().with(item -> {
+      });
+
+    assertEquals(List.of("first", "other environment"), started);
+
+    gate.complete("first");
+
+    assertEquals(List.of("first", "other environment", "second", "third"), started);
+    assertFalse(lockManager.forceRelease("home-dev"));
+  }
+
+  private static Uni<String> action(List<String> started, String name, CompletableFuture<String> gate) {
+    started.add(name);
+    return gate == null ? Uni.createFrom().item(name) : Uni.createFrom().completionStage(gate);
+  }
+
+  @Test
+  void acquisitionTimesOutAndLeavesTheQueue() {
+    var hold = lockManager.acquire("home-dev", UUID.randomUUID()).await().indefinitely();
+
+    assertThrows(LockTimeoutException.class,
+      () -> lockManager.acquire("home-dev", UUID.randomUUID()).await().atMost(Duration.ofSeconds(5)));
+
+    hold.release();
+    var next = lockManager.acquire("home-dev", UUID.randomUUID()).await().atMost(Duration.ofSeconds(5));
+    next.release();
+  }
+
+  @Test
+  void forceReleaseHandsTheLockOverAndIgnoresTheStaleRelease() {
+    var stale = lockManager.acquire("home-dev", UUID.randomUUID()).await().indefinitely();
+    var waiting = lockManager.acquire("home-dev", UUID.randomUUID()).subscribeAsCompletionStage();
+
+    assertTrue(lockManager.forceRelease("home-dev"));
+    var current = waiting.join();
+
+    stale.release();
+    assertTrue(lockManager.forceRelease("home-dev"));
+    assertFalse(lockManager.forceRelease(current.key()));
+  }
+
+  @Test
+  void staleHoldsAreReapedAndListed() {
+    var reaper = new EnvironmentLockManager(new SimpleMeterRegistry(), Duration.ofMillis(200), Duration.ZERO, null);
+    var owner = UUID.randomUUID();
+    var stale = reaper.acquire("home-dev", owner).await().indefinitely();
+    var waiting = reaper.acquire("home-dev", UUID.randomUUID()).subscribeAsCompletionStage();
+
+    var locks = reaper.snapshot();
+    assertEquals(1, locks.size());
+    assertEquals(owner, locks.get(0).owner());
+    assertEquals(1, locks.get(0).waiters().size());
+
+    assertEquals(1, reaper.reap());
+    var current = waiting.join();
+    stale.release();
+    assertEquals(current.owner(), reaper.snapshot().get(0).owner());
+    assertTrue(reaper.snapshot().get(0).waiters().isEmpty());
+  }
+
+  @Test
+  void theActionOfAReapedHoldFailsBeforeTheNextWaiterIsGranted() {
+    var reaper = new EnvironmentLockManager(new SimpleMeterRegistry(), Duration.ofMillis(200), Duration.ZERO, null);
+    var cancelled = new AtomicBoolean();
+    var stale = reaper.withLock("home-dev", UUID.randomUUID(),
+        () -> Uni.createFrom().nothing().onCancellation().invoke(() -> cancelled.set(true)))
+      .subscribeAsCompletionStage();
+    var waiting = reaper.withLock("home-dev", UUID.randomUUID(), () -> {
+      // the reaped action is stopped by the time the next one runs
+      assertTrue(cancelled.get());
+      return Uni.createFrom().item("deployed");
+    }).subscribeAsCompletionStage();
+
+    assertEquals(1, reaper.reap());
+
+    var failure = assertThrows(CompletionException.class, stale::join);
+    assertInstanceOf(LockReapedException.class, failure.getCause());
+    assertEquals("deployed", waiting.join());
+    assertTrue(reaper.snapshot().isEmpty());
+  }
+}
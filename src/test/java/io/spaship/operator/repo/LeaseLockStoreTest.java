@@ -0,0 +1,228 @@
+package io.spaship.operator.repo;
+
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.exception.LeaseLostException;
+import io.vertx.mutiny.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class LeaseLockStoreTest {
+
+  private static final String KEY = "home-dev";
+  private static final String LEASE = "spaship-lock-default-home-dev";
+  private static final Duration SHORT = Duration.ofMillis(200);
+  private static final Map<String, String> CONFIG = Map.of(
+    "operator.lock.lease.enabled", "true",
+    "operator.lock.lease.retry.interval.ms", "10");
+
+  private final Leases leases = new Leases();
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private LeaseLockStore operatorA;
+  private LeaseLockStore operatorB;
+
+  @BeforeEach
+  void start() {
+    CONFIG.forEach(System::setProperty);
+    // the api calls run on the calling thread
+    operatorA = new LeaseLockStore(leases, Runnable::run, null, registry, "operator-a");
+    operatorB = new LeaseLockStore(leases, Runnable::run, null, new SimpleMeterRegistry(), "operator-b");
+  }
+
+  @AfterEach
+  void stop() {
+    CONFIG.keySet().forEach(System::clearProperty);
+  }
+
+  @Test
+  void aHeldLeaseIsOnlyTakenOnceReleased() {
+    operatorA.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5));
+    assertEquals("operator-a", leases.get(LEASE).getSpec().getHolderIdentity());
+    assertEquals(0, leases.get(LEASE).getSpec().getLeaseTransitions());
+
+    assertThrows(LeaseLockStore.LeaseHeldException.class,
+      () -> operatorB.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5)));
+
+    operatorA.release(KEY).await().atMost(Duration.ofSeconds(5));
+    assertNull(leases.get(LEASE).getSpec().getHolderIdentity());
+    operatorB.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5));
+    assertEquals("operator-b", leases.get(LEASE).getSpec().getHolderIdentity());
+    assertEquals(1, leases.get(LEASE).getSpec().getLeaseTransitions());
+  }
+
+  @Test
+  void anExpiredLeaseIsTakenOver() {
+    var renewed = ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(2);
+    leases.create(new LeaseBuilder()
+      .withNewMetadata().withName(LEASE).endMetadata()
+      .withNewSpec().withHolderIdentity("operator-b").withLeaseDurationSeconds(60).withAcquireTime(renewed)
+      .withRenewTime(renewed).withLeaseTransitions(3).endSpec()
+      .build());
+
+    operatorA.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5));
+    assertEquals("operator-a", leases.get(LEASE).getSpec().getHolderIdentity());
+    assertEquals(4, leases.get(LEASE).getSpec().getLeaseTransitions());
+  }
+
+  @Test
+  void aConcurrentAcquisitionLosesOnConflict() {
+    // operator b creates the lease between the read and the write of operator a
+    leases.beforeNextWrite = () -> operatorB.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5));
+
+    assertThrows(LeaseLockStore.LeaseHeldException.class,
+      () -> operatorA.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5)));
+    assertEquals("operator-b", leases.get(LEASE).getSpec().getHolderIdentity());
+    assertEquals(1, leases.conflicts);
+  }
+
+  @Test
+  void renewalRefreshesTheHeldLeasesAndReportsTheLostOnes() {
+    operatorA.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5));
+    operatorA.acquire("home-qa", SHORT).await().atMost(Duration.ofSeconds(5));
+    var renewedAt = leases.get(LEASE).getSpec().getRenewTime();
+    takeOver("spaship-lock-default-home-qa", "operator-b");
+
+    List<String> lost = new CopyOnWriteArrayList<>();
+    var reads = leases.reads;
+    operatorA.renew(List.of(KEY, "home-qa"), lost::add);
+
+    // one list of the leases of operator a and one update of the one it still holds
+    assertEquals(1, leases.reads - reads);
+    assertTrue(leases.get(LEASE).getSpec().getRenewTime().isAfter(renewedAt));
+    assertEquals(List.of("home-qa"), lost);
+    assertEquals(1, registry.get("spaship.environment.lock.lease.lost").counter().count());
+  }
+
+  @Test
+  void theActionOfAHolderWhoseLeaseIsLostIsFailed() throws Exception {
+    var vertx = Vertx.vertx();
+    try {
+      var lockManager = new EnvironmentLockManager(new SimpleMeterRegistry(), Duration.ofSeconds(5), Duration.ofDays(1),
+        new LeaseLockStore(leases, Runnable::run, vertx, registry, "operator-a"));
+      var cancelled = new AtomicBoolean();
+      var action = lockManager.withLock(KEY, UUID.randomUUID(),
+          () -> Uni.createFrom().nothing().onCancellation().invoke(() -> cancelled.set(true)))
+        .subscribeAsCompletionStage();
+      assertEquals("operator-a", leases.get(LEASE).getSpec().getHolderIdentity());
+
+      takeOver(LEASE, "operator-b");
+      operatorA.renew(List.of(KEY), lockManager::leaseLost);
+
+      var failure = assertThrows(ExecutionException.class, () -> action.get(5, TimeUnit.SECONDS));
+      assertInstanceOf(LeaseLostException.class, failure.getCause());
+      assertTrue(cancelled.get());
+      // the lock is handed over, the lease of the other operator is left alone
+      assertFalse(lockManager.forceRelease(KEY));
+      assertEquals("operator-b", leases.get(LEASE).getSpec().getHolderIdentity());
+    } finally {
+      vertx.closeAndAwait();
+    }
+  }
+
+  @Test
+  void aReleasedLeaseIsNoLongerListedAsHeld() {
+    operatorA.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5));
+    operatorA.release(KEY).await().atMost(Duration.ofSeconds(5));
+    operatorB.acquire(KEY, SHORT).await().atMost(Duration.ofSeconds(5));
+
+    List<String> lost = new CopyOnWriteArrayList<>();
+    operatorA.renew(List.of(KEY), lost::add);
+    operatorB.renew(List.of(KEY), key -> fail("operator b holds " + key));
+
+    assertEquals(List.of(KEY), lost);
+    assertEquals("operator-b", leases.get(LEASE).getMetadata().getLabels().get("spaship.io/lock-holder"));
+  }
+
+  // another operator takes the lease over, leaving the labels as they were
+  private void takeOver(String name, String identity) {
+    var lease = leases.get(name);
+    lease.getSpec().setHolderIdentity(identity);
+    leases.replace(lease);
+  }
+
+  // the leases of an api server, a write conflicts when the lease has changed since it was read
+  private static class Leases implements LeaseLockStore.Leases {
+
+    private final Map<String, Lease> stored = new HashMap<>();
+    private Runnable beforeNextWrite;
+    private int version;
+    private int conflicts;
+    private int reads;
+
+    @Override
+    public synchronized Lease get(String name) {
+      reads++;
+      var lease = stored.get(name);
+      return lease == null ? null : new LeaseBuilder(lease).build();
+    }
+
+    @Override
+    public synchronized List<Lease> list(Map<String, String> labels) {
+      reads++;
+      return stored.values().stream()
+        .filter(lease -> lease.getMetadata().getLabels().entrySet().containsAll(labels.entrySet()))
+        .map(lease -> new LeaseBuilder(lease).build())
+        .toList();
+    }
+
+    @Override
+    public synchronized void create(Lease lease) {
+      beforeWrite();
+      if (stored.containsKey(lease.getMetadata().getName()))
+        throw conflict();
+      store(lease);
+    }
+
+    @Override
+    public synchronized void replace(Lease lease) {
+      beforeWrite();
+      var current = stored.get(lease.getMetadata().getName());
+      if (current == null
+        || !current.getMetadata().getResourceVersion().equals(lease.getMetadata().getResourceVersion()))
+        throw conflict();
+      store(lease);
+    }
+
+    private void beforeWrite() {
+      var hook = beforeNextWrite;
+      beforeNextWrite = null;
+      if (hook != null)
+        hook.run();
+    }
+
+    private void store(Lease lease) {
+      var stored = new LeaseBuilder(lease).editMetadata().withResourceVersion(String.valueOf(++version)).endMetadata()
+        .build();
+      this.stored.put(lease.getMetadata().getName(), stored);
+    }
+
+    private KubernetesClientException conflict() {
+      conflicts++;
+      return new KubernetesClientException("the object has been modified", 409, null);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package io.spaship.operator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.service.PipelineMetrics.Stage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineMetricsTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final PipelineMetrics metrics = new PipelineMetrics(registry, new PipelineTracing(OpenTelemetrySdk.builder()
+    .setTracerProvider(SdkTracerProvider.builder().build()).build()));
+
+  @Test
+  void stagesAreTimedWithTheirOutcome() {
+    assertEquals("rendered", metrics.time(Stage.TEMPLATE_RENDER, () -> "rendered"));
+    assertThrows(IllegalStateException.class, () -> metrics.run(Stage.TEMPLATE_RENDER, () -> {
+      throw new IllegalStateException("broken template");
+    }));
+    metrics.time(Stage.SIDECAR_TRANSFER, Uni.createFrom().item("sent")).await().atMost(Duration.ofSeconds(5));
+    var failed = metrics.time(Stage.SIDECAR_TRANSFER, Uni.createFrom().failure(new IllegalStateException("refused")));
+    assertThrows(IllegalStateException.class, () -> failed.await().atMost(Duration.ofSeconds(5)));
+    metrics.time(Stage.SIDECAR_TRANSFER, Uni.createFrom().item("sent")).await().atMost(Duration.ofSeconds(5));
+
+    assertEquals(1, count("template-render", "success"));
+    assertEquals(1, count("template-render", "failure"));
+    assertEquals(2, count("sidecar-transfer", "success"));
+    assertEquals(1, count("sidecar-transfer", "failure"));
+  }
+
+  @Test
+  void aCancelledUniIsNotTimed() {
+    metrics.time(Stage.READINESS_WAIT, Uni.createFrom().nothing()).subscribe().with(item -> {
+    }).cancel();
+
+    assertNull(registry.find("spaship.pipeline.stage").timer());
+  }
+
+  @Test
+  void theSaturationOfAPoolIsExposedAndItsRejectionsCounted() throws InterruptedException {
+    var pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+    try {
+      metrics.monitor("build", pool);
+      var release = new CountDownLatch(1);
+      var running = new CountDownLatch(1);
+      pool.execute(() -> {
+        running.countDown();
+        await(release);
+      });
+      assertTrue(running.await(5, TimeUnit.SECONDS));
+      pool.execute(() -> {
+      });
+
+      assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> {
+      }));
+      assertEquals(1, registry.get("spaship.executor.active").tag("pool", "build").gauge().value());
+      assertEquals(1, registry.get("spaship.executor.queued").tag("pool", "build").gauge().value());
+      assertEquals(0, registry.get("spaship.executor.queue.remaining").tag("pool", "build").gauge().value());
+      assertEquals(1, registry.get("spaship.executor.rejected").tag("pool", "build").counter().count());
+      release.countDown();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private long count(String stage, String outcome) {
+    return registry.get("spaship.pipeline.stage").tag("stage", stage).tag("outcome", outcome).timer().count();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
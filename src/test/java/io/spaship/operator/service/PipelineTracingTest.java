@@ -0,0 +1,64 @@
+package io.spaship.operator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.smallrye.mutiny.Uni;
+import io.spaship.operator.service.PipelineMetrics.Stage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineTracingTest {
+
+  private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+  private final PipelineTracing tracing = new PipelineTracing(OpenTelemetrySdk.builder()
+    .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(exporter)).build())
+    .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+    .build());
+  private final PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), tracing);
+
+  @Test
+  void stagesOfADeploymentAreSpansOfItsTrace() {
+    var traceId = UUID.randomUUID();
+    metrics.run(Stage.TEMPLATE_RENDER, traceId, () -> {
+    });
+    var headers = metrics.time(Stage.SIDECAR_TRANSFER, traceId, SpanKind.CLIENT,
+      context -> Uni.createFrom().item(tracing.headers(context))).await().indefinitely();
+
+    var spans = exporter.getFinishedSpanItems();
+    assertEquals(List.of("template-render", "sidecar-transfer"), spans.stream().map(SpanData::getName).toList());
+    var expectedTraceId = traceId.toString().replace("-", "");
+    assertTrue(spans.stream().allMatch(span -> expectedTraceId.equals(span.getTraceId())));
+    assertEquals(traceId.toString(),
+      spans.get(0).getAttributes().get(AttributeKey.stringKey(PipelineTracing.TRACE_ID_ATTRIBUTE)));
+    assertEquals("00-" + expectedTraceId + "-" + spans.get(1).getSpanId() + "-01", headers.get("traceparent"));
+  }
+
+  @Test
+  void failedStageIsAnErrorSpan() {
+    var traceId = UUID.randomUUID();
+    assertThrows(IllegalStateException.class, () -> metrics.run(Stage.RESOURCE_APPLY, traceId, () -> {
+      throw new IllegalStateException("conflict");
+    }));
+    assertThrows(IllegalStateException.class, () -> metrics.time(Stage.READINESS_WAIT, traceId, SpanKind.INTERNAL,
+      context -> Uni.createFrom().failure(new IllegalStateException("not ready"))).await().indefinitely());
+
+    var spans = exporter.getFinishedSpanItems();
+    assertEquals(2, spans.size());
+    assertTrue(spans.stream().allMatch(span -> span.getStatus().getStatusCode() == StatusCode.ERROR));
+  }
+}
@@ -0,0 +1,150 @@
+package io.spaship.operator.service.k8s;
+
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.spaship.operator.type.GitFlowMeta;
+import io.spaship.operator.type.SsrResourceDetails;
+import io.spaship.operator.util.GitRefResolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildCacheTest {
+
+  private static final String COMMIT = "1111111111111111111111111111111111111111";
+  private static final String REPO = "https://example.com/web.git";
+  // read by GitFlowMeta.toTemplateParameterMap
+  private static final Map<String, String> CONFIG = Map.of(
+    "mpp.remote.build.repository.url", "quay.example.com/spaship/builds",
+    "mpp.remote.build.repository.access.secret", "push-secret");
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final List<Build> builds = new ArrayList<>();
+  private final List<String> lookedUpNamespaces = new ArrayList<>();
+  private final GitFlowResourceProvisioner provisioner = new GitFlowResourceProvisioner(null, null) {
+    @Override
+    public List<Build> completeBuilds(Map<String, String> labels, String ns, boolean isRemoteBuild) {
+      lookedUpNamespaces.add(ns);
+      return builds;
+    }
+  };
+
+  @BeforeEach
+  void configure() {
+    CONFIG.forEach(System::setProperty);
+  }
+
+  @AfterEach
+  void clear() {
+    CONFIG.keySet().forEach(System::clearProperty);
+  }
+
+  @Test
+  void aBuildOfTheCommitIsAHit() {
+    builds.add(completeBuild("web-home-dev-1", "2026-10-19T09:00:00Z", REPO, COMMIT));
+    builds.add(completeBuild("web-home-dev-2", "2026-10-19T10:00:00Z", REPO, COMMIT));
+    // labelled alike, but it did not build the repository
+    builds.add(completeBuild("web-home-dev-3", "2026-10-19T11:00:00Z", "https://example.com/fork.git", COMMIT));
+    var lookup = cache(Optional.of(COMMIT)).lookUp(meta());
+    assertTrue(lookup.hit());
+    assertEquals("web-home-dev-2", lookup.cached().getMetadata().getName());
+    assertEquals(List.of("web-ns"), lookedUpNamespaces);
+    assertEquals(1, lookups("hit"));
+  }
+
+  @Test
+  void withoutABuildOfTheCommitTheBuildIsPinnedAndLabelled() {
+    var lookup = cache(Optional.of(COMMIT)).lookUp(meta());
+    assertFalse(lookup.hit());
+    assertEquals(COMMIT, lookup.commit());
+    assertEquals(lookup.inputsDigest(), lookup.labels().get(BuildCache.INPUTS_LABEL));
+    assertEquals(1, lookups("miss"));
+  }
+
+  @Test
+  void anUnresolvedRefIsBuiltWithoutTheCache() {
+    var lookup = cache(Optional.empty()).lookUp(meta());
+    assertFalse(lookup.hit());
+    assertNull(lookup.commit());
+    assertTrue(lookup.labels().isEmpty());
+    assertTrue(lookedUpNamespaces.isEmpty());
+    assertEquals(1, lookups("unresolved"));
+  }
+
+  private BuildCache cache(Optional<String> commit) {
+    return new BuildCache(provisioner, new GitRefResolver(Duration.ofMillis(1)) {
+      @Override
+      public Optional<String> resolve(String repoUrl, String ref) {
+        return commit;
+      }
+    }, registry, true);
+  }
+
+  private double lookups(String outcome) {
+    return registry.get("spaship.build.cache.lookups").tag("outcome", outcome).counter().count();
+  }
+
+  private static GitFlowMeta meta() {
+    var details = new SsrResourceDetails("web-ns", null, "home", "/", null, "web", "dev", "8080", Map.of(), Map.of(),
+      null, null, null, null, null, null);
+    return new GitFlowMeta(details, "main", REPO, null, List.of(), "web-ns", false, null, null);
+  }
+
+  private static Build completeBuild(String name, String completion, String uri, String commit) {
+    return new BuildBuilder(build(uri, commit))
+      .withNewMetadata().withName(name).withNamespace("web-ns").endMetadata()
+      .withNewStatus().withPhase("Complete").withCompletionTimestamp(completion).endStatus()
+      .build();
+  }
+
+  @Test
+  void environmentsOfAnAppShareTheDigestOfACommit() {
+    var dev = BuildCache.inputsDigest(parameters("dev"), List.of(Map.of("name", "NODE_ENV", "value", "production")),
+      COMMIT, false);
+    var qa = BuildCache.inputsDigest(parameters("qa"), List.of(Map.of("value", "production", "name", "NODE_ENV")),
+      COMMIT, false);
+    assertEquals(dev, qa);
+    assertEquals(63, dev.length());
+    assertNotEquals(dev, BuildCache.inputsDigest(parameters("qa"), List.of(),
+      "2222222222222222222222222222222222222222", false));
+    assertNotEquals(dev, BuildCache.inputsDigest(parameters("qa"), List.of(), COMMIT, false));
+  }
+
+  @Test
+  void aBuildIsReusedOnlyIfItsSpecBuiltTheRepositoryAtTheCommit() {
+    assertTrue(BuildCache.built(build("https://example.com/web.git/", COMMIT), "https://example.com/web.git", COMMIT));
+    assertFalse(BuildCache.built(build("https://example.com/fork.git", COMMIT), "https://example.com/web.git",
+      COMMIT));
+    assertFalse(BuildCache.built(build("https://example.com/web.git", "2222222222222222222222222222222222222222"),
+      "https://example.com/web.git", COMMIT));
+    assertFalse(BuildCache.built(new BuildBuilder().withNewSpec().endSpec().build(), "https://example.com/web.git",
+      COMMIT));
+  }
+
+  static Build build(String uri, String commit) {
+    return new BuildBuilder()
+      .withNewSpec()
+      .withNewSource().withNewGit().withUri(uri).endGit().endSource()
+      .withNewRevision().withNewGit().withCommit(commit).endGit().endRevision()
+      .endSpec()
+      .build();
+  }
+
+  private static Map<String, String> parameters(String environment) {
+    return Map.of("NAME", "web-home-" + environment, "GIT_REF", "main", "GIT_URI", "https://example.com/web.git",
+      "OUTPUT_NAME", "web-home:" + environment, "IMAGE_TAG", "web.home." + environment, "APP", "web-home");
+  }
+}
@@ -0,0 +1,42 @@
+package io.spaship.operator.service.k8s;
+
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildSupersessionTest {
+
+  @Test
+  void aBuildSupersedesTheOlderBuildsThatHaveNotEnded() {
+    var builds = List.of(build("web-1", 1, "Complete"), build("web-2", 2, "Running"), build("web-3", 3, "New"),
+      build("web-4", 4, "Pending"), build("web-5", 5, "New"));
+    var superseded = BuildSupersession.superseded(builds, "web-4");
+    assertEquals(List.of("web-2", "web-3"), superseded.stream().map(b -> b.getMetadata().getName()).toList());
+  }
+
+  @Test
+  void anUnlistedBuildSupersedesNone() {
+    assertTrue(BuildSupersession.superseded(List.of(build("web-1", 1, "Running")), "web-2").isEmpty());
+  }
+
+  @Test
+  void aReusedBuildSupersedesEveryBuildThatHasNotEnded() {
+    var builds = List.of(build("web-1", 1, "Complete"), build("web-2", 2, "Complete"), build("web-3", 3, "Running"),
+      build("web-4", 4, "New"));
+    var superseded = BuildSupersession.supersededByReuse(builds, "web-1");
+    assertEquals(List.of("web-3", "web-4"), superseded.stream().map(b -> b.getMetadata().getName()).toList());
+  }
+
+  private static Build build(String name, int number, String phase) {
+    return new BuildBuilder()
+      .withNewMetadata().withName(name).addToAnnotations("openshift.io/build.number", String.valueOf(number))
+      .endMetadata()
+      .withNewStatus().withPhase(phase).endStatus()
+      .build();
+  }
+}
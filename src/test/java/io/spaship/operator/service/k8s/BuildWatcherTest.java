@@ -0,0 +1,219 @@
+package io.spaship.operator.service.k8s;
+
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Store;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildWatcherTest {
+
+  private final List<Informer> informers = new CopyOnWriteArrayList<>();
+  private final BuildWatcher watcher = new BuildWatcher((ns, remote) -> {
+    var informer = new Informer(ns);
+    informers.add(informer);
+    return informer.proxy();
+  });
+
+  @Test
+  void theBuildsOfANamespaceShareItsInformer() {
+    var first = watcher.awaitEnd("web-1", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    var second = watcher.awaitEnd("web-2", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    var remote = watcher.awaitEnd("web-3", "web-ns", true).subscribe().withSubscriber(UniAssertSubscriber.create());
+    assertEquals(2, informers.size());
+    assertEquals(1, informers.get(0).starts.get());
+
+    informers.get(0).update(build("web-2", "web-ns", "Running"));
+    informers.get(0).update(build("web-1", "web-ns", "Complete"));
+    assertEquals("web-1", first.assertCompleted().getItem().getMetadata().getName());
+    second.assertNotTerminated();
+    remote.assertNotTerminated();
+
+    informers.get(0).update(build("web-2", "web-ns", "Failed"));
+    assertEquals("Failed", second.assertCompleted().getItem().getStatus().getPhase());
+  }
+
+  @Test
+  void aBuildThatHasAlreadyEndedIsEmittedFromTheStore() {
+    var ended = build("web-1", "web-ns", "Complete");
+    var running = watcher.awaitEnd("web-2", "web-ns", false).subscribe()
+      .withSubscriber(UniAssertSubscriber.create());
+    informers.get(0).store.put("web-ns/web-1", ended);
+
+    var wait = watcher.awaitEnd("web-1", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    assertEquals(ended, wait.assertCompleted().getItem());
+    running.assertNotTerminated();
+  }
+
+  @Test
+  void theInformerIsStoppedWithTheLastWaitOfItsNamespace() {
+    var first = watcher.awaitEnd("web-1", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    var second = watcher.awaitEnd("web-2", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    var informer = informers.get(0);
+
+    first.cancel();
+    assertFalse(informer.stopped);
+    second.cancel();
+    assertTrue(informer.stopped);
+
+    watcher.awaitEnd("web-3", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    assertEquals(2, informers.size());
+    assertEquals(1, informers.get(1).starts.get());
+  }
+
+  @Test
+  void aDeletedBuildFailsItsWaits() {
+    var wait = watcher.awaitEnd("web-1", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    var changes = watcher.changes("web-1", "web-ns", false).collect().asList().subscribe()
+      .withSubscriber(UniAssertSubscriber.create());
+    var other = watcher.awaitEnd("web-2", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+
+    informers.get(0).handler.onDelete(build("web-1", "web-ns", "Running"), false);
+    assertInstanceOf(IllegalStateException.class, wait.assertFailed().getFailure());
+    changes.assertFailedWith(IllegalStateException.class, "build web-1 was deleted before it ended");
+    other.assertNotTerminated();
+    // the informer keeps serving the other build
+    assertFalse(informers.get(0).stopped);
+  }
+
+  @Test
+  void anInformerThatFailsToStartFailsEveryWaitOfItsNamespace() {
+    var first = watcher.awaitEnd("web-1", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    var second = watcher.awaitEnd("web-2", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    var informer = informers.get(0);
+
+    informer.started.completeExceptionally(new IllegalStateException("forbidden"));
+    first.assertFailedWith(IllegalStateException.class, "forbidden");
+    second.assertFailedWith(IllegalStateException.class, "forbidden");
+    assertTrue(informer.stopped);
+  }
+
+  @Test
+  void aWaitCancelledBeforeItListensReleasesTheInformer() {
+    watcher.awaitEnd("web-1", "web-ns", false).onSubscription().invoke(subscription -> subscription.cancel())
+      .subscribe().withSubscriber(UniAssertSubscriber.create());
+    assertTrue(informers.get(0).stopped);
+
+    watcher.awaitEnd("web-2", "web-ns", false).subscribe().withSubscriber(UniAssertSubscriber.create());
+    assertEquals(2, informers.size());
+  }
+
+  @Test
+  void noInformerIsStartedOnceStopped() throws Exception {
+    // waits are cancelled by other threads than the ones subscribing them, the last one of the namespace may be
+    // cancelled while its informer is being started
+    var subscribed = new LinkedBlockingQueue<UniAssertSubscriber<Build>>();
+    var pool = Executors.newFixedThreadPool(8);
+    try {
+      var tasks = new ArrayList<Future<?>>();
+      for (int i = 0; i < 4; i++) {
+        var build = "web-" + i;
+        tasks.add(pool.submit(() -> {
+          for (int j = 0; j < 2000; j++)
+            subscribed.add(watcher.awaitEnd(build, "web-ns", false).subscribe()
+              .withSubscriber(UniAssertSubscriber.create()));
+        }));
+        tasks.add(pool.submit(() -> {
+          for (int j = 0; j < 2000; j++)
+            subscribed.poll(5, TimeUnit.SECONDS).cancel();
+          return null;
+        }));
+      }
+      for (var task : tasks)
+        task.get(30, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdown();
+    }
+    assertTrue(informers.stream().allMatch(informer -> informer.stopped));
+    assertTrue(informers.stream().noneMatch(informer -> informer.startedOnceStopped));
+  }
+
+  @Test
+  void changesAreStreamedUntilTheBuildEnds() {
+    var changes = watcher.changes("web-1", "web-ns", false).map(build -> build.getStatus().getPhase())
+      .collect().asList().subscribe().withSubscriber(UniAssertSubscriber.create());
+    informers.get(0).update(build("web-1", "web-ns", "Pending"));
+    informers.get(0).update(build("web-1", "web-ns", "Running"));
+    informers.get(0).update(build("web-1", "web-ns", "Complete"));
+    assertEquals(List.of("Pending", "Running", "Complete"), changes.assertCompleted().getItem());
+    assertTrue(informers.get(0).stopped);
+  }
+
+  private static Build build(String name, String ns, String phase) {
+    return new BuildBuilder()
+      .withNewMetadata().withName(name).withNamespace(ns).endMetadata()
+      .withNewStatus().withPhase(phase).endStatus()
+      .build();
+  }
+
+  // an informer whose events are sent by the test
+  private static class Informer {
+
+    private final String ns;
+    private final Map<String, Build> store = new ConcurrentHashMap<>();
+    private final AtomicInteger starts = new AtomicInteger();
+    private final CompletableFuture<Void> started = new CompletableFuture<>();
+    private ResourceEventHandler<Build> handler;
+    private volatile boolean stopped;
+    private volatile boolean startedOnceStopped;
+
+    private Informer(String ns) {
+      this.ns = ns;
+    }
+
+    void update(Build build) {
+      var previous = store.put(ns + "/" + build.getMetadata().getName(), build);
+      if (previous == null)
+        handler.onAdd(build);
+      else
+        handler.onUpdate(previous, build);
+    }
+
+    @SuppressWarnings("unchecked")
+    SharedIndexInformer<Build> proxy() {
+      var storeProxy = (Store<Build>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Store.class},
+        (proxy, method, args) -> switch (method.getName()) {
+          case "getByKey" -> store.get((String) args[0]);
+          default -> throw new UnsupportedOperationException(method.getName());
+        });
+      return (SharedIndexInformer<Build>) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{SharedIndexInformer.class}, (proxy, method, args) -> switch (method.getName()) {
+          case "addEventHandler" -> {
+            handler = (ResourceEventHandler<Build>) args[0];
+            yield proxy;
+          }
+          case "start" -> {
+            startedOnceStopped |= stopped;
+            starts.incrementAndGet();
+            yield started;
+          }
+          case "stop" -> {
+            stopped = true;
+            yield null;
+          }
+          case "getStore" -> storeProxy;
+          default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+  }
+}
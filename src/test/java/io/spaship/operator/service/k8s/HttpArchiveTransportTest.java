@@ -0,0 +1,91 @@
+package io.spaship.operator.service.k8s;
+
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.ext.web.Router;
+import io.vertx.mutiny.ext.web.client.WebClient;
+import io.vertx.mutiny.ext.web.handler.BodyHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HttpArchiveTransportTest {
+
+  @TempDir
+  Path tempDir;
+
+  private Vertx vertx;
+  private int port;
+  private final AtomicReference<byte[]> received = new AtomicReference<>();
+  private final AtomicReference<String> receivedDigest = new AtomicReference<>();
+  private final AtomicReference<String> receivedFileName = new AtomicReference<>();
+
+  @BeforeEach
+  void startSidecarStub() {
+    vertx = Vertx.vertx();
+    var router = Router.router(vertx);
+    router.route().handler(BodyHandler.create(tempDir.resolve("uploads").toString()));
+    router.post("/api/upload").handler(rc -> {
+      var upload = rc.fileUploads().get(0);
+      receivedFileName.set(upload.fileName());
+      receivedDigest.set(rc.request().getHeader("Digest"));
+      vertx.fileSystem().readFile(upload.uploadedFileName())
+        .subscribe().with(content -> {
+          received.set(content.getBytes());
+          rc.response().endAndForget("{}");
+        }, rc::fail);
+    });
+    port = vertx.createHttpServer().requestHandler(router).listenAndAwait(0).actualPort();
+  }
+
+  @AfterEach
+  void stop() {
+    vertx.close().await().atMost(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void archiveIsStreamedAsBinaryMultipart() throws Exception {
+    var content = new byte[300_000];
+    new Random(7).nextBytes(content);
+    var archivePath = Files.write(tempDir.resolve("spa.zip"), content);
+    var transport = new HttpArchiveTransport(vertx, WebClient.create(vertx), 8 * 1024, true);
+
+    var archive = transport.describe(archivePath, "home-spa", "spaship-ns").await().atMost(Duration.ofSeconds(10));
+    var response = transport.send("http://localhost:" + port, archive)
+      .await().atMost(Duration.ofSeconds(10));
+
+    assertEquals(200, response.statusCode());
+    assertEquals(content.length, archive.size());
+    assertEquals("home-spa", receivedFileName.get());
+    assertNotNull(receivedDigest.get());
+    assertArrayEquals(content, received.get());
+  }
+
+  @Test
+  void abortedTransferIsNotDelivered() throws Exception {
+    var content = new byte[1_000_000];
+    var archivePath = Files.write(tempDir.resolve("spa.zip"), content);
+    var transport = new HttpArchiveTransport(vertx, WebClient.create(vertx), 4 * 1024, false);
+    var chunks = new AtomicInteger();
+
+    var archive = transport.describe(archivePath, "home-spa", "spaship-ns").await().atMost(Duration.ofSeconds(10));
+    var send = transport.send("http://localhost:" + port, archive,
+      () -> chunks.incrementAndGet() > 10);
+
+    assertThrows(Exception.class, () -> send.await().atMost(Duration.ofSeconds(10)));
+    assertNull(received.get());
+  }
+}
@@ -0,0 +1,75 @@
+package io.spaship.operator.service.k8s;
+
+import io.fabric8.kubernetes.api.model.KubernetesListBuilder;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.VolumeMount;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
+import io.spaship.operator.type.Environment;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OperatorTest {
+
+  @Test
+  void onlyTheServicesOfTheInstanceAreSelected() {
+    var services = List.of(
+      service("svc-spaship-home-dev", "home", "dev", "spaship"),
+      // an instance whose name starts with this one's
+      service("svc-spaship-qa-home-dev", "home", "dev", "spaship-qa"),
+      service("svc-spaship-blog-prod", "blog", "prod", null),
+      service("svc-spaship-qa-blog-prod", "blog", "prod", null));
+
+    var environments = Operator.environmentsOf(services, "spaship", "web-ns");
+
+    assertEquals(List.of("home-dev", "blog-prod"), environments.stream().map(Environment::getIdentification).toList());
+    assertEquals("web-ns", environments.get(0).getNameSpace());
+  }
+
+  private static Service service(String name, String website, String environment, String appInstance) {
+    var labels = new HashMap<>(Map.of("managedBy", "spaship", "website", website, "environment", environment));
+    if (appInstance != null)
+      labels.put("appInstance", appInstance);
+    return new ServiceBuilder().withNewMetadata().withName(name).withLabels(labels).endMetadata().build();
+  }
+
+  @Test
+  void theStagingVolumeIsMountedIntoTheSidecarsOnly() {
+    var resources = new KubernetesListBuilder()
+      .addToItems(deployment("spaship-home-dev", "httpd-server", "sidecar"))
+      .addToItems(deployment("spaship-router-home-dev", "spaship-router"))
+      .build();
+
+    Operator.mountStagingVolume(resources, "spaship-staging", "/app/staging");
+
+    var environment = ((Deployment) resources.getItems().get(0)).getSpec().getTemplate().getSpec();
+    assertEquals(List.of("data", "spaship-staging"), environment.getVolumes().stream().map(v -> v.getName()).toList());
+    var claim = environment.getVolumes().get(1).getPersistentVolumeClaim();
+    assertEquals("spaship-staging", claim.getClaimName());
+    assertEquals(true, claim.getReadOnly());
+    assertEquals(List.of(), environment.getContainers().get(0).getVolumeMounts().stream()
+      .filter(mount -> "spaship-staging".equals(mount.getName())).toList());
+    var mount = environment.getContainers().get(1).getVolumeMounts().stream()
+      .filter(m -> "spaship-staging".equals(m.getName())).findFirst().orElseThrow();
+    assertEquals("/app/staging", mount.getMountPath());
+    assertEquals(true, mount.getReadOnly());
+    var router = ((Deployment) resources.getItems().get(1)).getSpec().getTemplate().getSpec();
+    assertEquals(List.of("data"), router.getVolumes().stream().map(v -> v.getName()).toList());
+  }
+
+  private static Deployment deployment(String name, String... containers) {
+    var pod = new DeploymentBuilder().withNewMetadata().withName(name).endMetadata()
+      .withNewSpec().withNewTemplate().withNewSpec()
+      .addNewVolume().withName("data").withNewPersistentVolumeClaim("data-home-dev", false).endVolume();
+    for (var container : containers)
+      pod = pod.addNewContainer().withName(container)
+        .addToVolumeMounts(new VolumeMount("/app/data/", null, "data", null, null, null)).endContainer();
+    return pod.endSpec().endTemplate().endSpec().build();
+  }
+}
@@ -0,0 +1,129 @@
+package io.spaship.operator.service.k8s;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.ext.web.Router;
+import io.vertx.mutiny.ext.web.client.WebClient;
+import io.vertx.mutiny.ext.web.handler.BodyHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedVolumeArchiveTransportTest {
+
+  private static final String NAMESPACE = "spaship-ns";
+
+  @TempDir
+  Path tempDir;
+
+  private Vertx vertx;
+  private int port;
+  private final List<JsonObject> commands = new CopyOnWriteArrayList<>();
+  private final List<byte[]> pulled = new CopyOnWriteArrayList<>();
+
+  // behaves like a sidecar that has the staging directory of its namespace mounted, it pulls what it is told to
+  @BeforeEach
+  void startSidecarStub() {
+    vertx = Vertx.vertx();
+    var router = Router.router(vertx);
+    router.route().handler(BodyHandler.create());
+    router.post("/api/upload/pull").handler(rc -> {
+      var command = rc.body().asJsonObject();
+      commands.add(command);
+      vertx.fileSystem().readFile(command.getString("path"))
+        .subscribe().with(content -> {
+          pulled.add(content.getBytes());
+          rc.response().endAndForget("{}");
+        }, rc::fail);
+    });
+    port = vertx.createHttpServer().requestHandler(router).listenAndAwait(0).actualPort();
+  }
+
+  @AfterEach
+  void stop() {
+    vertx.close().await().atMost(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void archiveIsStagedOncePerNamespace() throws Exception {
+    var content = new byte[200_000];
+    new Random(11).nextBytes(content);
+    var upload = Files.write(tempDir.resolve("upload.zip"), content);
+    var stagingRoot = tempDir.resolve("staging");
+    Files.createDirectories(stagingRoot.resolve(NAMESPACE));
+    var transport = new SharedVolumeArchiveTransport(vertx, WebClient.create(vertx), stagingRoot,
+      stagingRoot.resolve(NAMESPACE).toString(), 8 * 1024, Duration.ofMinutes(5));
+
+    for (var environment : List.of("dev", "qa", "prod")) {
+      var archive = transport.describe(upload, "home-spa", NAMESPACE).await().atMost(Duration.ofSeconds(10));
+      var response = transport.send("http://localhost:" + port, archive, () -> false)
+        .await().atMost(Duration.ofSeconds(10));
+      assertEquals(200, response.statusCode(), environment);
+    }
+
+    try (var staged = Files.list(stagingRoot.resolve(NAMESPACE))) {
+      assertEquals(1, staged.count());
+    }
+    assertEquals(3, commands.size());
+    assertEquals(ArchiveTransport.sha256Hex(upload, 1024), commands.get(0).getString("sha256"));
+    assertEquals("home-spa", commands.get(0).getString("fileName"));
+    assertEquals(content.length, commands.get(0).getLong("size"));
+    pulled.forEach(bytes -> assertArrayEquals(content, bytes));
+  }
+
+  @Test
+  void aReusedUploadPathIsDigestedAgain() throws Exception {
+    var random = new Random(7);
+    var content = new byte[10_000];
+    random.nextBytes(content);
+    var upload = Files.write(tempDir.resolve("upload.zip"), content);
+    var stagingRoot = tempDir.resolve("staging");
+    Files.createDirectories(stagingRoot.resolve(NAMESPACE));
+    var transport = new SharedVolumeArchiveTransport(vertx, WebClient.create(vertx), stagingRoot,
+      stagingRoot.resolve(NAMESPACE).toString(), 8 * 1024, Duration.ofMinutes(5));
+    var first = transport.describe(upload, "home-spa", NAMESPACE).await().atMost(Duration.ofSeconds(10));
+
+    // another archive of the same size uploaded to the same path
+    random.nextBytes(content);
+    Files.write(upload, content);
+    Files.setLastModifiedTime(upload, FileTime.fromMillis(Files.getLastModifiedTime(upload).toMillis() + 1000));
+    var second = transport.describe(upload, "home-spa", NAMESPACE).await().atMost(Duration.ofSeconds(10));
+
+    assertNotEquals(first.sha256(), second.sha256());
+    assertEquals(ArchiveTransport.sha256Hex(upload, 1024), second.sha256());
+    assertArrayEquals(content, Files.readAllBytes(Path.of(second.path())));
+  }
+
+  @Test
+  void aNamespaceWithoutAStagingVolumeIsNotStaged() throws Exception {
+    var upload = Files.write(tempDir.resolve("upload.zip"), new byte[100]);
+    var stagingRoot = tempDir.resolve("staging");
+    var transport = new SharedVolumeArchiveTransport(vertx, WebClient.create(vertx), stagingRoot,
+      stagingRoot.resolve(NAMESPACE).toString(), 8 * 1024, Duration.ofMinutes(5));
+
+    var failure = assertThrows(CompletionException.class,
+      () -> transport.describe(upload, "home-spa", NAMESPACE).await().atMost(Duration.ofSeconds(10))).getCause();
+    assertInstanceOf(IOException.class, failure);
+    assertTrue(failure.getMessage().contains("not mounted"), failure.getMessage());
+    assertFalse(Files.exists(stagingRoot.resolve(NAMESPACE)));
+  }
+}
@@ -0,0 +1,114 @@
+package io.spaship.operator.service.k8s;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.spaship.operator.business.EventManager;
+import io.spaship.operator.service.PipelineMetrics;
+import io.spaship.operator.service.PipelineTracing;
+import io.spaship.operator.type.Environment;
+import io.spaship.operator.type.EventStructure;
+import io.spaship.operator.type.OperationResponse;
+import io.vertx.mutiny.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SideCarOperationsTest {
+
+  private static final Map<String, String> CONFIG = Map.of(
+    "operator.domain.name", "example.com",
+    "operator.router.domain.name", "router.example.com",
+    "operator.router.shard.type", "internal",
+    "app.instance", "spaship",
+    "operator.event.bus.address", "spaship-events",
+    "operator.sidecar.readiness.interval.ms", "20");
+
+  // readiness checks per trace, no environment ever gets ready so every push keeps waiting until it is superseded
+  private final Map<UUID, AtomicInteger> readinessChecks = new ConcurrentHashMap<>();
+  private final Map<UUID, CountDownLatch> waiting = new ConcurrentHashMap<>();
+  private final List<EventStructure> events = new CopyOnWriteArrayList<>();
+  private Vertx vertx;
+  private SideCarOperations sidecarOps;
+
+  @BeforeEach
+  void start() {
+    CONFIG.forEach(System::setProperty);
+    vertx = Vertx.vertx();
+    var operator = new Operator(null, null, null, null, null) {
+      @Override
+      public boolean isEnvironmentAvailable(Environment environment) {
+        readinessChecks.computeIfAbsent(environment.getTraceID(), trace -> new AtomicInteger()).incrementAndGet();
+        waiting.get(environment.getTraceID()).countDown();
+        return false;
+      }
+    };
+    var eventManager = new EventManager(vertx) {
+      @Override
+      public void queue(EventStructure event) {
+        events.add(event);
+      }
+    };
+    sidecarOps = new SideCarOperations(vertx, eventManager, operator, null, new ObjectMapper(),
+      new PipelineMetrics(new SimpleMeterRegistry(), new PipelineTracing(OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder().build()).build())), null);
+  }
+
+  @AfterEach
+  void stop() {
+    CONFIG.keySet().forEach(System::clearProperty);
+    vertx.closeAndAwait();
+  }
+
+  @Test
+  void aNewerPushToTheSameEnvironmentSupersedesTheOlderOne() throws InterruptedException {
+    var older = push("dev");
+    var newer = push("dev");
+
+    assertEquals(1, events.size());
+    var superseded = events.get(0);
+    assertEquals("spa deployment ops superseded", superseded.getState());
+    assertEquals(older.toString(), superseded.getUuid());
+    assertEquals(Map.of("supersededBy", newer.toString()), superseded.getMeta());
+
+    // the older push stopped waiting for the readiness of the environment, the newer one goes on
+    var olderChecks = readinessChecks.get(older).get();
+    var newerChecks = readinessChecks.get(newer).get();
+    TimeUnit.MILLISECONDS.sleep(200);
+    assertEquals(olderChecks, readinessChecks.get(older).get());
+    assertTrue(readinessChecks.get(newer).get() > newerChecks);
+  }
+
+  @Test
+  void pushesToOtherEnvironmentsAreNotSuperseded() throws InterruptedException {
+    push("dev");
+    push("qa");
+    assertEquals(List.of(), events);
+  }
+
+  // pushes the spa to the environment and waits until it waits for the readiness of the environment
+  private UUID push(String environmentName) throws InterruptedException {
+    var trace = UUID.randomUUID();
+    var checked = new CountDownLatch(1);
+    waiting.put(trace, checked);
+    var environment = new Environment(environmentName, "home", trace, "web-ns", false, null, "v1", "main-spa",
+      "/", null, false, false, null);
+    sidecarOps.asyncCreateOrUpdateSPDirectory(OperationResponse.builder().environment(environment)
+      .sideCarServiceUrl("tcp://10.0.0.1:8081").status(2).build());
+    assertTrue(checked.await(5, TimeUnit.SECONDS));
+    return trace;
+  }
+}
@@ -0,0 +1,67 @@
+package io.spaship.operator.util;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncSemaphoreTest {
+
+  @Test
+  void waitersAreQueuedInsteadOfBlocked() {
+    var semaphore = new AsyncSemaphore(1);
+    var gate = new CompletableFuture<String>();
+    List<String> results = new ArrayList<>();
+
+    semaphore.withPermit(() -> Uni.createFrom().completionStage(gate)).subscribe().with(results::add);
+    semaphore.withPermit(() -> Uni.createFrom().item("second")).subscribe().with(results::add);
+
+    assertEquals(0, semaphore.available());
+    assertEquals(1, semaphore.waiting());
+    assertTrue(results.isEmpty());
+
+    gate.complete("first");
+
+    assertEquals(List.of("first", "second"), results.stream().sorted().toList());
+    assertEquals(1, semaphore.available());
+  }
+
+  @Test
+  void permitIsReturnedOnFailure() {
+    var semaphore = new AsyncSemaphore(1);
+
+    semaphore.withPermit(() -> Uni.createFrom().failure(new IllegalStateException("boom")))
+      .subscribe().with(item -> {
+      }, err -> {
+      });
+
+    assertEquals(1, semaphore.available());
+  }
+
+  @Test
+  void cancelledWaiterGivesUpItsPlace() {
+    var semaphore = new AsyncSemaphore(1);
+    var gate = new CompletableFuture<String>();
+    List<String> results = new ArrayList<>();
+
+    semaphore.withPermit(() -> Uni.createFrom().completionStage(gate)).subscribe().with(results::add);
+    Cancellable abandoned = semaphore.withPermit(() -> Uni.createFrom().item("abandoned"))
+      .subscribe().with(results::add);
+    semaphore.withPermit(() -> Uni.createFrom().item("third")).subscribe().with(results::add);
+
+    abandoned.cancel();
+    assertEquals(1, semaphore.waiting());
+    assertTrue(results.isEmpty());
+
+    gate.complete("first");
+
+    assertEquals(List.of("first", "third"), results.stream().sorted().toList());
+    assertEquals(1, semaphore.available());
+  }
+}
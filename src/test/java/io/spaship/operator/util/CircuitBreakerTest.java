@@ -0,0 +1,100 @@
+package io.spaship.operator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.spaship.operator.util.CircuitBreaker.REJECTED;
+import static io.spaship.operator.util.CircuitBreaker.State.CLOSED;
+import static io.spaship.operator.util.CircuitBreaker.State.HALF_OPEN;
+import static io.spaship.operator.util.CircuitBreaker.State.OPEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final List<CircuitBreaker.State> transitions = new ArrayList<>();
+
+  private CircuitBreaker breaker() {
+    return new CircuitBreaker(4, 4, 0.5, Duration.ofSeconds(10), 2,
+      (from, to) -> transitions.add(to), clock::get);
+  }
+
+  @Test
+  void opensOnceFailureRateReachesThreshold() {
+    var breaker = breaker();
+
+    breaker.onSuccess(breaker.tryAcquire());
+    breaker.onFailure(breaker.tryAcquire());
+    breaker.onSuccess(breaker.tryAcquire());
+    assertEquals(CLOSED, breaker.state());
+
+    breaker.onFailure(breaker.tryAcquire());
+
+    assertEquals(OPEN, breaker.state());
+    assertEquals(REJECTED, breaker.tryAcquire());
+  }
+
+  @Test
+  void halfOpenTrialsCloseOrReopenTheCircuit() {
+    var breaker = breaker();
+    for (int i = 0; i < 4; i++)
+      breaker.onFailure(breaker.tryAcquire());
+
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    var first = breaker.tryAcquire();
+    var second = breaker.tryAcquire();
+    assertEquals(HALF_OPEN, breaker.state());
+    assertNotEquals(REJECTED, first);
+    assertEquals(REJECTED, breaker.tryAcquire());
+
+    breaker.onSuccess(first);
+    breaker.onSuccess(second);
+    assertEquals(CLOSED, breaker.state());
+
+    for (int i = 0; i < 4; i++)
+      breaker.onFailure(breaker.tryAcquire());
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    breaker.onFailure(breaker.tryAcquire());
+
+    assertEquals(List.of(OPEN, HALF_OPEN, CLOSED, OPEN, HALF_OPEN, OPEN), transitions);
+  }
+
+  @Test
+  void outcomesOfAnOlderGenerationAreIgnored() {
+    var breaker = breaker();
+    var slowCall = breaker.tryAcquire();
+    for (int i = 0; i < 4; i++)
+      breaker.onFailure(breaker.tryAcquire());
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    var trial = breaker.tryAcquire();
+
+    breaker.onFailure(slowCall);
+
+    assertEquals(HALF_OPEN, breaker.state());
+    breaker.release(trial);
+    assertNotEquals(REJECTED, breaker.tryAcquire());
+  }
+
+  @Test
+  void retryBudgetIsAFractionOfTheTraffic() {
+    var budget = new RetryBudget(0.5, 1, 10, clock::get);
+
+    assertTrue(budget.tryWithdraw());
+    assertFalse(budget.tryWithdraw());
+
+    budget.deposit();
+    budget.deposit();
+    assertTrue(budget.tryWithdraw());
+    assertFalse(budget.tryWithdraw());
+
+    clock.addAndGet(Duration.ofSeconds(1).toNanos());
+    assertTrue(budget.tryWithdraw());
+  }
+}
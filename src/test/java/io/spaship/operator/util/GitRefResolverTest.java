@@ -0,0 +1,80 @@
+package io.spaship.operator.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GitRefResolverTest {
+
+  private static final String MAIN = "1111111111111111111111111111111111111111";
+  private static final String TAG = "2222222222222222222222222222222222222222";
+  private static final String TAGGED = "3333333333333333333333333333333333333333";
+
+  @Test
+  void refsAreResolvedFromTheAdvertisement() throws IOException {
+    var refs = GitRefResolver.parseAdvertisement(new ByteArrayInputStream((pkt("# service=git-upload-pack\n")
+      + "0000"
+      + pkt(MAIN + " HEAD\0multi_ack thin-pack symref=HEAD:refs/heads/main\n")
+      + pkt(MAIN + " refs/heads/main\n")
+      + pkt(TAG + " refs/tags/v1.0\n")
+      + pkt(TAGGED + " refs/tags/v1.0^{}\n")
+      + "0000").getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(Optional.of(MAIN), GitRefResolver.find(refs, "main"));
+    assertEquals(Optional.of(MAIN), GitRefResolver.find(refs, null));
+    assertEquals(Optional.of(TAGGED), GitRefResolver.find(refs, "v1.0"));
+    assertEquals(Optional.empty(), GitRefResolver.find(refs, "feature"));
+  }
+
+  @Test
+  void commitIsNotResolvedAgain() {
+    assertEquals(Optional.of(TAG), new GitRefResolver(Duration.ofMillis(1)).resolve("ssh://git@host/repo",
+      TAG));
+  }
+
+  @Test
+  void aPageThatIsNotAnAdvertisementIsNotResolved() throws IOException {
+    var html = "<!DOCTYPE html><html><body>Sign in</body></html>";
+    assertThrows(IOException.class, () -> GitRefResolver.parseAdvertisement(
+      new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8))));
+
+    // a login page the redirects end on, and the same page claiming to be an advertisement
+    var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/login", exchange -> {
+      var body = html.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", exchange.getRequestURI().getPath().endsWith("/pkt")
+        ? "application/x-git-upload-pack-advertisement" : "text/html; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.createContext("/repo", exchange -> {
+      exchange.getResponseHeaders().set("Location", "/login" + exchange.getRequestURI().getPath()
+        .replace("/info/refs", ""));
+      exchange.sendResponseHeaders(302, -1);
+      exchange.close();
+    });
+    server.start();
+    try {
+      var resolver = new GitRefResolver(Duration.ofSeconds(5));
+      var url = "http://localhost:" + server.getAddress().getPort();
+      assertEquals(Optional.empty(), resolver.resolve(url + "/repo", "main"));
+      assertEquals(Optional.empty(), resolver.resolve(url + "/repo/pkt", "main"));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  private static String pkt(String line) {
+    return String.format("%04x", line.getBytes(StandardCharsets.UTF_8).length + 4) + line;
+  }
+}
@@ -0,0 +1,45 @@
+package io.spaship.operator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LineChunkReaderTest {
+
+  @Test
+  void chunksEndOnLineBoundaries() throws IOException {
+    // hands out at most 5 bytes per read, like a log arriving piece by piece
+    var in = new FilterInputStream(stream("one\ntwo\nthree\n")) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return super.read(b, off, Math.min(len, 5));
+      }
+    };
+    assertEquals(List.of("one\n", "two\n", "three\n"), chunks(new LineChunkReader(in, 64)));
+  }
+
+  @Test
+  void longLinesAreSplitAndTheLastPartialLineIsKept() throws IOException {
+    assertEquals(List.of("abcd", "ef\n", "ghi"), chunks(new LineChunkReader(stream("abcdef\nghi"), 4)));
+  }
+
+  private static InputStream stream(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static List<String> chunks(LineChunkReader reader) throws IOException {
+    var chunks = new ArrayList<String>();
+    byte[] chunk;
+    while ((chunk = reader.next()) != null)
+      chunks.add(new String(chunk, StandardCharsets.UTF_8));
+    return chunks;
+  }
+}
@@ -0,0 +1,76 @@
+package io.spaship.operator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogFilterTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(1);
+  private static final String LOG = """
+    STEP 1: FROM node:18
+    npm WARN deprecated uuid@3.4.0
+    added 812 packages
+    npm ERR! code ELIFECYCLE
+    npm ERR! errno 1
+    build failed
+    """;
+
+  @Test
+  void matchesComeWithTheirContextAcrossChunks() {
+    var filter = new LogFilter("err!", false, true, null, 1, 10, TIMEOUT);
+    // the log arrives split in the middle of a line
+    var out = text(filter.filter(bytes(LOG.substring(0, 60)))) + text(filter.filter(bytes(LOG.substring(60))))
+      + text(filter.finish());
+    assertEquals("3-added 812 packages\n4:npm ERR! code ELIFECYCLE\n5:npm ERR! errno 1\n6-build failed\n", out);
+  }
+
+  @Test
+  void levelAndMatchLimitStopTheSearch() {
+    var filter = new LogFilter(null, false, false, LogFilter.Level.WARN, 0, 2, TIMEOUT);
+    assertEquals("2:npm WARN deprecated uuid@3.4.0\n4:npm ERR! code ELIFECYCLE\n", text(filter.filter(bytes(LOG))));
+    assertTrue(filter.isDone());
+  }
+
+  @Test
+  void groupsAreSeparatedAndLevelsDetected() {
+    var filter = new LogFilter("^(STEP|build)", true, false, null, 1, 10, TIMEOUT);
+    assertEquals("1:STEP 1: FROM node:18\n2-npm WARN deprecated uuid@3.4.0\n--\n5-npm ERR! errno 1\n6:build failed\n",
+      text(filter.filter(bytes(LOG))));
+    assertFalse(filter.isDone());
+    assertEquals(Optional.of(LogFilter.Level.ERROR), LogFilter.Level.detect("[error] cannot resolve module"));
+    assertEquals(Optional.empty(), LogFilter.Level.detect("added 812 packages"));
+    assertThrows(IllegalArgumentException.class, () -> new LogFilter("(", true, false, null, 0, 1, TIMEOUT));
+  }
+
+  @Test
+  void theLastMatchComesWithItsTrailingContext() {
+    var filter = new LogFilter("WARN", false, false, null, 2, 1, TIMEOUT);
+    assertEquals("1-STEP 1: FROM node:18\n2:npm WARN deprecated uuid@3.4.0\n3-added 812 packages\n"
+      + "4-npm ERR! code ELIFECYCLE\n", text(filter.filter(bytes(LOG))));
+    assertTrue(filter.isDone());
+  }
+
+  @Test
+  void aRegularExpressionThatBacktracksTooLongFailsTheSearch() {
+    var filter = new LogFilter("(.*a){20}", true, false, null, 0, 1, Duration.ofMillis(50));
+    var line = bytes("a".repeat(40) + "!\n");
+    var failure = assertThrows(IllegalArgumentException.class, () -> filter.filter(line));
+    assertEquals("regular expression (.*a){20} took more than 50 ms to match line 1", failure.getMessage());
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String text(byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
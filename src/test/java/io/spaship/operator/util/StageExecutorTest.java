@@ -0,0 +1,73 @@
+package io.spaship.operator.util;
+
+import io.smallrye.mutiny.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StageExecutorTest {
+
+  private final ExecutorService pool = Executors.newCachedThreadPool();
+  private final StageExecutor executor = new StageExecutor(pool);
+  private final StageExecutor.Policy policy = new StageExecutor.Policy(3, Duration.ofMillis(10),
+    Duration.ofMillis(50), Duration.ofSeconds(5));
+
+  @AfterEach
+  void shutdown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  void successIsEmittedWithoutDelay() {
+    var start = System.nanoTime();
+    assertEquals("done", executor.run(() -> "done", policy).await().atMost(Duration.ofSeconds(1)));
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 500);
+  }
+
+  @Test
+  void failuresAreRetried() {
+    var attempts = new AtomicInteger();
+    var result = executor.run(() -> {
+      if (attempts.incrementAndGet() < 3)
+        throw new IllegalStateException("conflict");
+      return attempts.get();
+    }, policy).await().atMost(Duration.ofSeconds(5));
+    assertEquals(3, result);
+  }
+
+  @Test
+  void timedOutAttemptIsNotRetried() {
+    var attempts = new AtomicInteger();
+    assertThrows(TimeoutException.class, () -> executor.run(() -> {
+      attempts.incrementAndGet();
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "late";
+    }, policy.withTimeout(Duration.ofMillis(50))).await().atMost(Duration.ofSeconds(5)));
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  void rejectedAttemptIsNotRetried() {
+    var attempts = new AtomicInteger();
+    var saturated = new StageExecutor(task -> {
+      attempts.incrementAndGet();
+      throw new RejectedExecutionException("saturated");
+    });
+    assertThrows(RejectedExecutionException.class, () -> saturated.run(() -> "never", policy)
+      .await().atMost(Duration.ofSeconds(5)));
+    assertEquals(1, attempts.get());
+  }
+}